@@ -0,0 +1,75 @@
+package org.iris_events.subscription;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.iris_events.subscription.collection.RedisScript;
+import org.iris_events.subscription.collection.Utils;
+
+import io.quarkus.redis.client.RedisClient;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Redis lease that lets a single node run the scheduled subscription cleanup. The holder renews the lease on every
+ * cleanup run, so the lease duration has to be longer than the cleanup interval. A node that dies while holding the
+ * lease blocks the cleanup for at most one lease duration; a node that shuts down releases it right away.
+ */
+@ApplicationScoped
+public class CleanupCoordinator {
+    private static final Logger log = LoggerFactory.getLogger(CleanupCoordinator.class);
+
+    private static final RedisScript ACQUIRE = new RedisScript("""
+            if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then
+                return 1
+            end
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                redis.call('PEXPIRE', KEYS[1], ARGV[2])
+                return 1
+            end
+            return 0
+            """);
+
+    private static final RedisScript RELEASE = new RedisScript("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """);
+
+    @ConfigProperty(name = "subscription.cleanup.lease-duration", defaultValue = "PT15M")
+    Duration leaseDuration;
+
+    @Inject
+    RedisClient redisClient;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * Takes or renews the cleanup lease. Returns false if another node holds it.
+     */
+    public boolean tryAcquire() {
+        final var acquired = ACQUIRE.execute(redisClient, List.of(Utils.CLEANUP_LEASE_KEY),
+                List.of(nodeId, String.valueOf(leaseDuration.toMillis()))).toInteger() == 1;
+        log.debug("Cleanup lease requested. nodeId={}, acquired={}", nodeId, acquired);
+        return acquired;
+    }
+
+    /**
+     * Releases the lease if it is held by this node.
+     */
+    @PreDestroy
+    public void release() {
+        try {
+            RELEASE.execute(redisClient, List.of(Utils.CLEANUP_LEASE_KEY), List.of(nodeId));
+        } catch (RuntimeException e) {
+            log.warn("Could not release cleanup lease. nodeId={}", nodeId, e);
+        }
+    }
+}
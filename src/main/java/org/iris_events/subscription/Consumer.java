@@ -4,7 +4,16 @@ import static org.iris_events.common.MessagingHeaders.Message.CACHE_TTL;
 import static org.iris_events.subscription.exception.ErrorCode.BAD_REQUEST;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import org.iris_events.annotations.ExchangeType;
 import org.iris_events.annotations.MessageHandler;
@@ -15,6 +24,10 @@ import org.iris_events.common.message.ResourceMessage;
 import org.iris_events.context.EventContext;
 import org.iris_events.exception.BadPayloadException;
 import org.iris_events.producer.RoutingDetails;
+import org.iris_events.subscription.PartitionBindings.PartitionedUpdate;
+import org.iris_events.subscription.SubscriptionEventProducer.SessionMessage;
+import org.iris_events.subscription.collection.ReactiveRedisSnapshotCollection;
+import org.iris_events.subscription.collection.ReactiveRedisSubscriptionCollection;
 import org.iris_events.subscription.collection.RedisSnapshotCollection;
 import org.iris_events.subscription.collection.Snapshot;
 import org.iris_events.subscription.events.SessionClosed;
@@ -26,18 +39,23 @@ import org.iris_events.subscription.events.Unsubscribe;
 import org.iris_events.subscription.events.Unsubscribed;
 import org.iris_events.subscription.model.Resource;
 import org.iris_events.subscription.model.Subscription;
+import org.iris_events.subscription.validation.SubscriptionValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
 
 @ApplicationScoped
 public class Consumer {
     private static final Logger log = LoggerFactory.getLogger(Consumer.class);
+    private static final String SUBSCRIBED_EVENT_NAME = "subscribed";
+    private static final String PARTITIONED_COLLECTION = "partitioned";
 
     @Inject
     EventContext eventContext;
@@ -54,29 +72,89 @@ public class Consumer {
     @Inject
     ObjectMapper objectMapper;
 
-    void startup(@Observes StartupEvent event) {
-        log.info("Starting Iris consumer.");
+    @Inject
+    ReactiveRedisSubscriptionCollection reactiveSubscriptionCollection;
+
+    @Inject
+    ReactiveRedisSnapshotCollection reactiveSnapshotCollection;
+
+    @Inject
+    VirtualThreadDispatcher virtualThreadDispatcher;
+
+    @Inject
+    SessionClosedBatcher sessionClosedBatcher;
+
+    @Inject
+    ResourceUpdateConflator resourceUpdateConflator;
+
+    @Inject
+    Instance<PartitionBindings> partitionBindings;
+
+    @ConfigProperty(name = "subscription.consumer.execution-mode", defaultValue = "blocking")
+    ExecutionMode executionMode;
+
+    /**
+     * Unset, work handed off is waited for in {@link ExecutionMode#REACTIVE} and not in
+     * {@link ExecutionMode#VIRTUAL_THREAD}.
+     */
+    @ConfigProperty(name = "subscription.consumer.ack-after-completion")
+    Optional<Boolean> ackAfterCompletion;
+
+    @ConfigProperty(name = "subscription.fanout.mode", defaultValue = "per-session")
+    FanOutMode fanOutMode;
+
+    @ConfigProperty(name = "subscription.fanout.resource-exchange", defaultValue = "resource-fanout")
+    String resourceExchange;
+
+    @ConfigProperty(name = "subscription.collection.type", defaultValue = "redis")
+    String collectionType;
+
+    private final KeyedSequencer<Resource> resourceSequencer = new KeyedSequencer<>(Thread::startVirtualThread);
+
+    void startup(@Observes StartupEvent event) throws IOException {
+        log.info("Starting Iris consumer. executionMode={}, ackAfterCompletion={}, fanOutMode={}", executionMode,
+                acksAfterCompletion(), fanOutMode);
+        if (executionMode == ExecutionMode.REACTIVE && !"redis".equals(collectionType)) {
+            // the reactive handlers read the Redis collection directly and would see none of the subscriptions
+            throw new IllegalStateException("Execution mode reactive requires subscription.collection.type=redis, got "
+                    + collectionType);
+        }
+        if (fanOutMode == FanOutMode.PER_RESOURCE) {
+            producer.declareTopicExchange(resourceExchange);
+        }
+        if (partitioned()) {
+            partitionBindings.get().start(this::ownedResourceUpdated);
+        }
     }
 
     @MessageHandler
     public void subscribeInternal(final SubscribeInternal subscribe) throws IOException {
         log.debug("Subscribe internal received: {}", subscribe);
-        subscribe(subscribe.resourceType(), subscribe.resourceId());
+        subscribe(List.of(new Resource(subscribe.resourceType(), subscribe.resourceId())));
     }
 
     @MessageHandler
     public void subscribe(final Subscribe subscribe) throws IOException {
         log.debug("Subscribe received: {}", subscribe);
-        for (Resource resource : subscribe.resources()) {
-            subscribe(resource.resourceType(), resource.resourceId());
-        }
+        subscribe(subscribe.resources());
     }
 
     @MessageHandler
     public void sessionClosed(final SessionClosed sessionClosed) {
-        log.info("Session closed received: {}", sessionClosed);
         final var sessionId = sessionClosed.sessionId();
-        subscriptionManager.unsubscribe(sessionId);
+        if (sessionClosedBatcher.isEnabled()) {
+            log.debug("Session closed received: {}", sessionClosed);
+            sessionClosedBatcher.add(sessionId);
+            return;
+        }
+        log.info("Session closed received: {}", sessionClosed);
+        switch (executionMode) {
+            case REACTIVE -> complete("session-closed",
+                    reactiveSubscriptionCollection.remove(sessionId).subscribeAsCompletionStage());
+            case VIRTUAL_THREAD -> complete("session-closed", virtualThreadDispatcher.dispatch(sessionId,
+                    () -> subscriptionManager.unsubscribe(sessionId)));
+            case BLOCKING -> subscriptionManager.unsubscribe(sessionId);
+        }
     }
 
     @MessageHandler
@@ -84,15 +162,46 @@ public class Consumer {
         log.debug("Unsubscribe received: {}", unsubscribe);
         final var resources = unsubscribe.resources();
         final var sessionId = eventContext.getSessionId().orElse(null);
-        for (Resource resource : resources) {
-            if (resource.resourceType() == null) {
-                throw new BadPayloadException(BAD_REQUEST, "Missing resource type information");
+        switch (executionMode) {
+            case REACTIVE -> {
+                // all resources are checked before any removal starts
+                resources.forEach(Consumer::validateUnsubscribe);
+                complete("unsubscribe", unsubscribeNonBlocking(sessionId, resources));
+            }
+            case VIRTUAL_THREAD -> {
+                resources.forEach(Consumer::validateUnsubscribe);
+                complete("unsubscribe", virtualThreadDispatcher.dispatch(sessionId,
+                        () -> resources.forEach(resource -> subscriptionManager.unsubscribe(sessionId, resource))));
+            }
+            case BLOCKING -> {
+                for (Resource resource : resources) {
+                    validateUnsubscribe(resource);
+                    subscriptionManager.unsubscribe(sessionId, resource);
+                }
             }
-            subscriptionManager.unsubscribe(sessionId, resource);
         }
         return new Unsubscribed(resources);
     }
 
+    private static void validateUnsubscribe(final Resource resource) {
+        if (resource.resourceType() == null) {
+            throw new BadPayloadException(BAD_REQUEST, "Missing resource type information");
+        }
+    }
+
+    private CompletableFuture<Void> unsubscribeNonBlocking(final String sessionId, final List<Resource> resources) {
+        if (resources.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final var removals = resources.stream()
+                .map(resource -> reactiveSubscriptionCollection.remove(sessionId, resource.resourceType(),
+                        resource.resourceId()))
+                .toList();
+        return Uni.join().all(removals).andFailFast()
+                .replaceWithVoid()
+                .subscribeAsCompletionStage();
+    }
+
     @MessageHandler(bindingKeys = "*.resource")
     public void resourceUpdated(final ResourceMessage resourceMessage) throws IOException {
         final var resourceType = resourceMessage.resourceType();
@@ -102,62 +211,236 @@ public class Consumer {
                                       .orElseThrow(() -> new RuntimeException("Missing required event type header!"));
         final var routingKey = String.format("%s.%s", eventName, Exchanges.SESSION.getValue());
         final var snapshot = new Snapshot(eventName, routingKey, payloadAsBytes);
+        final var cacheTtl = eventContext.getHeaderValue(CACHE_TTL).map(Integer::valueOf);
 
-        eventContext.getHeaderValue(CACHE_TTL)
-                .map(Integer::valueOf)
-                .ifPresent(cacheTtl -> snapshotCollection.insert(resourceType, resourceId, snapshot, cacheTtl));
+        final var resource = new Resource(resourceType, resourceId);
+        if (partitioned()) {
+            // handled by the node owning the partition, with the subscribers it holds in memory
+            partitionBindings.get().forward(resource, snapshot, cacheTtl);
+            return;
+        }
+        resourceUpdated(resource, snapshot, cacheTtl);
+    }
+
+    /**
+     * Handles an update of a resource of a partition this node owns, see {@link PartitionBindings}.
+     */
+    void ownedResourceUpdated(final PartitionedUpdate update) {
+        resourceUpdated(new Resource(update.resourceType(), update.resourceId()), update.snapshot(),
+                Optional.ofNullable(update.cacheTtl()));
+    }
+
+    private void resourceUpdated(final Resource resource, final Snapshot snapshot, final Optional<Integer> cacheTtl) {
+        final var resourceType = resource.resourceType();
+        final var resourceId = resource.resourceId();
+        if (resourceUpdateConflator.isConflated(resourceType)) {
+            // the conflator delivers the newest update on a virtual thread
+            resourceUpdateConflator.submit(resource, executionMode == ExecutionMode.REACTIVE
+                    ? () -> resourceUpdatedNonBlocking(resourceType, resourceId, snapshot, cacheTtl).join()
+                    : () -> resourceUpdatedBlocking(resourceType, resourceId, snapshot, cacheTtl));
+            return;
+        }
+
+        switch (executionMode) {
+            // updates of one resource are stored and published in the order they were received
+            case REACTIVE -> complete("resource-updated", resourceSequencer.submit(resource,
+                    () -> resourceUpdatedNonBlocking(resourceType, resourceId, snapshot, cacheTtl)));
+            case VIRTUAL_THREAD -> complete("resource-updated", virtualThreadDispatcher.dispatch(resource,
+                    () -> resourceUpdatedBlocking(resourceType, resourceId, snapshot, cacheTtl)));
+            case BLOCKING -> resourceUpdatedBlocking(resourceType, resourceId, snapshot, cacheTtl);
+        }
+    }
+
+    private void resourceUpdatedBlocking(final String resourceType, final String resourceId, final Snapshot snapshot,
+            final Optional<Integer> cacheTtl) {
+        cacheTtl.ifPresent(ttl -> snapshotCollection.insert(resourceType, resourceId, snapshot, ttl));
 
         Set<Subscription> subscriptions = subscriptionManager.getSubscriptions(resourceType, resourceId);
+        publishResourceUpdate(resourceType, resourceId, snapshot, subscriptions);
+    }
+
+    private CompletableFuture<Void> resourceUpdatedNonBlocking(final String resourceType, final String resourceId,
+            final Snapshot snapshot, final Optional<Integer> cacheTtl) {
+        final var snapshotInserted = cacheTtl
+                .map(ttl -> reactiveSnapshotCollection.insert(resourceType, resourceId, snapshot, ttl))
+                .orElseGet(() -> Uni.createFrom().voidItem());
+        final var subscriptions = reactiveSubscriptionCollection.get(new Resource(resourceType, resourceId));
+
+        return Uni.combine().all().unis(snapshotInserted, subscriptions)
+                .with((ignored, resourceSubscriptions) -> resourceSubscriptions)
+                // AMQP publishing blocks on the channel, keep it off the event loop and off the handler threads
+                .emitOn(virtualThreadDispatcher.executor())
+                .invoke(resourceSubscriptions -> publishResourceUpdate(resourceType, resourceId, snapshot,
+                        resourceSubscriptions))
+                .replaceWithVoid()
+                .subscribeAsCompletionStage();
+    }
+
+    /**
+     * Waits for handler work handed to another thread, so the message is acknowledged once the work is done and a
+     * failure is redelivered. Without {@code ack-after-completion} the message is acknowledged right away and failures
+     * are only logged.
+     */
+    private boolean partitioned() {
+        return PARTITIONED_COLLECTION.equals(collectionType);
+    }
+
+    private void complete(final String taskName, final CompletableFuture<Void> completion) {
+        if (!acksAfterCompletion()) {
+            completion.whenComplete((ignored, failure) -> {
+                if (failure != null) {
+                    log.error("Handler task failed. task={}", taskName, failure);
+                }
+            });
+            return;
+        }
+        try {
+            completion.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private boolean acksAfterCompletion() {
+        return ackAfterCompletion.orElse(executionMode != ExecutionMode.VIRTUAL_THREAD);
+    }
+
+    private void publishResourceUpdate(final String resourceType, final String resourceId, final Snapshot snapshot,
+            final Set<Subscription> subscriptions) {
         if (subscriptions.isEmpty()) {
             return;
         }
 
-        subscriptions.forEach(subscription -> {
+        // all subscriptions of a resource share the same subscription id
+        final var subscriptionId = subscriptions.iterator().next().id();
+
+        if (fanOutMode == FanOutMode.PER_RESOURCE) {
             final var routingDetails = new RoutingDetails.Builder()
-                                               .eventName(eventName)
-                                               .exchange(Exchanges.SESSION.getValue())
+                                               .eventName(snapshot.eventName())
+                                               .exchange(resourceExchange)
                                                .exchangeType(ExchangeType.TOPIC)
-                                               .routingKey(routingKey)
-                                               .scope(Scope.SESSION)
-                                               .subscriptionId(subscription.id())
-                                               .sessionId(subscription.sessionId())
+                                               .routingKey(ResourceRoutingKey.of(resourceType, resourceId))
+                                               // consumed by the gateway, which delivers to its subscribed sessions
+                                               .scope(Scope.INTERNAL)
+                                               .subscriptionId(subscriptionId)
                                                .build();
-            producer.sendResourceMessage(resourceType, resourceId, payloadAsBytes, routingDetails);
-        });
+            producer.sendResourceUpdate(resourceExchange, resourceType, resourceId, snapshot.message(), routingDetails);
+            return;
+        }
+
+        final var routingDetails = new RoutingDetails.Builder()
+                                           .eventName(snapshot.eventName())
+                                           .exchange(Exchanges.SESSION.getValue())
+                                           .exchangeType(ExchangeType.TOPIC)
+                                           .routingKey(snapshot.routingKey())
+                                           .scope(Scope.SESSION)
+                                           .subscriptionId(subscriptionId)
+                                           .build();
+        final var sessionIds = subscriptions.stream().map(Subscription::sessionId).toList();
+        producer.sendResourceMessages(resourceType, resourceId, snapshot.message(), routingDetails, sessionIds);
     }
 
-    private void subscribe(final String resourceType, final String resourceId) throws IOException {
-        final var subscription = new Subscription(resourceType, resourceId, eventContext.getSessionId().orElse(null));
-        subscriptionManager.addSubscription(subscription);
-        eventContext.setSubscriptionId(subscription.id());
+    /**
+     * Stores the subscriptions with one bulk insert, reads the cached snapshots with one read per hash slot and publishes
+     * the {@link Subscribed}, snapshot and {@link SnapshotRequested} messages of all resources as one batch on the
+     * session's channel.
+     */
+    private void subscribe(final List<Resource> resources) {
+        final var sessionId = eventContext.getSessionId().orElse(null);
+        final var subscriptions = resources.stream()
+                .map(resource -> new Subscription(resource.resourceType(), resource.resourceId(), sessionId))
+                .toList();
+        switch (executionMode) {
+            case REACTIVE -> complete("subscribe", subscribeNonBlocking(sessionId, subscriptions, resources));
+            case VIRTUAL_THREAD -> {
+                // rejected subscriptions still fail the handler when the message is acknowledged on dispatch
+                subscriptions.forEach(SubscriptionValidator::validate);
+                complete("subscribe", virtualThreadDispatcher.dispatch(sessionId,
+                        () -> subscribeBlocking(sessionId, subscriptions, resources)));
+            }
+            case BLOCKING -> subscribeBlocking(sessionId, subscriptions, resources);
+        }
+    }
 
-        final var subscribed = new Subscribed(resourceType, resourceId);
-        producer.send(subscribed);
+    private void subscribeBlocking(final String sessionId, final List<Subscription> subscriptions,
+            final List<Resource> resources) {
+        subscriptionManager.addSubscriptions(subscriptions);
 
-        // check for possible cached snapshot
-        final var optionalSnapshot = snapshotCollection.get(resourceType, resourceId);
-        if (optionalSnapshot.isPresent()) {
-            log.info("Found snapshot on subscribe... sending snapshot. resourceType={}, resourceId={}", resourceType,
-                    resourceId);
-            final var snapshot = optionalSnapshot.get();
-            final var eventName = snapshot.eventName();
-            final var routingKey = snapshot.routingKey();
+        // check for possible cached snapshots
+        final var snapshots = snapshotCollection.get(resources);
+        producer.sendSessionMessages(sessionId, subscribeMessages(subscriptions, snapshots));
+    }
 
-            final var routingDetails = new RoutingDetails.Builder()
-                                               .eventName(eventName)
-                                               .exchange(Exchanges.SESSION.getValue())
-                                               .exchangeType(ExchangeType.TOPIC)
-                                               .routingKey(routingKey)
-                                               .scope(Scope.SESSION)
-                                               .subscriptionId(subscription.id())
-                                               .build();
-            producer.sendResourceMessage(resourceType, resourceId, snapshot.message(), routingDetails);
+    private CompletableFuture<Void> subscribeNonBlocking(final String sessionId, final List<Subscription> subscriptions,
+            final List<Resource> resources) {
+        subscriptions.forEach(SubscriptionValidator::validate);
+        return reactiveSubscriptionCollection.insertAll(subscriptions)
+                .chain(() -> reactiveSnapshotCollection.get(resources))
+                .map(snapshots -> subscribeMessages(subscriptions, snapshots))
+                // AMQP publishing blocks on the channel, keep it off the event loop and off the handler threads
+                .emitOn(virtualThreadDispatcher.executor())
+                .invoke(messages -> producer.sendSessionMessages(sessionId, messages))
+                .replaceWithVoid()
+                .subscribeAsCompletionStage();
+    }
+
+    private List<SessionMessage> subscribeMessages(final List<Subscription> subscriptions,
+            final Map<Resource, Snapshot> snapshots) {
+        try {
+            return subscribeMessagesOf(subscriptions, snapshots);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
+
+    private List<SessionMessage> subscribeMessagesOf(final List<Subscription> subscriptions,
+            final Map<Resource, Snapshot> snapshots) throws IOException {
+        final var messages = new ArrayList<SessionMessage>(subscriptions.size() * 3);
+        for (Subscription subscription : subscriptions) {
+            final var resourceType = subscription.resourceType();
+            final var resourceId = subscription.resourceId();
+            messages.add(subscribedMessage(subscription));
 
-        sendSnapshotRequested(subscription);
+            final var snapshot = snapshots.get(new Resource(resourceType, resourceId));
+            if (snapshot != null) {
+                log.info("Found snapshot on subscribe... sending snapshot. resourceType={}, resourceId={}", resourceType,
+                        resourceId);
+                final var routingDetails = new RoutingDetails.Builder()
+                                                   .eventName(snapshot.eventName())
+                                                   .exchange(Exchanges.SESSION.getValue())
+                                                   .exchangeType(ExchangeType.TOPIC)
+                                                   .routingKey(snapshot.routingKey())
+                                                   .scope(Scope.SESSION)
+                                                   .subscriptionId(subscription.id())
+                                                   .build();
+                messages.add(new SessionMessage(resourceType, resourceId, snapshot.message(), routingDetails));
+            }
+
+            messages.add(snapshotRequestedMessage(subscription));
+        }
+        return messages;
+    }
+
+    private SessionMessage subscribedMessage(final Subscription subscription) throws IOException {
+        final var resourceType = subscription.resourceType();
+        final var resourceId = subscription.resourceId();
+        final var routingDetails = new RoutingDetails.Builder()
+                                           .eventName(SUBSCRIBED_EVENT_NAME)
+                                           .exchange(Exchanges.SESSION.getValue())
+                                           .exchangeType(ExchangeType.TOPIC)
+                                           .routingKey(String.format("%s.%s", SUBSCRIBED_EVENT_NAME,
+                                                   Exchanges.SESSION.getValue()))
+                                           .scope(Scope.SESSION)
+                                           .subscriptionId(subscription.id())
+                                           .build();
+        final var payloadAsBytes = objectMapper.writeValueAsBytes(new Subscribed(resourceType, resourceId));
+        return new SessionMessage(resourceType, resourceId, payloadAsBytes, routingDetails);
     }
 
-    private void sendSnapshotRequested(final Subscription subscription) throws IOException {
+    private SessionMessage snapshotRequestedMessage(final Subscription subscription) throws IOException {
         final var resourceType = subscription.resourceType();
         final var resourceId = subscription.resourceId();
         final var exchangeName = Exchanges.SNAPSHOT_REQUESTED.getValue();
@@ -171,6 +454,6 @@ public class Consumer {
                                            .build();
         final var snapshotRequestedMessage = new SnapshotRequested(resourceType, resourceId);
         final var payloadAsBytes = objectMapper.writeValueAsBytes(snapshotRequestedMessage);
-        producer.sendResourceMessage(resourceType, resourceId, payloadAsBytes, routingDetails);
+        return new SessionMessage(resourceType, resourceId, payloadAsBytes, routingDetails);
     }
 }
@@ -0,0 +1,25 @@
+package org.iris_events.subscription;
+
+/**
+ * How {@link Consumer} runs the Redis and AMQP work of its message handlers.
+ */
+public enum ExecutionMode {
+    /**
+     * Handlers run to completion on the thread that delivered the message.
+     */
+    BLOCKING,
+    /**
+     * Handlers run on the non-blocking Redis collections, updates of one resource one after another. The handler waits
+     * for the work unless {@code subscription.consumer.ack-after-completion} is disabled, in which case the message is
+     * acknowledged before the work completes and failures are only logged.
+     */
+    REACTIVE,
+    /**
+     * Handlers run with the blocking collections on virtual threads, updates of one resource one after another and
+     * subscribes, unsubscribes and closes of one session one after another. The session is read from the event context
+     * on the delivering thread and the unsubscribe reply is returned from it. Unless {@code ack-after-completion} is set,
+     * messages are acknowledged once dispatched; waiting for each task would leave the delivering threads setting the
+     * rate, as in {@link #BLOCKING}.
+     */
+    VIRTUAL_THREAD
+}
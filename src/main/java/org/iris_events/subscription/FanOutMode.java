@@ -0,0 +1,17 @@
+package org.iris_events.subscription;
+
+/**
+ * How a resource update is delivered to its subscribers.
+ */
+public enum FanOutMode {
+    /**
+     * One message per subscriber is published to the session exchange, addressed by the session header.
+     */
+    PER_SESSION,
+    /**
+     * One internal message per update, without session or user headers, is published to the resource exchange with the
+     * {@link ResourceRoutingKey} of the resource. The client-facing gateway binds to it and delivers to its own
+     * subscribed sessions.
+     */
+    PER_RESOURCE
+}
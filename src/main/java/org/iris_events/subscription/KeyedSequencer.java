@@ -0,0 +1,72 @@
+package org.iris_events.subscription;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Runs asynchronous tasks of the same key one after another, in the order they were submitted, while tasks of different
+ * keys run concurrently. A task is started once the previous task of its key has completed, successfully or not. A task
+ * queued behind another one is started on the executor, so a long queue does not unwind on a single stack.
+ */
+final class KeyedSequencer<K> {
+    private final ConcurrentHashMap<K, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final Executor executor;
+
+    KeyedSequencer(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Queues the task behind the tasks already submitted for the key. The returned future completes with the task.
+     */
+    CompletableFuture<Void> submit(final K key, final Supplier<? extends CompletionStage<?>> task) {
+        final var result = new CompletableFuture<Void>();
+        final var tail = new CompletableFuture<Void>();
+        final var previous = tails.put(key, tail);
+        if (previous == null || previous.isDone()) {
+            run(key, tail, result, task);
+        } else {
+            previous.thenRunAsync(() -> run(key, tail, result, task), executor)
+                    .whenComplete((ignored, rejected) -> {
+                        if (rejected != null) {
+                            finish(key, tail, result, rejected);
+                        }
+                    });
+        }
+        return result;
+    }
+
+    /**
+     * Number of keys with a task queued or running.
+     */
+    int size() {
+        return tails.size();
+    }
+
+    private void run(final K key, final CompletableFuture<Void> tail, final CompletableFuture<Void> result,
+            final Supplier<? extends CompletionStage<?>> task) {
+        start(task).whenComplete((ignored, failure) -> finish(key, tail, result, failure));
+    }
+
+    private void finish(final K key, final CompletableFuture<Void> tail, final CompletableFuture<Void> result,
+            final Throwable failure) {
+        tails.remove(key, tail);
+        tail.complete(null);
+        if (failure != null) {
+            result.completeExceptionally(failure);
+        } else {
+            result.complete(null);
+        }
+    }
+
+    private static CompletionStage<?> start(final Supplier<? extends CompletionStage<?>> task) {
+        try {
+            return task.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
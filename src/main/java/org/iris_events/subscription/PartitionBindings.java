@@ -0,0 +1,210 @@
+package org.iris_events.subscription;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Delivery;
+
+import org.iris_events.runtime.channel.ChannelService;
+import org.iris_events.subscription.collection.PartitionMembership;
+import org.iris_events.subscription.collection.Snapshot;
+import org.iris_events.subscription.model.Resource;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+
+/**
+ * Routes resource updates to the node owning the partition of the resource, see {@link PartitionMembership}. The node
+ * receiving an update from the shared resource queue re-publishes it to the partition exchange, a direct exchange with
+ * the partition as routing key. Every node consumes an exclusive queue bound to that exchange with the partitions it
+ * owns, so only the owner handles the update, with the subscribers it holds in memory. The bindings follow the
+ * ownership: acquired partitions are bound and lost ones unbound.
+ * <p>
+ * While a partition changes hands it may be bound by no node for a moment. Updates published then are routed by the
+ * alternate exchange of the partition exchange to a queue shared by all nodes, and handled by any node with lookups in
+ * Redis, so no update is dropped. For the same moment two nodes may have the partition bound and both handle an update.
+ * <p>
+ * Active with the build property {@code subscription.collection.type=partitioned}.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "subscription.collection.type", stringValue = "partitioned")
+public class PartitionBindings {
+    private static final Logger log = LoggerFactory.getLogger(PartitionBindings.class);
+    private static final String CHANNEL_ID_PREFIX = "iris-subscription-partitions-";
+    private static final String ALTERNATE_EXCHANGE_ARGUMENT = "alternate-exchange";
+    private static final String UNROUTED_SUFFIX = ".unrouted";
+
+    @ConfigProperty(name = "subscription.partitioning.exchange", defaultValue = "resource-partitions")
+    String exchange;
+
+    @ConfigProperty(name = "subscription.partitioning.prefetch", defaultValue = "100")
+    int prefetch;
+
+    @Inject
+    PartitionMembership membership;
+
+    @Inject
+    SubscriptionEventProducer producer;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    @Named("consumerChannelService")
+    ChannelService channelService;
+
+    private final Set<Integer> boundPartitions = new HashSet<>();
+    private UpdateHandler handler;
+    private String channelId;
+    private volatile Channel channel;
+    private String queue;
+
+    /**
+     * Declares the partition exchange and queues, starts consuming and binds the partitions owned now and later. Updates
+     * delivered to this node are passed to the handler.
+     */
+    public synchronized void start(final UpdateHandler handler) throws IOException {
+        this.handler = handler;
+        connect();
+        membership.onOwnershipChange(this::ownershipChanged);
+    }
+
+    /**
+     * Re-publishes the update to the node owning the partition of the resource.
+     */
+    public void forward(final Resource resource, final Snapshot snapshot, final Optional<Integer> cacheTtl)
+            throws IOException {
+        final var update = new PartitionedUpdate(resource.resourceType(), resource.resourceId(), snapshot,
+                cacheTtl.orElse(null));
+        producer.sendPartitionedUpdate(exchange, String.valueOf(membership.partitionOf(resource)),
+                resource.resourceType(), resource.resourceId(), objectMapper.writeValueAsBytes(update));
+    }
+
+    /**
+     * Opens a new channel when the consuming one was closed, which also drops the exclusive queue with its bindings.
+     */
+    @Scheduled(every = "${subscription.partitioning.heartbeat-interval}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    synchronized void reconnect() {
+        if (handler == null || (channel != null && channel.isOpen())) {
+            return;
+        }
+        try {
+            connect();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not consume partitioned resource updates, retrying. exchange={}", exchange, e);
+        }
+    }
+
+    @PreDestroy
+    synchronized void destroy() {
+        if (channelId != null) {
+            channelService.removeChannel(channelId);
+        }
+    }
+
+    synchronized void ownershipChanged(final Set<Integer> acquired, final Set<Integer> lost) {
+        if (channel == null || !channel.isOpen()) {
+            // bound once the channel is back
+            return;
+        }
+        try {
+            bind(acquired);
+            for (Integer partition : lost) {
+                if (boundPartitions.remove(partition)) {
+                    channel.queueUnbind(queue, exchange, String.valueOf(partition));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not update partition bindings, rebinding on reconnect. acquired={}, lost={}",
+                    acquired.size(), lost.size(), e);
+            abort();
+        }
+    }
+
+    private void connect() throws IOException {
+        if (channelId != null) {
+            channelService.removeChannel(channelId);
+        }
+        channelId = CHANNEL_ID_PREFIX + UUID.randomUUID();
+        final var consuming = channelService.getOrCreateChannelById(channelId);
+        final var unrouted = exchange + UNROUTED_SUFFIX;
+        consuming.exchangeDeclare(unrouted, BuiltinExchangeType.FANOUT, true);
+        consuming.queueDeclare(unrouted, true, false, false, null);
+        consuming.queueBind(unrouted, unrouted, "");
+        consuming.exchangeDeclare(exchange, BuiltinExchangeType.DIRECT, true, false,
+                Map.of(ALTERNATE_EXCHANGE_ARGUMENT, unrouted));
+        // server named, exclusive and auto-deleted with the channel's connection
+        queue = consuming.queueDeclare().getQueue();
+        consuming.basicQos(prefetch);
+        consuming.basicConsume(queue, false, (consumerTag, delivery) -> deliver(consuming, delivery),
+                consumerTag -> log.warn("Partition queue consumer cancelled. queue={}", queue));
+        consuming.basicConsume(unrouted, false, (consumerTag, delivery) -> deliver(consuming, delivery),
+                consumerTag -> log.warn("Unrouted partition queue consumer cancelled. queue={}", unrouted));
+        channel = consuming;
+        boundPartitions.clear();
+        bind(membership.ownedPartitions());
+        log.info("Consuming partitioned resource updates. exchange={}, queue={}, partitions={}", exchange, queue,
+                boundPartitions.size());
+    }
+
+    private void bind(final Set<Integer> partitions) throws IOException {
+        for (Integer partition : partitions) {
+            if (boundPartitions.add(partition)) {
+                channel.queueBind(queue, exchange, String.valueOf(partition));
+            }
+        }
+    }
+
+    private void abort() {
+        try {
+            channel.abort();
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not abort partition channel. channelId={}", channelId, e);
+        }
+    }
+
+    /**
+     * Acknowledges the update once handled. A failed update is requeued once, as a redelivered update from the shared
+     * resource queue would be.
+     */
+    private void deliver(final Channel consuming, final Delivery delivery) throws IOException {
+        final var envelope = delivery.getEnvelope();
+        try {
+            handler.handle(objectMapper.readValue(delivery.getBody(), PartitionedUpdate.class));
+            consuming.basicAck(envelope.getDeliveryTag(), false);
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not handle partitioned resource update. routingKey={}, redelivered={}",
+                    envelope.getRoutingKey(), envelope.isRedeliver(), e);
+            consuming.basicNack(envelope.getDeliveryTag(), false, !envelope.isRedeliver());
+        }
+    }
+
+    /**
+     * Handles the resource updates delivered to this node.
+     */
+    @FunctionalInterface
+    public interface UpdateHandler {
+        void handle(PartitionedUpdate update);
+    }
+
+    /**
+     * Resource update as re-published to the partition exchange, with the snapshot built by the receiving node.
+     */
+    public record PartitionedUpdate(String resourceType, String resourceId, Snapshot snapshot, Integer cacheTtl) {
+    }
+}
@@ -0,0 +1,32 @@
+package org.iris_events.subscription;
+
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Reports every producer channel of the {@link ProducerChannelPool}. Ready while at least one channel is open, or not
+ * opened yet and never replaced. Channels are only inspected, never opened, by the check.
+ */
+@Readiness
+@ApplicationScoped
+public class ProducerChannelHealthCheck implements HealthCheck {
+
+    @Inject
+    ProducerChannelPool channelPool;
+
+    @Override
+    public HealthCheckResponse call() {
+        final var builder = HealthCheckResponse.named("subscription-producer-channels");
+        var anyReady = false;
+        for (ProducerChannelPool.ChannelStatus status : channelPool.status()) {
+            anyReady |= status.ready();
+            builder.withData("slot-" + status.slot(), String.format("created=%s, open=%s, replacements=%d",
+                    status.created(), status.open(), status.replacements()));
+        }
+        return builder.status(anyReady).build();
+    }
+}
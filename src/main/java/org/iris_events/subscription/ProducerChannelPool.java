@@ -0,0 +1,155 @@
+package org.iris_events.subscription;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rabbitmq.client.Channel;
+
+import org.iris_events.runtime.channel.ChannelService;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+
+/**
+ * Fixed set of producer channels obtained from the {@link ChannelService}. Messages are sharded over the channels by
+ * session id, so messages of one session keep their order while different sessions publish in parallel. A channel found
+ * closed or failing is replaced by a fresh one.
+ */
+@ApplicationScoped
+public class ProducerChannelPool {
+    private static final Logger log = LoggerFactory.getLogger(ProducerChannelPool.class);
+    private static final String CHANNEL_ID_PREFIX = "iris-subscription-";
+
+    @ConfigProperty(name = "subscription.producer.channels", defaultValue = "4")
+    int size;
+
+    private final ChannelService channelService;
+    private List<ChannelSlot> slots;
+
+    @Inject
+    public ProducerChannelPool(final @Named("producerChannelService") ChannelService channelService) {
+        this.channelService = channelService;
+    }
+
+    @PostConstruct
+    void init() {
+        slots = IntStream.range(0, Math.max(size, 1)).mapToObj(ChannelSlot::new).toList();
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Slot of the messages sharing the key, a session id or the routing key of a resource update. Without a key the slot
+     * of the current thread.
+     */
+    public int slotFor(final String key) {
+        if (key == null) {
+            return slotForCurrentThread();
+        }
+        return Math.floorMod(key.hashCode(), slots.size());
+    }
+
+    public int slotForCurrentThread() {
+        return Math.floorMod(Thread.currentThread().threadId(), slots.size());
+    }
+
+    public Channel channel(final int slot) throws IOException {
+        return slots.get(slot).channel();
+    }
+
+    /**
+     * Replaces the channel of the slot after a failed publish. The failed channel is removed from the
+     * {@link ChannelService} and aborted. A channel already replaced by a concurrent failure is left alone.
+     */
+    public void failed(final int slot, final Channel channel, final Exception e) {
+        slots.get(slot).replace(channel, e.getMessage());
+    }
+
+    /**
+     * State of every slot, without opening channels that were not used yet.
+     */
+    public List<ChannelStatus> status() {
+        return slots.stream().map(ChannelSlot::status).toList();
+    }
+
+    /**
+     * @param created whether a channel was obtained for the slot since it was created or last replaced
+     */
+    public record ChannelStatus(int slot, String channelId, boolean created, boolean open, long replacements) {
+        /**
+         * A slot is ready with an open channel, or before its first channel is opened unless it was replaced.
+         */
+        public boolean ready() {
+            return open || (!created && replacements == 0);
+        }
+    }
+
+    private final class ChannelSlot {
+        private final int index;
+        private final AtomicLong replacements = new AtomicLong();
+        private volatile String channelId;
+        private volatile Channel channel;
+
+        private ChannelSlot(final int index) {
+            this.index = index;
+            this.channelId = newChannelId(index);
+        }
+
+        private Channel channel() throws IOException {
+            final var current = channel;
+            if (current != null && current.isOpen()) {
+                return current;
+            }
+            synchronized (this) {
+                if (channel != null && !channel.isOpen()) {
+                    replace(channel, "channel closed");
+                }
+                if (channel == null) {
+                    channel = channelService.getOrCreateChannelById(channelId);
+                }
+                return channel;
+            }
+        }
+
+        private synchronized void replace(final Channel failed, final String reason) {
+            if (channel != failed) {
+                return;
+            }
+            final var replaced = channelId;
+            channelId = newChannelId(index);
+            channel = null;
+            replacements.incrementAndGet();
+            log.warn("Replacing producer channel. slot={}, channelId={}, newChannelId={}, reason={}", index, replaced,
+                    channelId, reason);
+            channelService.removeChannel(replaced);
+            try {
+                if (failed.isOpen()) {
+                    failed.abort();
+                }
+            } catch (IOException | RuntimeException abortException) {
+                log.debug("Could not abort replaced producer channel. slot={}, channelId={}", index, replaced,
+                        abortException);
+            }
+        }
+
+        private ChannelStatus status() {
+            final var current = channel;
+            return new ChannelStatus(index, channelId, current != null, current != null && current.isOpen(),
+                    replacements.get());
+        }
+
+        private static String newChannelId(final int index) {
+            return CHANNEL_ID_PREFIX + index + "-" + UUID.randomUUID();
+        }
+    }
+}
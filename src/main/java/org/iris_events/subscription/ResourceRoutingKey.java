@@ -0,0 +1,23 @@
+package org.iris_events.subscription;
+
+/**
+ * Routing keys of resource updates published to the resource exchange, {@code <resourceType>.<resourceId>}. Both parts
+ * are escaped so each is exactly one word of the topic routing key: {@code %} becomes {@code %25} and {@code .} becomes
+ * {@code %2E}. A gateway binds with the same escaping, e.g. {@code inventory.*} for all resources of a type.
+ */
+public final class ResourceRoutingKey {
+
+    private ResourceRoutingKey() {
+    }
+
+    public static String of(final String resourceType, final String resourceId) {
+        return escape(resourceType) + "." + escape(resourceId);
+    }
+
+    public static String escape(final String word) {
+        if (word.indexOf('.') < 0 && word.indexOf('%') < 0) {
+            return word;
+        }
+        return word.replace("%", "%25").replace(".", "%2E");
+    }
+}
@@ -0,0 +1,191 @@
+package org.iris_events.subscription;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.iris_events.subscription.model.Resource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Conflates updates of resources of the configured types. The first update of a resource opens a window, later updates
+ * within the window replace the pending one, and only the newest update is delivered when the window closes. A resource
+ * has at most one delivery in flight: updates arriving meanwhile are conflated and their window opens once the delivery
+ * has finished, so deliveries of one resource never overtake each other. Updates of other resource types pass through
+ * unchanged.
+ */
+@ApplicationScoped
+public class ResourceUpdateConflator {
+    private static final Logger log = LoggerFactory.getLogger(ResourceUpdateConflator.class);
+
+    @ConfigProperty(name = "subscription.conflation.resource-types")
+    Optional<List<String>> resourceTypes;
+
+    @ConfigProperty(name = "subscription.conflation.window", defaultValue = "PT0.1S")
+    Duration window;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<Resource, Conflation> conflations = new ConcurrentHashMap<>();
+    private Set<String> conflatedTypes = Set.of();
+    private ScheduledExecutorService scheduler;
+    private ExecutorService deliveries;
+    private volatile boolean closing;
+    private Counter conflatedUpdates;
+    private Counter deliveredUpdates;
+
+    @PostConstruct
+    void init() {
+        conflatedTypes = resourceTypes.map(Set::copyOf).orElse(Set.of());
+        if (conflatedTypes.isEmpty()) {
+            return;
+        }
+        conflatedUpdates = Counter.builder("subscription.conflation.updates")
+                .description("Resource updates replaced by a newer update within the conflation window")
+                .tag("result", "conflated")
+                .register(meterRegistry);
+        deliveredUpdates = Counter.builder("subscription.conflation.updates")
+                .description("Resource updates delivered at the end of the conflation window")
+                .tag("result", "delivered")
+                .register(meterRegistry);
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("resource-update-conflator")
+                .daemon()
+                .factory());
+        deliveries = Executors.newVirtualThreadPerTaskExecutor();
+        log.info("Resource update conflation enabled. resourceTypes={}, window={}", conflatedTypes, window);
+    }
+
+    @PreDestroy
+    void destroy() {
+        if (scheduler == null) {
+            return;
+        }
+        closing = true;
+        scheduler.shutdownNow();
+        // deliver what is still pending instead of dropping the newest state
+        conflations.keySet().forEach(this::closeWindow);
+        // waits for the deliveries in flight and the updates queued behind them
+        deliveries.close();
+    }
+
+    public boolean isConflated(final String resourceType) {
+        return conflatedTypes.contains(resourceType);
+    }
+
+    /**
+     * Queues the delivery of a resource update, replacing a pending delivery of the same resource.
+     */
+    public void submit(final Resource resource, final Runnable delivery) {
+        final var windowOpened = new boolean[1];
+        conflations.compute(resource, (key, conflation) -> {
+            final var current = conflation == null ? new Conflation() : conflation;
+            if (current.pending != null) {
+                conflatedUpdates.increment();
+            }
+            current.pending = delivery;
+            if (!current.windowOpen && !current.delivering) {
+                current.windowOpen = true;
+                windowOpened[0] = true;
+            }
+            return current;
+        });
+        if (windowOpened[0]) {
+            scheduleWindowClose(resource);
+        }
+    }
+
+    private void scheduleWindowClose(final Resource resource) {
+        if (closing) {
+            closeWindow(resource);
+            return;
+        }
+        try {
+            scheduler.schedule(() -> closeWindow(resource), window.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shut down in the meantime
+            closeWindow(resource);
+        }
+    }
+
+    private void closeWindow(final Resource resource) {
+        final var delivery = new Runnable[1];
+        conflations.computeIfPresent(resource, (key, conflation) -> {
+            conflation.windowOpen = false;
+            if (!conflation.delivering && conflation.pending != null) {
+                delivery[0] = conflation.pending;
+                conflation.pending = null;
+                conflation.delivering = true;
+            }
+            return conflation;
+        });
+        if (delivery[0] != null) {
+            deliver(resource, delivery[0]);
+        }
+    }
+
+    private void deliver(final Resource resource, final Runnable delivery) {
+        deliveredUpdates.increment();
+        final Runnable task = () -> {
+            try {
+                delivery.run();
+            } catch (RuntimeException e) {
+                log.error("Conflated resource update failed. resourceType={}, resourceId={}", resource.resourceType(),
+                        resource.resourceId(), e);
+            } finally {
+                delivered(resource);
+            }
+        };
+        if (closing) {
+            task.run();
+        } else {
+            // never blocks the scheduler thread, a resource has at most one delivery in flight
+            deliveries.execute(task);
+        }
+    }
+
+    private void delivered(final Resource resource) {
+        final var windowOpened = new boolean[1];
+        conflations.computeIfPresent(resource, (key, conflation) -> {
+            conflation.delivering = false;
+            if (conflation.pending == null) {
+                return conflation.windowOpen ? conflation : null;
+            }
+            if (!conflation.windowOpen) {
+                conflation.windowOpen = true;
+                windowOpened[0] = true;
+            }
+            return conflation;
+        });
+        if (windowOpened[0]) {
+            scheduleWindowClose(resource);
+        }
+    }
+
+    /**
+     * Conflation state of one resource, only changed inside the map's compute functions.
+     */
+    private static final class Conflation {
+        private Runnable pending;
+        private boolean windowOpen;
+        private boolean delivering;
+    }
+}
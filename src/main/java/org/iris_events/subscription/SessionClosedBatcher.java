@@ -0,0 +1,141 @@
+package org.iris_events.subscription;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.ShutdownEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Collects closed sessions and tears them down together, once per window or as soon as a batch is full. The
+ * SessionClosed message is acknowledged when the session is queued, so sessions still queued when a node crashes are
+ * left for the ttl based cleanup. The queue is flushed on shutdown while the Redis client is still open; sessions closed
+ * after that are removed right away.
+ */
+@ApplicationScoped
+public class SessionClosedBatcher {
+    private static final Logger log = LoggerFactory.getLogger(SessionClosedBatcher.class);
+
+    @ConfigProperty(name = "subscription.session-closed.batch.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "subscription.session-closed.batch.window", defaultValue = "PT0.1S")
+    Duration window;
+
+    @ConfigProperty(name = "subscription.session-closed.batch.max-size", defaultValue = "500")
+    int maxSize;
+
+    @Inject
+    SubscriptionManager subscriptionManager;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    final LinkedBlockingQueue<String> sessionIds = new LinkedBlockingQueue<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    ScheduledThreadPoolExecutor executor;
+    private Counter closedSessions;
+    private DistributionSummary batchSize;
+    private Timer batchDuration;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        closedSessions = Counter.builder("subscription.session-closed.sessions")
+                .description("Closed sessions torn down in batches")
+                .register(meterRegistry);
+        batchSize = DistributionSummary.builder("subscription.session-closed.batch.size")
+                .description("Sessions per session close batch")
+                .register(meterRegistry);
+        batchDuration = Timer.builder("subscription.session-closed.batch.duration")
+                .description("Time to tear down a session close batch")
+                .register(meterRegistry);
+        executor = new ScheduledThreadPoolExecutor(1, Thread.ofPlatform()
+                .name("session-closed-batcher")
+                .daemon()
+                .factory());
+        executor.scheduleWithFixedDelay(this::flush, window.toMillis(), window.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Session close batching enabled. window={}, maxSize={}", window, maxSize);
+    }
+
+    /**
+     * Flushes on the shutdown event rather than on bean destruction, which may run after the Redis client is closed.
+     */
+    void shutdown(@Observes ShutdownEvent event) {
+        destroy();
+    }
+
+    void destroy() {
+        if (executor == null || executor.isShutdown()) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(window.toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void add(final String sessionId) {
+        sessionIds.add(sessionId);
+        if (executor.isShutdown()) {
+            flush();
+            return;
+        }
+        // a queued flush drains everything added until it runs, one is enough
+        if (sessionIds.size() >= maxSize && flushQueued.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    flushQueued.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                // shut down in the meantime
+                flushQueued.set(false);
+                flush();
+            }
+        }
+    }
+
+    synchronized void flush() {
+        while (!sessionIds.isEmpty()) {
+            final var batch = new ArrayList<String>(maxSize);
+            sessionIds.drainTo(batch, maxSize);
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                batchDuration.record(() -> subscriptionManager.unsubscribeAll(batch));
+                closedSessions.increment(batch.size());
+                batchSize.record(batch.size());
+                log.info("Closed sessions removed. sessions={}, pending={}", batch.size(), sessionIds.size());
+            } catch (RuntimeException e) {
+                log.error("Could not remove closed sessions. sessions={}", batch.size(), e);
+            }
+        }
+    }
+}
@@ -1,57 +1,271 @@
 package org.iris_events.subscription;
 
 import java.io.IOException;
-import java.util.UUID;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
+
 import org.iris_events.common.Exchanges;
+import org.iris_events.common.MessagingHeaders;
 import org.iris_events.runtime.BasicPropertiesProvider;
-import org.iris_events.runtime.channel.ChannelService;
 import org.iris_events.producer.EventProducer;
 import org.iris_events.producer.RoutingDetails;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import jakarta.inject.Named;
 
 @ApplicationScoped
 public class SubscriptionEventProducer {
     private static final Logger log = LoggerFactory.getLogger(SubscriptionEventProducer.class);
-    private static final String CHANNEL_ID = "iris-subscription" + UUID.randomUUID();
+    private static final AMQP.BasicProperties PARTITIONED_UPDATE_PROPERTIES = new AMQP.BasicProperties.Builder()
+            .contentType("application/json")
+            .deliveryMode(2)
+            .build();
     private final EventProducer eventProducer;
-    private final ChannelService channelService;
+    private final ProducerChannelPool channelPool;
     private final BasicPropertiesProvider basicPropertiesProvider;
+    private final Timer fanOutTimer;
+    private final DistributionSummary fanOutSubscribers;
+
+    @ConfigProperty(name = "subscription.producer.confirms.enabled", defaultValue = "false")
+    boolean confirmsEnabled;
+
+    @ConfigProperty(name = "subscription.producer.confirms.timeout", defaultValue = "PT5S")
+    Duration confirmsTimeout;
+
+    @ConfigProperty(name = "subscription.producer.parallel-threshold", defaultValue = "1000")
+    int parallelThreshold;
 
     @Inject
     public SubscriptionEventProducer(final EventProducer eventProducer,
-            final @Named("producerChannelService") ChannelService channelService,
-            final BasicPropertiesProvider basicPropertiesProvider) {
+            final ProducerChannelPool channelPool,
+            final BasicPropertiesProvider basicPropertiesProvider,
+            final MeterRegistry meterRegistry) {
         this.eventProducer = eventProducer;
-        this.channelService = channelService;
+        this.channelPool = channelPool;
         this.basicPropertiesProvider = basicPropertiesProvider;
+        this.fanOutTimer = Timer.builder("subscription.fanout.duration")
+                .description("Time to publish one resource update to all of its subscribers")
+                .register(meterRegistry);
+        this.fanOutSubscribers = DistributionSummary.builder("subscription.fanout.subscribers")
+                .description("Number of subscribers a resource update was published to")
+                .register(meterRegistry);
     }
 
     public void sendResourceMessage(String resourceType, String resourceId, byte[] payloadAsBytes,
             RoutingDetails routingDetails) {
         final var amqpBasicProperties = basicPropertiesProvider.getOrCreateAmqpBasicProperties(routingDetails);
+        // the same slot as the fan-out to this session, so a snapshot and later updates keep their order
+        final var slot = channelPool.slotFor(sessionId(amqpBasicProperties));
+        publish(slot, Exchanges.SESSION.getValue(), resourceType, resourceId, routingDetails.getRoutingKey(),
+                amqpBasicProperties, payloadAsBytes);
+    }
+
+    /**
+     * Publishes one resource update to the resource exchange for all of its subscribers. The update is not addressed to a
+     * session or user, so the session and user headers of the message being handled are not passed on. Updates of one
+     * resource share a channel and keep their order.
+     */
+    public void sendResourceUpdate(final String exchange, final String resourceType, final String resourceId,
+            final byte[] payloadAsBytes, final RoutingDetails routingDetails) {
+        final var amqpBasicProperties = withoutAddressing(
+                basicPropertiesProvider.getOrCreateAmqpBasicProperties(routingDetails));
         final var routingKey = routingDetails.getRoutingKey();
+        publish(channelPool.slotFor(routingKey), exchange, resourceType, resourceId, routingKey, amqpBasicProperties,
+                payloadAsBytes);
+    }
+
+    /**
+     * Re-publishes a resource update to the partition exchange, for the node owning the partition of the resource.
+     * Updates of one resource share a channel and keep their order.
+     */
+    public void sendPartitionedUpdate(final String exchange, final String partition, final String resourceType,
+            final String resourceId, final byte[] payloadAsBytes) {
+        publish(channelPool.slotFor(ResourceRoutingKey.of(resourceType, resourceId)), exchange, resourceType, resourceId,
+                partition, PARTITIONED_UPDATE_PROPERTIES, payloadAsBytes);
+    }
+
+    /**
+     * Publishes one resource update to many sessions. The AMQP properties are built once per update and only the session
+     * header differs between the published messages. Sessions are sharded over the producer channels, large fan-outs
+     * publish on all channels in parallel. With publisher confirms enabled, each channel's share is confirmed at once
+     * after its last publish.
+     */
+    public void sendResourceMessages(final String resourceType, final String resourceId, final byte[] payloadAsBytes,
+            final RoutingDetails routingDetails, final Collection<String> sessionIds) {
+        final var sample = Timer.start();
+        final var amqpBasicProperties = basicPropertiesProvider.getOrCreateAmqpBasicProperties(routingDetails);
+        final var routingKey = routingDetails.getRoutingKey();
+        if (log.isDebugEnabled()) {
+            log.debug("Sending messages. exchange={}, routingKey={}, amqpBasicProperties={}, resourceType={}, resourceId={}, subscribers={}",
+                    Exchanges.SESSION.getValue(), routingKey, amqpBasicProperties, resourceType, resourceId,
+                    sessionIds.size());
+        }
+
+        final var sessionIdsBySlot = sessionIds.stream().collect(Collectors.groupingBy(channelPool::slotFor));
+        try {
+            if (sessionIdsBySlot.size() > 1 && sessionIds.size() >= parallelThreshold) {
+                try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                    sessionIdsBySlot.forEach((slot, slotSessionIds) -> executor.execute(
+                            () -> publish(slot, resourceType, resourceId, routingKey, amqpBasicProperties, payloadAsBytes,
+                                    slotSessionIds)));
+                }
+            } else {
+                sessionIdsBySlot.forEach((slot, slotSessionIds) -> publish(slot, resourceType, resourceId, routingKey,
+                        amqpBasicProperties, payloadAsBytes, slotSessionIds));
+            }
+        } finally {
+            sample.stop(fanOutTimer);
+            fanOutSubscribers.record(sessionIds.size());
+        }
+    }
+
+    /**
+     * Publishes the messages of one session in order on the channel of the session, as one batch instead of one producer
+     * call per message. With publisher confirms enabled the batch is confirmed at once after its last publish.
+     */
+    public void sendSessionMessages(final String sessionId, final List<SessionMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        final var exchange = Exchanges.SESSION.getValue();
+        final var slot = channelPool.slotFor(sessionId);
+        Channel channel = null;
+        try {
+            channel = channelPool.channel(slot);
+            if (confirmsEnabled && channel.getNextPublishSeqNo() == 0) {
+                channel.confirmSelect();
+            }
+            for (SessionMessage message : messages) {
+                final var routingDetails = message.routingDetails();
+                final var amqpBasicProperties = basicPropertiesProvider.getOrCreateAmqpBasicProperties(routingDetails);
+                if (log.isDebugEnabled()) {
+                    log.debug("Sending message. exchange={}, routingKey={}, amqpBasicProperties={}, resourceType={}, resourceId={}",
+                            exchange, routingDetails.getRoutingKey(), amqpBasicProperties, message.resourceType(),
+                            message.resourceId());
+                }
+                channel.basicPublish(exchange, routingDetails.getRoutingKey(), true, amqpBasicProperties,
+                        message.payload());
+            }
+            if (confirmsEnabled && !channel.waitForConfirms(confirmsTimeout.toMillis())) {
+                log.warn("Session messages were nacked by the broker. exchange={}, sessionId={}, messages={}", exchange,
+                        sessionId, messages.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error(String.format("Interrupted while sending session messages. exchange=%s, sessionId=%s, messages=%s",
+                    exchange, sessionId, messages.size()), e);
+        } catch (IOException | TimeoutException | ShutdownSignalException e) {
+            if (channel != null) {
+                channelPool.failed(slot, channel, e);
+            }
+            log.error(String.format("Could not send session messages. exchange=%s, sessionId=%s, messages=%s",
+                    exchange, sessionId, messages.size()), e);
+        }
+    }
+
+    public void declareTopicExchange(final String exchange) throws IOException {
+        channelPool.channel(channelPool.slotForCurrentThread()).exchangeDeclare(exchange, BuiltinExchangeType.TOPIC, true);
+    }
+
+    public void send(final Object message) {
+        eventProducer.send(message);
+    }
+
+    private void publish(final int slot, final String exchange, final String resourceType, final String resourceId,
+            final String routingKey, final AMQP.BasicProperties amqpBasicProperties, final byte[] payloadAsBytes) {
+        Channel channel = null;
         try {
             if (log.isDebugEnabled()) {
                 log.debug("Sending message. exchange={}, routingKey={}, amqpBasicProperties={}, resourceType={}, resourceId={}",
-                        Exchanges.SESSION.getValue(), routingKey, amqpBasicProperties, resourceType, resourceId);
+                        exchange, routingKey, amqpBasicProperties, resourceType, resourceId);
+            }
+            channel = channelPool.channel(slot);
+            channel.basicPublish(exchange, routingKey, true, amqpBasicProperties, payloadAsBytes);
+        } catch (IOException | ShutdownSignalException e) {
+            if (channel != null) {
+                channelPool.failed(slot, channel, e);
             }
-            final var channel = channelService.getOrCreateChannelById(CHANNEL_ID);
-            channel.basicPublish(Exchanges.SESSION.getValue(), routingKey, true, amqpBasicProperties, payloadAsBytes);
-        } catch (IOException e) {
             log.error(
                     String.format("Could not send resource message. exchange=%s, routingKey=%s, resourceType=%s, resourceId=%s",
-                            Exchanges.SESSION.getValue(), routingKey, resourceType, resourceId),
+                            exchange, routingKey, resourceType, resourceId),
                     e);
         }
     }
 
-    public void send(final Object message) {
-        eventProducer.send(message);
+    private void publish(final int slot, final String resourceType, final String resourceId, final String routingKey,
+            final AMQP.BasicProperties amqpBasicProperties, final byte[] payloadAsBytes, final List<String> sessionIds) {
+        final var exchange = Exchanges.SESSION.getValue();
+        Channel channel = null;
+        try {
+            channel = channelPool.channel(slot);
+            // the next publish sequence number stays 0 until the channel is put into confirm mode
+            if (confirmsEnabled && channel.getNextPublishSeqNo() == 0) {
+                channel.confirmSelect();
+            }
+            for (String sessionId : sessionIds) {
+                channel.basicPublish(exchange, routingKey, true, withSessionId(amqpBasicProperties, sessionId),
+                        payloadAsBytes);
+            }
+            if (confirmsEnabled && !channel.waitForConfirms(confirmsTimeout.toMillis())) {
+                log.warn("Resource messages were nacked by the broker. exchange={}, routingKey={}, resourceType={}, resourceId={}, subscribers={}",
+                        exchange, routingKey, resourceType, resourceId, sessionIds.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error(String.format("Interrupted while sending resource messages. exchange=%s, routingKey=%s, resourceType=%s, resourceId=%s",
+                    exchange, routingKey, resourceType, resourceId), e);
+        } catch (IOException | TimeoutException | ShutdownSignalException e) {
+            if (channel != null) {
+                channelPool.failed(slot, channel, e);
+            }
+            log.error(String.format("Could not send resource messages. exchange=%s, routingKey=%s, resourceType=%s, resourceId=%s",
+                    exchange, routingKey, resourceType, resourceId), e);
+        }
+    }
+
+    private static String sessionId(final AMQP.BasicProperties properties) {
+        final var headers = properties.getHeaders();
+        return headers == null ? null : Objects.toString(headers.get(MessagingHeaders.Message.SESSION_ID), null);
+    }
+
+    private static AMQP.BasicProperties withoutAddressing(final AMQP.BasicProperties properties) {
+        if (properties.getHeaders() == null) {
+            return properties;
+        }
+        final var headers = new HashMap<>(properties.getHeaders());
+        headers.remove(MessagingHeaders.Message.SESSION_ID);
+        headers.remove(MessagingHeaders.Message.USER_ID);
+        return properties.builder().headers(headers).build();
+    }
+
+    private static AMQP.BasicProperties withSessionId(final AMQP.BasicProperties properties, final String sessionId) {
+        final var headers = properties.getHeaders() == null
+                ? new HashMap<String, Object>()
+                : new HashMap<>(properties.getHeaders());
+        headers.put(MessagingHeaders.Message.SESSION_ID, sessionId);
+        return properties.builder().headers(headers).build();
+    }
+
+    /**
+     * Message of a batch published by {@link #sendSessionMessages(String, List)}.
+     */
+    public record SessionMessage(String resourceType, String resourceId, byte[] payload, RoutingDetails routingDetails) {
     }
 }
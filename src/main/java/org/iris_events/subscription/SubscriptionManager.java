@@ -1,26 +1,39 @@
 package org.iris_events.subscription;
 
+import java.util.Collection;
 import java.util.Set;
 
 import org.iris_events.subscription.collection.SubscriptionCollection;
 import org.iris_events.subscription.model.Resource;
 import org.iris_events.subscription.model.Subscription;
 import org.iris_events.subscription.validation.SubscriptionValidator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import io.quarkus.scheduler.Scheduled;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
 @ApplicationScoped
 public class SubscriptionManager {
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionManager.class);
+
     SubscriptionCollection subscriptionCollection;
+    CleanupCoordinator cleanupCoordinator;
 
     @Inject
-    public SubscriptionManager(SubscriptionCollection subscriptionCollection) {
+    public SubscriptionManager(SubscriptionCollection subscriptionCollection, CleanupCoordinator cleanupCoordinator) {
         this.subscriptionCollection = subscriptionCollection;
+        this.cleanupCoordinator = cleanupCoordinator;
     }
 
-    @Scheduled(every = "${subscription.cleanup.interval}")
+    @Scheduled(every = "${subscription.cleanup.interval}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
     public void cleanup() {
+        // node-local subscriptions are cleaned up by every node itself
+        if (subscriptionCollection.sharedAcrossNodes() && !cleanupCoordinator.tryAcquire()) {
+            log.debug("Cleanup lease held by another node, skipping cleanup.");
+            return;
+        }
         this.subscriptionCollection.cleanUp();
     }
 
@@ -29,6 +42,11 @@ public class SubscriptionManager {
         subscriptionCollection.insert(subscription);
     }
 
+    public void addSubscriptions(Collection<Subscription> subscriptions) {
+        subscriptions.forEach(SubscriptionValidator::validate);
+        subscriptionCollection.insertAll(subscriptions);
+    }
+
     public Set<Subscription> getSubscriptions(String resourceType, String resourceId) {
         return subscriptionCollection.get(new Resource(resourceType, resourceId));
     }
@@ -37,6 +55,10 @@ public class SubscriptionManager {
         subscriptionCollection.remove(sessionId);
     }
 
+    public void unsubscribeAll(Collection<String> sessionIds) {
+        subscriptionCollection.removeAll(sessionIds);
+    }
+
     public void unsubscribe(String sessionId, String resourceType, String resourceId) {
         subscriptionCollection.remove(sessionId, resourceType, resourceId);
     }
@@ -0,0 +1,34 @@
+package org.iris_events.subscription;
+
+import org.iris_events.subscription.collection.SubscriptionCollection;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+
+/**
+ * Exposes the subscription counts of the {@link SubscriptionCollection} as gauges. The counts are read on every scrape,
+ * so they rely on the collection answering them in constant time.
+ */
+@ApplicationScoped
+public class SubscriptionMetrics {
+
+    private final SubscriptionCollection subscriptionCollection;
+    private final MeterRegistry meterRegistry;
+
+    public SubscriptionMetrics(final SubscriptionCollection subscriptionCollection, final MeterRegistry meterRegistry) {
+        this.subscriptionCollection = subscriptionCollection;
+        this.meterRegistry = meterRegistry;
+    }
+
+    void startup(@Observes StartupEvent event) {
+        Gauge.builder("subscription.subscriptions", subscriptionCollection, SubscriptionCollection::size)
+                .description("Number of active subscriptions")
+                .register(meterRegistry);
+        Gauge.builder("subscription.sessions", subscriptionCollection, SubscriptionCollection::sessionSubscriptionCount)
+                .description("Number of sessions with at least one subscription")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,60 @@
+package org.iris_events.subscription;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * Runs handler work on virtual threads. The number of tasks in flight is bounded so a burst of messages can not exhaust
+ * the Redis connection pool wait queue; once the limit is reached the dispatching thread waits, which pushes back on
+ * message delivery. Tasks with an equal key run one after another in dispatch order, so the work on one resource or
+ * session is not reordered.
+ */
+@ApplicationScoped
+public class VirtualThreadDispatcher {
+    @ConfigProperty(name = "subscription.consumer.virtual-threads.max-concurrency", defaultValue = "256")
+    int maxConcurrency;
+
+    private ExecutorService executor;
+    private Semaphore permits;
+    private KeyedSequencer<Object> sequencer;
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        permits = new Semaphore(maxConcurrency);
+        sequencer = new KeyedSequencer<>(executor);
+    }
+
+    @PreDestroy
+    void destroy() {
+        // waits for the tasks in flight
+        executor.close();
+    }
+
+    /**
+     * Executor starting a virtual thread per task, without the limit of tasks in flight.
+     */
+    public Executor executor() {
+        return executor;
+    }
+
+    /**
+     * Runs the task on a virtual thread once the tasks dispatched before with an equal key have completed. Queued tasks
+     * count towards the limit of tasks in flight. The returned future completes with the task.
+     */
+    public CompletableFuture<Void> dispatch(final Object key, final Runnable task) {
+        permits.acquireUninterruptibly();
+        final var completion = sequencer.submit(key, () -> CompletableFuture.runAsync(task, executor));
+        completion.whenComplete((ignored, failure) -> permits.release());
+        return completion;
+    }
+}
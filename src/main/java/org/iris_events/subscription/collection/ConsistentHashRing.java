@@ -0,0 +1,66 @@
+package org.iris_events.subscription.collection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.iris_events.subscription.exception.SubscriptionException;
+
+/**
+ * Consistent hash ring mapping keys to named nodes. Every node is placed on the ring at a number of virtual points, so
+ * keys spread evenly and adding a node only moves the keys falling into its new ranges, about 1/n of them.
+ */
+public class ConsistentHashRing<T> {
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+    private final Map<String, T> nodes;
+
+    public ConsistentHashRing(final Map<String, T> nodes, final int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new SubscriptionException("Consistent hash ring needs at least one node");
+        }
+        this.nodes = Map.copyOf(nodes);
+        nodes.keySet().forEach(name -> {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(name + "#" + i), name);
+            }
+        });
+    }
+
+    public T get(final String key) {
+        return nodes.get(getName(key));
+    }
+
+    public String getName(final String key) {
+        final var entry = ring.ceilingEntry(hash(key));
+        return entry == null ? ring.firstEntry().getValue() : entry.getValue();
+    }
+
+    public Collection<T> nodes() {
+        return nodes.values();
+    }
+
+    public List<String> names() {
+        return List.copyOf(nodes.keySet());
+    }
+
+    /**
+     * 64 bit FNV-1a followed by the murmur3 finalizer, which spreads the similar keys and virtual node names over the
+     * whole ring.
+     */
+    static long hash(final String key) {
+        var hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,196 @@
+package org.iris_events.subscription.collection;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iris_events.subscription.model.Resource;
+import org.iris_events.subscription.model.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * Subscription collection kept in the memory of the node, for single node deployments, edge nodes and tests. Lookups
+ * by resource and by session are served from two concurrent indexes without any network round trip.
+ * <p>
+ * Every change of a session's subscriptions runs inside a {@link ConcurrentHashMap#compute} of that session, which
+ * also updates the resource index, so both indexes always agree and concurrent inserts and removals of the same
+ * session are serialized. Resource keys are interned: every session subscribed to a resource holds the same
+ * {@link Resource} instance as the resource index.
+ * <p>
+ * Selected with the build property {@code subscription.collection.type=memory}. Subscriptions are not shared with other
+ * nodes and do not survive a restart; they expire after the ttl like their Redis counterparts and are not returned once
+ * expired, even before {@link #cleanUp()} removes them. Snapshots are still stored in Redis, and the reactive execution
+ * mode, which reads the Redis collection directly, is rejected at startup.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "subscription.collection.type", stringValue = "memory")
+public class InMemorySubscriptionCollection implements SubscriptionCollection {
+    private static final Logger log = LoggerFactory.getLogger(InMemorySubscriptionCollection.class);
+
+    @ConfigProperty(name = "subscription.collection.memory.ttl", defaultValue = "86400")
+    long ttl;
+
+    LongSupplier clock = System::currentTimeMillis;
+
+    private final ConcurrentHashMap<Resource, ResourceSessions> sessionsByResource = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Map<Resource, Long>> resourcesBySession = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+
+    @Override
+    public void insert(final Subscription subscription) {
+        insertAll(List.of(subscription));
+    }
+
+    @Override
+    public void insertAll(final Collection<Subscription> subscriptions) {
+        final var expiresAt = clock.getAsLong() + Duration.ofSeconds(ttl).toMillis();
+        for (Subscription subscription : subscriptions) {
+            final var sessionId = subscription.sessionId();
+            if (sessionId == null) {
+                continue;
+            }
+            final var resource = new Resource(subscription.resourceType(), subscription.resourceId());
+            resourcesBySession.compute(sessionId, (key, resources) -> {
+                final var sessionResources = resources == null ? new ConcurrentHashMap<Resource, Long>() : resources;
+                final var canonical = addSession(resource, sessionId);
+                if (sessionResources.put(canonical, expiresAt) == null) {
+                    subscriptionCount.incrementAndGet();
+                }
+                return sessionResources;
+            });
+        }
+    }
+
+    @Override
+    public Set<Subscription> get(final Resource resource) {
+        final var entry = sessionsByResource.get(resource);
+        if (entry == null) {
+            return Set.of();
+        }
+        final var now = clock.getAsLong();
+        return entry.sessionIds().stream()
+                .filter(sessionId -> isActive(resourcesBySession.get(sessionId), resource, now))
+                .map(sessionId -> new Subscription(resource.resourceType(), resource.resourceId(), sessionId))
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Set<Subscription> get(final String sessionId) {
+        final var resources = resourcesBySession.get(sessionId);
+        if (resources == null) {
+            return Set.of();
+        }
+        final var now = clock.getAsLong();
+        return resources.entrySet().stream()
+                .filter(entry -> entry.getValue() > now)
+                .map(Map.Entry::getKey)
+                .map(resource -> new Subscription(resource.resourceType(), resource.resourceId(), sessionId))
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public void remove(final String sessionId) {
+        resourcesBySession.computeIfPresent(sessionId, (key, resources) -> {
+            resources.keySet().forEach(resource -> removeSession(resource, sessionId));
+            subscriptionCount.addAndGet(-resources.size());
+            return null;
+        });
+    }
+
+    @Override
+    public void removeAll(final Collection<String> sessionIds) {
+        sessionIds.forEach(this::remove);
+    }
+
+    /**
+     * Removes the subscription of the session on one resource or, with a null resource id, on all resources of the type.
+     */
+    @Override
+    public void remove(final String sessionId, final String resourceType, final String resourceId) {
+        resourcesBySession.computeIfPresent(sessionId, (key, resources) -> {
+            resources.keySet().removeIf(resource -> {
+                final var matches = resource.resourceType().equals(resourceType)
+                        && (resourceId == null || resource.resourceId().equals(resourceId));
+                if (matches) {
+                    removeSession(resource, sessionId);
+                    subscriptionCount.decrementAndGet();
+                }
+                return matches;
+            });
+            return resources.isEmpty() ? null : resources;
+        });
+    }
+
+    @Override
+    public int size() {
+        return subscriptionCount.get();
+    }
+
+    @Override
+    public int sessionSubscriptionCount() {
+        return resourcesBySession.size();
+    }
+
+    /**
+     * Removes the subscriptions whose ttl has passed. Both indexes are kept in sync on every change, so there are no
+     * dangling pointers to sweep.
+     */
+    @Override
+    public void cleanUp() {
+        final var now = clock.getAsLong();
+        final var removed = new AtomicInteger();
+        resourcesBySession.keySet().forEach(sessionId -> resourcesBySession.computeIfPresent(sessionId,
+                (key, resources) -> {
+                    resources.entrySet().removeIf(entry -> {
+                        if (entry.getValue() > now) {
+                            return false;
+                        }
+                        removeSession(entry.getKey(), sessionId);
+                        subscriptionCount.decrementAndGet();
+                        removed.incrementAndGet();
+                        return true;
+                    });
+                    return resources.isEmpty() ? null : resources;
+                }));
+        log.info("Removed expired subscriptions. removed={}", removed.get());
+    }
+
+    @Override
+    public boolean sharedAcrossNodes() {
+        return false;
+    }
+
+    private static boolean isActive(final Map<Resource, Long> resources, final Resource resource, final long now) {
+        final var expiresAt = resources == null ? null : resources.get(resource);
+        return expiresAt != null && expiresAt > now;
+    }
+
+    private Resource addSession(final Resource resource, final String sessionId) {
+        return sessionsByResource.compute(resource, (key, entry) -> {
+            final var sessions = entry == null ? new ResourceSessions(key, ConcurrentHashMap.newKeySet()) : entry;
+            sessions.sessionIds().add(sessionId);
+            return sessions;
+        }).resource();
+    }
+
+    private void removeSession(final Resource resource, final String sessionId) {
+        sessionsByResource.computeIfPresent(resource, (key, entry) -> {
+            entry.sessionIds().remove(sessionId);
+            return entry.sessionIds().isEmpty() ? null : entry;
+        });
+    }
+
+    private record ResourceSessions(Resource resource, Set<String> sessionIds) {
+    }
+}
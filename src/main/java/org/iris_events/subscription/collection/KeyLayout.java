@@ -0,0 +1,16 @@
+package org.iris_events.subscription.collection;
+
+/**
+ * Layout of the Redis keys.
+ * <ul>
+ * <li>{@link #STANDARD} - {@code subscription|<sessionId>|<type>|<id>}, {@code sessionIdSub|<sessionId>},
+ * {@code resTypeResIdSub|<type>|<id>}</li>
+ * <li>{@link #TAGGED} - the same keys with Redis Cluster hash tags: {@code subscription|{<sessionId>}|<type>|<id>},
+ * {@code sessionIdSub|{<sessionId>}}, {@code resTypeResIdSub|{<type>|<id>}}. The subscriptions of a session share
+ * the slot of its session set, and a snapshot shares the slot of its content hash.</li>
+ * </ul>
+ */
+public enum KeyLayout {
+    STANDARD,
+    TAGGED
+}
@@ -0,0 +1,134 @@
+package org.iris_events.subscription.collection;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iris_events.subscription.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.redis.client.RedisClient;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.vertx.redis.client.Response;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Membership of the nodes sharing the resource partitions. Every node writes a heartbeat into a sorted set in Redis;
+ * nodes missing heartbeats for the member timeout are dropped. The live members are placed on a consistent hash ring,
+ * which assigns each of the fixed number of partitions to one node, so a joining or leaving node only moves its share
+ * of the partitions. Listeners are told which partitions this node acquired and lost on every membership change.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "subscription.collection.type", stringValue = "partitioned")
+public class PartitionMembership {
+    private static final Logger log = LoggerFactory.getLogger(PartitionMembership.class);
+
+    @ConfigProperty(name = "subscription.partitioning.partitions", defaultValue = "256")
+    int partitions;
+
+    @ConfigProperty(name = "subscription.partitioning.virtual-nodes", defaultValue = "160")
+    int virtualNodes;
+
+    @ConfigProperty(name = "subscription.partitioning.member-timeout", defaultValue = "PT15S")
+    Duration memberTimeout;
+
+    @Inject
+    RedisClient redisClient;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<BiConsumer<Set<Integer>, Set<Integer>>> listeners = new CopyOnWriteArrayList<>();
+    private volatile List<String> members = List.of();
+    private volatile Set<Integer> ownedPartitions = Set.of();
+
+    void startup(@Observes StartupEvent event) {
+        heartbeat();
+    }
+
+    @Scheduled(every = "${subscription.partitioning.heartbeat-interval}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void heartbeat() {
+        final var now = System.currentTimeMillis();
+        redisClient.zadd(List.of(Utils.PARTITION_MEMBERS_KEY, String.valueOf(now), nodeId));
+        redisClient.zremrangebyscore(Utils.PARTITION_MEMBERS_KEY, "-inf",
+                String.valueOf(now - memberTimeout.toMillis()));
+        final var current = redisClient.zrange(List.of(Utils.PARTITION_MEMBERS_KEY, "0", "-1")).stream()
+                .map(Response::toString)
+                .toList();
+        updateMembers(current);
+    }
+
+    /**
+     * Leaves the membership right away, so the other nodes take over the partitions without waiting for the timeout.
+     */
+    @PreDestroy
+    void leave() {
+        try {
+            redisClient.zrem(List.of(Utils.PARTITION_MEMBERS_KEY, nodeId));
+        } catch (RuntimeException e) {
+            log.warn("Could not leave partition membership. nodeId={}", nodeId, e);
+        }
+    }
+
+    synchronized void updateMembers(final List<String> current) {
+        if (current.equals(members) || !current.contains(nodeId)) {
+            return;
+        }
+        final var ring = new ConsistentHashRing<>(
+                current.stream().collect(Collectors.toMap(Function.identity(), Function.identity())), virtualNodes);
+        final var owned = IntStream.range(0, partitions)
+                .filter(partition -> nodeId.equals(ring.getName(String.valueOf(partition))))
+                .boxed()
+                .collect(Collectors.toUnmodifiableSet());
+        final var acquired = new HashSet<>(owned);
+        acquired.removeAll(ownedPartitions);
+        final var lost = new HashSet<>(ownedPartitions);
+        lost.removeAll(owned);
+
+        members = current;
+        ownedPartitions = owned;
+        log.info("Partition membership changed. nodeId={}, members={}, owned={}, acquired={}, lost={}", nodeId,
+                current.size(), owned.size(), acquired.size(), lost.size());
+        listeners.forEach(listener -> listener.accept(Set.copyOf(acquired), Set.copyOf(lost)));
+    }
+
+    /**
+     * Registers a listener for (acquired, lost) partitions. It is called right away with the partitions owned so far.
+     */
+    public synchronized void onOwnershipChange(final BiConsumer<Set<Integer>, Set<Integer>> listener) {
+        listeners.add(listener);
+        if (!ownedPartitions.isEmpty()) {
+            listener.accept(ownedPartitions, Set.of());
+        }
+    }
+
+    public int partitionOf(final Resource resource) {
+        return (int) Math.floorMod(ConsistentHashRing.hash(Utils.getUniqueResId(resource.resourceType(),
+                resource.resourceId())), (long) partitions);
+    }
+
+    public boolean owns(final int partition) {
+        return ownedPartitions.contains(partition);
+    }
+
+    public Set<Integer> ownedPartitions() {
+        return ownedPartitions;
+    }
+
+    String nodeId() {
+        return nodeId;
+    }
+}
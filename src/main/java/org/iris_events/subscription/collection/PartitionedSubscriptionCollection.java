@@ -0,0 +1,234 @@
+package org.iris_events.subscription.collection;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iris_events.subscription.model.Resource;
+import org.iris_events.subscription.model.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Alternative;
+import jakarta.inject.Inject;
+
+/**
+ * Subscription collection where every node owns a share of the resources, assigned by {@link PartitionMembership}.
+ * Resource updates are routed to the owner of their partition by {@code PartitionBindings}, and the owner serves the
+ * subscriber lookups of its partitions from an in-memory index. Subscriptions stay in Redis, the durable store every
+ * node writes to, and lookups of resources of other partitions, or of partitions not yet warmed up, are read from it.
+ * <p>
+ * A partition is served from memory once it is warmed up, by scanning the resource sets in Redis after the partition
+ * was acquired; this is the handoff from the previous owner. Changes made by any node are picked up through keyspace
+ * notifications on the resource sets: the entry is dropped and reloaded, and lookups go to Redis until the reload is
+ * done. Notifications are not delivered while the node is disconnected, so the owned partitions are re-warmed every
+ * resync interval.
+ * <p>
+ * Selected with the build property {@code subscription.collection.type=partitioned}.
+ */
+@ApplicationScoped
+@Alternative
+@Priority(1)
+@IfBuildProperty(name = "subscription.collection.type", stringValue = "partitioned")
+public class PartitionedSubscriptionCollection implements SubscriptionCollection {
+    private static final Logger log = LoggerFactory.getLogger(PartitionedSubscriptionCollection.class);
+
+    @ConfigProperty(name = "subscription.near-cache.configure-keyspace-events", defaultValue = "true")
+    boolean configureKeyspaceEvents;
+
+    @Inject
+    RedisSubscriptionCollection store;
+
+    @Inject
+    PartitionMembership membership;
+
+    @Inject
+    RedisDataSource dataSource;
+
+    private final Map<Resource, Set<Subscription>> index = new ConcurrentHashMap<>();
+    private final Map<Resource, Integer> pendingReloads = new ConcurrentHashMap<>();
+    private final Set<Integer> warmPartitions = ConcurrentHashMap.newKeySet();
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(Thread.ofPlatform()
+            .name("partition-loader")
+            .daemon()
+            .factory());
+    private PubSubCommands.RedisSubscriber subscriber;
+
+    @PostConstruct
+    void init() {
+        if (configureKeyspaceEvents) {
+            ResourceSetEvents.enable(dataSource);
+        }
+        subscriber = dataSource.pubsub(String.class).subscribeToPattern(ResourceSetEvents.CHANNEL_PATTERN,
+                (channel, event) -> ResourceSetEvents.resourceSetKey(channel)
+                        .flatMap(Utils::toResource)
+                        .ifPresent(this::changed));
+    }
+
+    /**
+     * Starts warming up the owned partitions at startup rather than on the first lookup.
+     */
+    void startup(@Observes StartupEvent event) {
+        membership.onOwnershipChange(this::ownershipChanged);
+    }
+
+    @PreDestroy
+    void destroy() {
+        if (subscriber != null) {
+            subscriber.unsubscribe();
+        }
+        loader.shutdownNow();
+    }
+
+    @Override
+    public void insert(final Subscription subscription) {
+        insertAll(Set.of(subscription));
+    }
+
+    @Override
+    public void insertAll(final Collection<Subscription> subscriptions) {
+        store.insertAll(subscriptions);
+        subscriptions.stream()
+                .map(subscription -> new Resource(subscription.resourceType(), subscription.resourceId()))
+                .distinct()
+                .forEach(this::changed);
+    }
+
+    @Override
+    public Set<Subscription> get(final Resource resource) {
+        if (!warmPartitions.contains(membership.partitionOf(resource)) || pendingReloads.containsKey(resource)) {
+            return store.get(resource);
+        }
+        return index.getOrDefault(resource, Set.of());
+    }
+
+    @Override
+    public Set<Subscription> get(final String sessionId) {
+        return store.get(sessionId);
+    }
+
+    @Override
+    public void remove(final String sessionId) {
+        store.remove(sessionId);
+    }
+
+    @Override
+    public void removeAll(final Collection<String> sessionIds) {
+        store.removeAll(sessionIds);
+    }
+
+    @Override
+    public void remove(final String sessionId, final String resourceType, final String resourceId) {
+        store.remove(sessionId, resourceType, resourceId);
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public int sessionSubscriptionCount() {
+        return store.sessionSubscriptionCount();
+    }
+
+    @Override
+    public void cleanUp() {
+        store.cleanUp();
+    }
+
+    @Scheduled(every = "${subscription.partitioning.resync-interval}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void resync() {
+        final var owned = membership.ownedPartitions();
+        if (!owned.isEmpty()) {
+            loader.execute(() -> warmUp(owned));
+        }
+    }
+
+    /**
+     * Drops the changed resource of an owned partition and queues its reload. Lookups of the resource go to Redis until
+     * every queued reload of it is done.
+     */
+    void changed(final Resource resource) {
+        if (!membership.owns(membership.partitionOf(resource))) {
+            return;
+        }
+        pendingReloads.merge(resource, 1, Integer::sum);
+        index.remove(resource);
+        loader.execute(() -> reload(resource));
+    }
+
+    void ownershipChanged(final Set<Integer> acquired, final Set<Integer> lost) {
+        warmPartitions.removeAll(lost);
+        index.keySet().removeIf(resource -> lost.contains(membership.partitionOf(resource)));
+        if (!acquired.isEmpty()) {
+            loader.execute(() -> warmUp(acquired));
+        }
+    }
+
+    /**
+     * Loads the resource sets of the partitions still owned and marks them warm. Entries of these partitions that are no
+     * longer in Redis are dropped, unless a reload of them is queued.
+     */
+    void warmUp(final Set<Integer> partitions) {
+        final var loaded = new HashSet<Resource>();
+        try {
+            store.forEachResource(resource -> {
+                final var partition = membership.partitionOf(resource);
+                if (!partitions.contains(partition) || !membership.owns(partition)) {
+                    return;
+                }
+                final var subscriptions = store.load(resource);
+                if (!subscriptions.isEmpty()) {
+                    index.put(resource, Set.copyOf(subscriptions));
+                    loaded.add(resource);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not warm up partitions, lookups stay on Redis. partitions={}", partitions.size(), e);
+            warmPartitions.removeAll(partitions);
+            return;
+        }
+        index.keySet().removeIf(resource -> !loaded.contains(resource) && !pendingReloads.containsKey(resource)
+                && partitions.contains(membership.partitionOf(resource)));
+        partitions.stream().filter(membership::owns).forEach(warmPartitions::add);
+        log.info("Warmed up partitions. partitions={}, resources={}", partitions.size(), loaded.size());
+    }
+
+    private void reload(final Resource resource) {
+        final var partition = membership.partitionOf(resource);
+        try {
+            if (!membership.owns(partition)) {
+                return;
+            }
+            final var subscriptions = store.load(resource);
+            if (subscriptions.isEmpty()) {
+                index.remove(resource);
+            } else {
+                index.put(resource, Set.copyOf(subscriptions));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not reload resource subscriptions, partition goes cold until resync. resource={}",
+                    resource, e);
+            warmPartitions.remove(partition);
+        } finally {
+            pendingReloads.computeIfPresent(resource, (key, count) -> count == 1 ? null : count - 1);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.iris_events.subscription.collection;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iris_events.subscription.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.value.ReactiveValueCommands;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * Non-blocking counterpart of {@link RedisSnapshotCollection}, storing snapshots in the same format under the same keys.
+ */
+@ApplicationScoped
+public class ReactiveRedisSnapshotCollection {
+    private static final Logger log = LoggerFactory.getLogger(ReactiveRedisSnapshotCollection.class);
+
+    @ConfigProperty(name = "subscription.snapshot.skip-unchanged", defaultValue = "true")
+    boolean skipUnchanged;
+
+    private final ReactiveRedisDataSource dataSource;
+    private final SnapshotCodec codec;
+    private final SnapshotCache cache;
+    private final ReadReplicaRouter readReplicaRouter;
+    private final RedisKeys redisKeys;
+    private final ReactiveValueCommands<String, byte[]> commands;
+    private final Counter writtenSnapshots;
+    private final Counter skippedSnapshots;
+
+    public ReactiveRedisSnapshotCollection(final ReactiveRedisDataSource dataSource, final SnapshotCodec codec,
+            final SnapshotCache cache, final MeterRegistry meterRegistry, final ReadReplicaRouter readReplicaRouter,
+            final RedisKeys redisKeys) {
+        this.dataSource = dataSource;
+        this.redisKeys = redisKeys;
+        this.codec = codec;
+        this.cache = cache;
+        this.readReplicaRouter = readReplicaRouter;
+        this.commands = dataSource.value(byte[].class);
+        this.writtenSnapshots = RedisSnapshotCollection.snapshotWrites(meterRegistry, "written");
+        this.skippedSnapshots = RedisSnapshotCollection.snapshotWrites(meterRegistry, "skipped");
+    }
+
+    public Uni<Void> insert(final String resourceType, final String resourceId, final Snapshot value, final Integer ttl) {
+        if (ttl <= 0) {
+            log.warn("Trying to cache snapshot with non positive ttl. resourceType={}, resourceId={}, ttl={}", resourceType,
+                    resourceId, ttl);
+            return Uni.createFrom().voidItem();
+        }
+        final var key = redisKeys.getResourceSnapshotKey(resourceType, resourceId);
+        log.debug("Inserting snapshot. resourceType={}, resourceId={}, key={}", resourceType, resourceId, key);
+        final var hashKey = redisKeys.getResourceSnapshotHashKey(resourceType, resourceId);
+        return Uni.createFrom().item(() -> codec.encode(value))
+                .chain(encoded -> skipUnchanged
+                        ? writeIfChanged(key, hashKey, encoded, ttl)
+                        : write(key, hashKey, encoded, ttl))
+                .invoke(written -> {
+                    cache.put(key, value, Duration.ofSeconds(ttl));
+                    if (written) {
+                        writtenSnapshots.increment();
+                        readReplicaRouter.written(key);
+                        cache.publishInvalidation(key);
+                    } else {
+                        skippedSnapshots.increment();
+                    }
+                })
+                .replaceWithVoid();
+    }
+
+    private Uni<Boolean> write(final String key, final String hashKey, final byte[] encoded, final int ttl) {
+        return dataSource.withTransaction(tx -> tx.value(byte[].class).setex(key, ttl, encoded)
+                .chain(() -> tx.key().del(hashKey))
+                .replaceWithVoid())
+                .replaceWith(true);
+    }
+
+    private Uni<Boolean> writeIfChanged(final String key, final String hashKey, final byte[] encoded, final int ttl) {
+        final var hash = SnapshotCodec.hash(encoded);
+        return RedisSnapshotCollection.REFRESH_IF_UNCHANGED.execute(dataSource, List.of(key, hashKey),
+                List.of(hash, String.valueOf(ttl)))
+                .chain(response -> {
+                    if (response.toInteger() == 1) {
+                        return Uni.createFrom().item(false);
+                    }
+                    return dataSource.withTransaction(tx -> tx.value(byte[].class).setex(key, ttl, encoded)
+                            .chain(() -> tx.value(String.class).setex(hashKey, ttl, hash)))
+                            .replaceWith(true);
+                });
+    }
+
+    /**
+     * Serves the snapshot from the in-process cache when possible. A miss is read together with the remaining ttl of
+     * the key and fills the cache, as the blocking read does.
+     */
+    public Uni<Optional<Snapshot>> get(final String resourceType, final String resourceId) {
+        final var key = redisKeys.getResourceSnapshotKey(resourceType, resourceId);
+        final var cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Uni.createFrom().item(Optional.of(cached));
+        }
+        if (!cache.isEnabled()) {
+            return commands.get(key)
+                    .map(bytes -> bytes == null ? Optional.<Snapshot> empty() : Optional.of(codec.decode(bytes)));
+        }
+        return RedisSnapshotCollection.GET_WITH_TTL.execute(dataSource, List.of(key), List.of()).map(response -> {
+            final var value = response.get(0);
+            if (value == null) {
+                return Optional.<Snapshot> empty();
+            }
+            final var snapshot = codec.decode(value.toBytes());
+            cache.put(key, snapshot, Duration.ofMillis(response.get(1).toLong()));
+            return Optional.of(snapshot);
+        });
+    }
+
+    /**
+     * Fetches snapshots of all resources, serving them from the in-process cache when possible and reading the rest with
+     * one call per hash slot, all in flight at once, as the blocking bulk read does. Resources without a cached snapshot
+     * are not present in the returned map.
+     */
+    public Uni<Map<Resource, Snapshot>> get(final Collection<Resource> resources) {
+        final var snapshots = new ConcurrentHashMap<Resource, Snapshot>();
+        final var resourcesByKey = new LinkedHashMap<String, Resource>();
+        resources.forEach(resource -> {
+            final var key = redisKeys.getResourceSnapshotKey(resource.resourceType(), resource.resourceId());
+            final var cached = cache.getIfPresent(key);
+            if (cached != null) {
+                snapshots.put(resource, cached);
+            } else {
+                resourcesByKey.put(key, resource);
+            }
+        });
+        if (resourcesByKey.isEmpty()) {
+            return Uni.createFrom().item(snapshots);
+        }
+
+        final var slotReads = redisKeys.groupBySlot(List.copyOf(resourcesByKey.keySet())).stream()
+                .map(slotKeys -> read(slotKeys, resourcesByKey, snapshots))
+                .toList();
+        return Uni.join().all(slotReads).andFailFast().replaceWith(snapshots);
+    }
+
+    private Uni<Void> read(final List<String> slotKeys, final Map<String, Resource> resourcesByKey,
+            final Map<Resource, Snapshot> snapshots) {
+        if (!cache.isEnabled()) {
+            return commands.mget(slotKeys.toArray(String[]::new))
+                    .invoke(values -> values.forEach((key, bytes) -> {
+                        if (bytes != null) {
+                            snapshots.put(resourcesByKey.get(key), codec.decode(bytes));
+                        }
+                    }))
+                    .replaceWithVoid();
+        }
+        return RedisSnapshotCollection.GET_WITH_TTL.execute(dataSource, slotKeys, List.of())
+                .invoke(response -> {
+                    for (int i = 0; i < slotKeys.size(); i++) {
+                        final var value = response.get(i * 2);
+                        if (value == null) {
+                            continue;
+                        }
+                        final var key = slotKeys.get(i);
+                        final var snapshot = codec.decode(value.toBytes());
+                        snapshots.put(resourcesByKey.get(key), snapshot);
+                        cache.put(key, snapshot, Duration.ofMillis(response.get(i * 2 + 1).toLong()));
+                    }
+                })
+                .replaceWithVoid();
+    }
+}
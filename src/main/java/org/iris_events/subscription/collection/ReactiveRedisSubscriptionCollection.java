@@ -0,0 +1,228 @@
+package org.iris_events.subscription.collection;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iris_events.subscription.model.Resource;
+import org.iris_events.subscription.model.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.set.ReactiveSetCommands;
+import io.quarkus.redis.datasource.value.ReactiveValueCommands;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * Non-blocking counterpart of {@link RedisSubscriptionCollection} for the hot read, subscribe and session teardown paths.
+ * It works on the same keys with the same scripts and understands the same storage modes, so both collections can be
+ * used side by side.
+ */
+@ApplicationScoped
+public class ReactiveRedisSubscriptionCollection {
+    private static final Logger log = LoggerFactory.getLogger(ReactiveRedisSubscriptionCollection.class);
+
+    @ConfigProperty(name = "subscription.collection.redis.ttl", defaultValue = "86400")
+    String ttl;
+
+    @ConfigProperty(name = "subscription.collection.redis.storage-mode", defaultValue = "json")
+    StorageMode storageMode;
+
+    private final ReactiveSetCommands<String, String> setCommands;
+    private final ReactiveValueCommands<String, String> valueCommands;
+    private final ReactiveRedisDataSource dataSource;
+    private final ObjectMapper objectMapper;
+    private final SubscriptionNearCache nearCache;
+    private final ReadReplicaRouter readReplicaRouter;
+    private final RedisKeys keys;
+
+    public ReactiveRedisSubscriptionCollection(final ReactiveRedisDataSource dataSource, final ObjectMapper objectMapper,
+            final SubscriptionNearCache nearCache, final ReadReplicaRouter readReplicaRouter, final RedisKeys keys) {
+        this.setCommands = dataSource.set(String.class);
+        this.valueCommands = dataSource.value(String.class);
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        this.nearCache = nearCache;
+        this.readReplicaRouter = readReplicaRouter;
+        this.keys = keys;
+    }
+
+    public Uni<Set<Subscription>> get(final Resource resource) {
+        final var resourceType = resource.resourceType();
+        final var resourceId = resource.resourceId();
+        final var resSubscriptionsId = keys.getResourceSubscriptionsSetId(resourceType, resourceId);
+
+        return nearCache.getAsync(resSubscriptionsId, key -> setCommands.smembers(key)
+                .chain(members -> {
+                    if (storageMode == StorageMode.COMPACT) {
+                        return Uni.createFrom().item(members.stream()
+                                .map(member -> new Subscription(resourceType, resourceId,
+                                        Utils.toSessionId(key, member)))
+                                .collect(Collectors.toSet()));
+                    }
+                    final var subscriptionIds = members.stream()
+                            .map(member -> keys.toSubscriptionId(key, member))
+                            .toList();
+                    return getSubscriptionsBySubscriptionIds(subscriptionIds);
+                }));
+    }
+
+    /**
+     * Inserts the subscriptions with the same script calls as {@link RedisSubscriptionCollection#insertAll(Collection)},
+     * one per hash slot of their sessions, all in flight at once.
+     */
+    public Uni<Void> insertAll(final Collection<Subscription> subscriptions) {
+        final var resourceSetMembers = new LinkedHashMap<String, List<String>>();
+        return Uni.createFrom().item(() -> RedisSubscriptionCollection.insertCalls(keys, objectMapper, storageMode, ttl,
+                        subscriptions, resourceSetMembers))
+                .chain(inserts -> {
+                    if (inserts.isEmpty()) {
+                        return Uni.createFrom().voidItem();
+                    }
+                    final var slotInserts = inserts.stream()
+                            .map(insert -> Scripts.INSERT.execute(dataSource, insert.call().keys(), insert.call().args())
+                                    .chain(response -> response.toInteger() == 1
+                                            ? slotUsed(insert.slotKeys())
+                                            : Uni.createFrom().voidItem())
+                                    .invoke(() -> insert.resourceSets().forEach(this::resourceSetWritten)))
+                            .toList();
+                    return Uni.join().all(slotInserts).andFailFast()
+                            .chain(() -> updateResourceSets("SADD", resourceSetMembers));
+                });
+    }
+
+    /**
+     * Removes the subscriptions of the session on one resource or, with a null resource id, on all resources of the type,
+     * with the same script calls as {@link RedisSubscriptionCollection#remove(String, String, String)}.
+     */
+    public Uni<Void> remove(final String sessionId, final String resourceType, final String resourceId) {
+        if (resourceId != null) {
+            final var subscriptionId = keys.getSubscriptionId(sessionId, resourceType, resourceId);
+            final var resourceSetKey = keys.getResourceSubscriptionsSetId(resourceType, resourceId);
+            final var call = RedisSubscriptionCollection.removeCall(keys, sessionId, resourceType, resourceId);
+            return Scripts.REMOVE.execute(dataSource, call.keys(), call.args())
+                    .chain(() -> {
+                        if (keys.inSlot(keys.getSlotKeys(sessionId), resourceSetKey)) {
+                            resourceSetWritten(resourceSetKey);
+                            return Uni.createFrom().voidItem();
+                        }
+                        return updateResourceSets("SREM",
+                                RedisSubscriptionCollection.removedResourceSetMembers(keys, List.of(subscriptionId)));
+                    });
+        }
+
+        final var call = RedisSubscriptionCollection.removeByPrefixCall(keys, sessionId, resourceType);
+        return Scripts.REMOVE_BY_PREFIX.execute(dataSource, call.keys(), call.args())
+                .chain(response -> resourceSetsRemoved(IntStream.range(0, response.size())
+                        .mapToObj(i -> response.get(i).toString())
+                        .toList()));
+    }
+
+    /**
+     * Removes all subscriptions of the session with the same script calls as
+     * {@link RedisSubscriptionCollection#remove(String)}, so the subscription counters stay consistent.
+     */
+    public Uni<Void> remove(final String sessionId) {
+        return removeAll(List.of(sessionId));
+    }
+
+    public Uni<Void> removeAll(final List<String> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        final var removals = RedisSubscriptionCollection.removeSessionsCalls(keys, sessionIds).stream()
+                .map(call -> Scripts.REMOVE_SESSIONS.execute(dataSource, call.keys(), call.args()))
+                .toList();
+        return Uni.join().all(removals).andFailFast()
+                .chain(responses -> {
+                    final var removed = responses.stream()
+                            .flatMap(response -> IntStream.range(0, response.size())
+                                    .mapToObj(i -> response.get(i).toString()))
+                            .toList();
+                    return resourceSetsRemoved(removed);
+                });
+    }
+
+    /**
+     * Brings the resource sets up to date with subscriptions removed by a removal script, as
+     * {@link RedisSubscriptionCollection} does.
+     */
+    private Uni<Void> resourceSetsRemoved(final List<String> subscriptionIds) {
+        final var removedMembers = RedisSubscriptionCollection.removedResourceSetMembers(keys, subscriptionIds);
+        if (keys.layout() != KeyLayout.TAGGED) {
+            // the removal scripts already updated the resource sets
+            removedMembers.keySet().forEach(this::resourceSetWritten);
+            return Uni.createFrom().voidItem();
+        }
+        return updateResourceSets("SREM", removedMembers);
+    }
+
+    private Uni<Void> updateResourceSets(final String command, final Map<String, List<String>> membersBySet) {
+        if (membersBySet.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        final var updates = RedisSubscriptionCollection.updateSetsCalls(keys, command, membersBySet).stream()
+                .map(call -> Scripts.UPDATE_SETS.execute(dataSource, call.keys(), call.args()))
+                .toList();
+        return Uni.join().all(updates).andFailFast()
+                .invoke(() -> membersBySet.keySet().forEach(this::resourceSetWritten))
+                .replaceWithVoid();
+    }
+
+    /**
+     * Registers a slot whose counters were created, so the aggregates over all slots find it.
+     */
+    private Uni<Void> slotUsed(final RedisKeys.SlotKeys slotKeys) {
+        if (slotKeys.slot() < 0) {
+            return Uni.createFrom().voidItem();
+        }
+        return setCommands.sadd(Utils.SUBSCRIPTION_SLOTS_KEY, String.valueOf(slotKeys.slot())).replaceWithVoid();
+    }
+
+    /**
+     * Invalidates the near cache entry of a resource set changed by this node and routes its reads to the primary
+     * while replicas may lag behind, as the blocking collection does.
+     */
+    private void resourceSetWritten(final String resourceSetKey) {
+        nearCache.invalidate(resourceSetKey);
+        readReplicaRouter.written(resourceSetKey);
+    }
+
+    private Uni<Set<Subscription>> getSubscriptionsBySubscriptionIds(final List<String> subscriptionIds) {
+        if (subscriptionIds.isEmpty()) {
+            return Uni.createFrom().item(Set.of());
+        }
+
+        final List<Uni<Map<String, String>>> slotReads = keys.groupBySlot(subscriptionIds).stream()
+                .map(slotIds -> valueCommands.mget(slotIds.toArray(String[]::new)))
+                .toList();
+        return Uni.join().all(slotReads).andFailFast()
+                .map(slotResults -> slotResults.stream()
+                        .flatMap(subscriptionsById -> subscriptionsById.values().stream())
+                        .filter(Objects::nonNull)
+                        .map(this::deserializeSubscriptionJson)
+                        .flatMap(Optional::stream)
+                        .collect(Collectors.toSet()));
+    }
+
+    private Optional<Subscription> deserializeSubscriptionJson(final String json) {
+        try {
+            return Optional.of(objectMapper.readValue(json, Subscription.class));
+        } catch (JsonProcessingException e) {
+            log.debug("Could not deserialize subscription json {}", json, e);
+        }
+        return Optional.empty();
+    }
+}
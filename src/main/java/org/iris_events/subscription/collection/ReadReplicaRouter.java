@@ -0,0 +1,138 @@
+package org.iris_events.subscription.collection;
+
+import java.time.Duration;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.redis.client.RedisClient;
+import io.quarkus.redis.client.RedisClientName;
+import io.quarkus.redis.datasource.RedisDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+
+/**
+ * Routes the read paths of subscription and snapshot lookups to a read replica, configured as the named Redis client
+ * {@code quarkus.redis.<client>.hosts}. Keys written by this node within the staleness window are read from the
+ * primary, since the replica may not have received the write yet. Writes by other nodes are recorded when the near
+ * cache or the snapshot cache is invalidated for them. Subscription lookups fall back to the primary when the replica
+ * shows it is behind.
+ */
+@ApplicationScoped
+public class ReadReplicaRouter {
+    private static final Logger log = LoggerFactory.getLogger(ReadReplicaRouter.class);
+
+    @ConfigProperty(name = "subscription.read-replica.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "subscription.read-replica.client", defaultValue = "replica")
+    String clientName;
+
+    @ConfigProperty(name = "subscription.read-replica.staleness", defaultValue = "PT1S")
+    Duration staleness;
+
+    @ConfigProperty(name = "subscription.read-replica.fallback-on-miss", defaultValue = "true")
+    boolean fallbackOnMiss;
+
+    @ConfigProperty(name = "subscription.read-replica.max-tracked-writes", defaultValue = "100000")
+    long maxTrackedWrites;
+
+    @Inject
+    @Any
+    Instance<RedisClient> redisClients;
+
+    @Inject
+    @Any
+    Instance<RedisDataSource> dataSources;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    private Cache<String, Boolean> recentWrites;
+    private RedisClient replicaClient;
+    private RedisDataSource replicaDataSource;
+    private Counter replicaReads;
+    private Counter primaryReads;
+    private Counter fallbackReads;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        recentWrites = Caffeine.newBuilder()
+                .maximumSize(maxTrackedWrites)
+                .expireAfterWrite(staleness)
+                .build();
+        replicaClient = redisClients.select(RedisClientName.Literal.of(clientName)).get();
+        replicaDataSource = dataSources.select(RedisClientName.Literal.of(clientName)).get();
+        replicaReads = reads("replica");
+        primaryReads = reads("primary");
+        fallbackReads = reads("fallback");
+        log.info("Read replica routing enabled. client={}, staleness={}, fallbackOnMiss={}", clientName, staleness,
+                fallbackOnMiss);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records a write of the key, by this node or announced by an invalidation from another node, so reads within the
+     * staleness window go to the primary.
+     */
+    public void written(final String key) {
+        if (enabled) {
+            recentWrites.put(key, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Whether the key can be read from the replica; counts the read as a replica or primary read.
+     */
+    public boolean useReplica(final String key) {
+        if (!enabled) {
+            return false;
+        }
+        if (recentWrites.getIfPresent(key) != null) {
+            primaryReads.increment();
+            return false;
+        }
+        replicaReads.increment();
+        return true;
+    }
+
+    /**
+     * Whether a read the replica was found behind on is retried on the primary; counts the retry.
+     */
+    public boolean fallbackOnMiss() {
+        if (fallbackOnMiss) {
+            fallbackReads.increment();
+        }
+        return fallbackOnMiss;
+    }
+
+    public RedisClient replicaClient() {
+        return replicaClient;
+    }
+
+    public RedisDataSource replicaDataSource() {
+        return replicaDataSource;
+    }
+
+    private Counter reads(final String target) {
+        return Counter.builder("subscription.read-replica.reads")
+                .description("Lookups routed by the read replica router")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,199 @@
+package org.iris_events.subscription.collection;
+
+import static org.iris_events.subscription.collection.Utils.PIPE;
+import static org.iris_events.subscription.collection.Utils.RESOURCE_ID_INDEX;
+import static org.iris_events.subscription.collection.Utils.RESOURCE_SNAP_HASH_TEMPLATE;
+import static org.iris_events.subscription.collection.Utils.RESOURCE_SNAP_TEMPLATE;
+import static org.iris_events.subscription.collection.Utils.RESOURCE_SUB_PREFIX;
+import static org.iris_events.subscription.collection.Utils.RESOURCE_SUB_TEMPLATE;
+import static org.iris_events.subscription.collection.Utils.RESOURCE_TYPE_INDEX;
+import static org.iris_events.subscription.collection.Utils.SESSION_SUB_TEMPLATE;
+import static org.iris_events.subscription.collection.Utils.SUBSCRIPTION_ID_DELIMITER;
+import static org.iris_events.subscription.collection.Utils.SUB_PREFIX;
+import static org.iris_events.subscription.collection.Utils.SUB_TEMPLATE;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iris_events.subscription.model.Subscription;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * Names of the Redis keys in the configured {@link KeyLayout}.
+ * <p>
+ * The subscription counters and the expiry index are kept per hash slot: with the {@link KeyLayout#TAGGED} layout every
+ * slot holding session sets has its own counters and expiry index, tagged into that slot, so a script changing the
+ * subscriptions of a session only touches keys of the session's slot. With the {@link KeyLayout#STANDARD} layout there
+ * is a single set of these keys for all sessions.
+ */
+@ApplicationScoped
+public class RedisKeys {
+    private static final String TAG_START = "{";
+    private static final String TAG_END = "}";
+    private static final SlotKeys GLOBAL_SLOT_KEYS = new SlotKeys(-1, Utils.SUBSCRIPTION_COUNT_KEY,
+            Utils.SESSION_COUNT_KEY, Utils.EXPIRY_INDEX_KEY);
+    private static final String[] SLOT_TAGS = slotTags();
+
+    private final KeyLayout layout;
+
+    public RedisKeys(
+            @ConfigProperty(name = Utils.KEY_LAYOUT_PROPERTY, defaultValue = "standard") final KeyLayout layout) {
+        this.layout = layout;
+    }
+
+    public KeyLayout layout() {
+        return layout;
+    }
+
+    public String getResourceSubscriptionsSetId(final String resourceType, final String resourceId) {
+        return String.format(RESOURCE_SUB_TEMPLATE, tag(Utils.getUniqueResId(resourceType, resourceId)));
+    }
+
+    public String getResourceSnapshotKey(final String resourceType, final String resourceId) {
+        return String.format(RESOURCE_SNAP_TEMPLATE, tag(Utils.getUniqueResId(resourceType, resourceId)));
+    }
+
+    public String getResourceSnapshotHashKey(final String resourceType, final String resourceId) {
+        return String.format(RESOURCE_SNAP_HASH_TEMPLATE, tag(Utils.getUniqueResId(resourceType, resourceId)));
+    }
+
+    public String getSessionSubscriptionsSetId(final String sessionId) {
+        return String.format(SESSION_SUB_TEMPLATE, tag(sessionId));
+    }
+
+    public String generateSubscriptionId(final Subscription subscription) {
+        return getSubscriptionId(subscription.sessionId(), subscription.resourceType(), subscription.resourceId());
+    }
+
+    public String getSubscriptionId(final String sessionId, final String resourceType, final String resourceId) {
+        return String.format(SUB_TEMPLATE, tag(sessionId) + PIPE + resourceType + PIPE + resourceId);
+    }
+
+    /**
+     * Common prefix of all subscription ids of a session.
+     */
+    public String getSubscriptionIdPrefix(final String sessionId) {
+        return SUB_PREFIX + tag(sessionId) + PIPE;
+    }
+
+    /**
+     * Resolves a resource subscription set member, either a subscription id or a compact session id, to the subscription
+     * id.
+     */
+    public String toSubscriptionId(final String resourceSetKey, final String member) {
+        if (member.startsWith(SUB_PREFIX)) {
+            return member;
+        }
+        final var uniqueResId = Utils.untag(resourceSetKey.substring(RESOURCE_SUB_PREFIX.length()));
+        return String.format(SUB_TEMPLATE, tag(member) + PIPE + uniqueResId);
+    }
+
+    public String getResourceSetKey(final String subscriptionId) {
+        final var parts = subscriptionId.split(SUBSCRIPTION_ID_DELIMITER);
+        return getResourceSubscriptionsSetId(parts[RESOURCE_TYPE_INDEX], parts[RESOURCE_ID_INDEX]);
+    }
+
+    /**
+     * Rewrites a subscription id of either layout into the configured layout.
+     */
+    public String toKeyLayout(final String subscriptionId) {
+        final var parts = subscriptionId.split(SUBSCRIPTION_ID_DELIMITER);
+        return getSubscriptionId(Utils.untag(parts[1]), parts[RESOURCE_TYPE_INDEX], parts[RESOURCE_ID_INDEX]);
+    }
+
+    /**
+     * Rewrites a key of the template, in either layout, into the configured layout.
+     */
+    public String toKeyLayout(final String template, final String key) {
+        final var prefix = String.format(template, "");
+        return String.format(template, tag(Utils.untag(key.substring(prefix.length()))));
+    }
+
+    /**
+     * Counters and expiry index of the slot holding the session's keys.
+     */
+    public SlotKeys getSlotKeys(final String sessionId) {
+        return layout == KeyLayout.TAGGED ? getSlotKeys(Utils.slot(getSessionSubscriptionsSetId(sessionId)))
+                : GLOBAL_SLOT_KEYS;
+    }
+
+    /**
+     * Counters and expiry index of a hash slot, the shared ones with the standard layout or a negative slot.
+     */
+    public SlotKeys getSlotKeys(final int slot) {
+        if (layout != KeyLayout.TAGGED || slot < 0) {
+            return GLOBAL_SLOT_KEYS;
+        }
+        final var tag = PIPE + TAG_START + SLOT_TAGS[slot] + TAG_END;
+        return new SlotKeys(slot, Utils.SUBSCRIPTION_COUNT_KEY + tag, Utils.SESSION_COUNT_KEY + tag,
+                Utils.EXPIRY_INDEX_KEY + tag);
+    }
+
+    /**
+     * Whether a script on the slot can change the key as well, always with the standard layout.
+     */
+    public boolean inSlot(final SlotKeys slotKeys, final String key) {
+        return layout != KeyLayout.TAGGED || Utils.slot(key) == slotKeys.slot();
+    }
+
+    /**
+     * Prefix the removal scripts derive the resource set keys of removed subscriptions with, so they update the resource
+     * sets in the same call. Empty with the tagged layout, where the resource sets live in the slots of their resources.
+     */
+    public String scriptResourceSetPrefix() {
+        return layout == KeyLayout.TAGGED ? "" : RESOURCE_SUB_PREFIX;
+    }
+
+    /**
+     * Splits keys into groups sharing a hash slot, so multi key commands stay within one slot. With the standard layout
+     * there is no cluster to respect and all keys are returned as a single group.
+     */
+    public Collection<List<String>> groupBySlot(final List<String> keys) {
+        return groupBySlot(keys, Function.identity()).values();
+    }
+
+    /**
+     * Groups values by the hash slot of their key, a single group with the standard layout. Groups keep the order of the
+     * values.
+     */
+    public <T> Map<Integer, List<T>> groupBySlot(final Collection<T> values, final Function<T, String> key) {
+        final var groups = new LinkedHashMap<Integer, List<T>>();
+        values.forEach(value -> groups.computeIfAbsent(layout == KeyLayout.TAGGED ? Utils.slot(key.apply(value)) : -1,
+                k -> new ArrayList<>()).add(value));
+        return groups;
+    }
+
+    String tag(final String value) {
+        return layout == KeyLayout.TAGGED ? TAG_START + value + TAG_END : value;
+    }
+
+    /**
+     * A short hash tag for every slot, found by counting up until each slot has one.
+     */
+    private static String[] slotTags() {
+        final var tags = new String[Utils.CLUSTER_SLOTS];
+        var missing = tags.length;
+        for (int n = 0; missing > 0; n++) {
+            final var tag = Integer.toString(n, Character.MAX_RADIX);
+            final var slot = Utils.slot(tag);
+            if (tags[slot] == null) {
+                tags[slot] = tag;
+                missing--;
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * Subscription counter, session counter and expiry index of one hash slot. The slot is -1 for the shared keys of the
+     * standard layout.
+     */
+    public record SlotKeys(int slot, String subscriptionCount, String sessionCount, String expiryIndex) {
+    }
+}
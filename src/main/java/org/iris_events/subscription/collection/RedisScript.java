@@ -0,0 +1,98 @@
+package org.iris_events.subscription.collection;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.iris_events.subscription.exception.SubscriptionException;
+
+import io.quarkus.redis.client.RedisClient;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.smallrye.mutiny.Uni;
+import io.vertx.redis.client.Response;
+
+/**
+ * Lua script executed with EVALSHA, falling back to EVAL (which also caches the script on the server) when the
+ * script is not known to the server yet.
+ */
+public class RedisScript {
+    private static final Logger log = LoggerFactory.getLogger(RedisScript.class);
+    private static final String NO_SCRIPT_ERROR = "NOSCRIPT";
+
+    private final String source;
+    private final String sha;
+
+    public RedisScript(final String source) {
+        this.source = source;
+        this.sha = sha1Hex(source);
+    }
+
+    public Response execute(final RedisClient redisClient, final List<String> keys, final List<String> args) {
+        try {
+            return redisClient.evalsha(arguments(sha, keys, args));
+        } catch (RuntimeException e) {
+            if (!isNoScriptError(e)) {
+                throw e;
+            }
+            log.debug("Script not cached on server, loading it with EVAL. sha={}", sha);
+            return redisClient.eval(arguments(source, keys, args));
+        }
+    }
+
+    public io.vertx.mutiny.redis.client.Response execute(final RedisDataSource dataSource, final List<String> keys,
+            final List<String> args) {
+        try {
+            return dataSource.execute("EVALSHA", arguments(sha, keys, args).toArray(String[]::new));
+        } catch (RuntimeException e) {
+            if (!isNoScriptError(e)) {
+                throw e;
+            }
+            log.debug("Script not cached on server, loading it with EVAL. sha={}", sha);
+            return dataSource.execute("EVAL", arguments(source, keys, args).toArray(String[]::new));
+        }
+    }
+
+    public Uni<io.vertx.mutiny.redis.client.Response> execute(final ReactiveRedisDataSource dataSource,
+            final List<String> keys, final List<String> args) {
+        return dataSource.execute("EVALSHA", arguments(sha, keys, args).toArray(String[]::new))
+                .onFailure(RedisScript::isNoScriptError)
+                .recoverWithUni(() -> {
+                    log.debug("Script not cached on server, loading it with EVAL. sha={}", sha);
+                    return dataSource.execute("EVAL", arguments(source, keys, args).toArray(String[]::new));
+                });
+    }
+
+    private static List<String> arguments(final String script, final List<String> keys, final List<String> args) {
+        final var arguments = new ArrayList<String>(keys.size() + args.size() + 2);
+        arguments.add(script);
+        arguments.add(String.valueOf(keys.size()));
+        arguments.addAll(keys);
+        arguments.addAll(args);
+        return arguments;
+    }
+
+    private static boolean isNoScriptError(final Throwable throwable) {
+        for (var cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains(NO_SCRIPT_ERROR)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String sha1Hex(final String source) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new SubscriptionException("SHA-1 digest not available", e);
+        }
+    }
+}
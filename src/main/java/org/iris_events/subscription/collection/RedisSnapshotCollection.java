@@ -1,15 +1,21 @@
 package org.iris_events.subscription.collection;
 
-import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import org.iris_events.subscription.exception.SubscriptionException;
+import org.iris_events.subscription.model.Resource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.redis.datasource.RedisDataSource;
 import io.quarkus.redis.datasource.value.ValueCommands;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -17,14 +23,66 @@ import jakarta.enterprise.context.ApplicationScoped;
 @ApplicationScoped
 public class RedisSnapshotCollection {
     private static final Logger log = LoggerFactory.getLogger(RedisSnapshotCollection.class);
+
+    /**
+     * Reads snapshots together with their remaining ttl in millis, as (value, pttl) pairs per key.
+     */
+    static final RedisScript GET_WITH_TTL = new RedisScript("""
+            local result = {}
+            for i, key in ipairs(KEYS) do
+                result[i * 2 - 1] = redis.call('GET', key)
+                result[i * 2] = redis.call('PTTL', key)
+            end
+            return result
+            """);
+
+    /**
+     * Refreshes the ttl of a snapshot and its content hash if the stored hash matches. KEYS[1] is the snapshot key,
+     * KEYS[2] the hash key, ARGV[1] the hash of the new snapshot and ARGV[2] the ttl in seconds. Returns 1 if the
+     * snapshot is unchanged and was refreshed.
+     */
+    static final RedisScript REFRESH_IF_UNCHANGED = new RedisScript("""
+            if redis.call('GET', KEYS[2]) == ARGV[1] and redis.call('EXPIRE', KEYS[1], ARGV[2]) == 1 then
+                redis.call('EXPIRE', KEYS[2], ARGV[2])
+                return 1
+            end
+            return 0
+            """);
+
+    @ConfigProperty(name = "subscription.snapshot.skip-unchanged", defaultValue = "true")
+    boolean skipUnchanged;
+
     RedisDataSource dataSource;
-    ObjectMapper objectMapper;
+    SnapshotCodec codec;
+    SnapshotCache cache;
+    ReadReplicaRouter readReplicaRouter;
+    RedisKeys redisKeys;
     private final ValueCommands<String, byte[]> commands;
+    private final ValueCommands<String, byte[]> replicaCommands;
+    private final Counter writtenSnapshots;
+    private final Counter skippedSnapshots;
 
-    public RedisSnapshotCollection(final RedisDataSource dataSource, final ObjectMapper objectMapper) {
+    public RedisSnapshotCollection(final RedisDataSource dataSource, final SnapshotCodec codec,
+            final SnapshotCache cache, final MeterRegistry meterRegistry, final ReadReplicaRouter readReplicaRouter,
+            final RedisKeys redisKeys) {
         this.dataSource = dataSource;
-        this.objectMapper = objectMapper;
+        this.redisKeys = redisKeys;
+        this.codec = codec;
+        this.cache = cache;
+        this.readReplicaRouter = readReplicaRouter;
         this.commands = dataSource.value(byte[].class);
+        this.replicaCommands = readReplicaRouter.isEnabled()
+                ? readReplicaRouter.replicaDataSource().value(byte[].class)
+                : null;
+        this.writtenSnapshots = snapshotWrites(meterRegistry, "written");
+        this.skippedSnapshots = snapshotWrites(meterRegistry, "skipped");
+    }
+
+    static Counter snapshotWrites(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder("subscription.snapshot.writes")
+                .description("Snapshot inserts, written in full or skipped as unchanged")
+                .tag("result", result)
+                .register(meterRegistry);
     }
 
     public void insert(final String resourceType, final String resourceId, final Snapshot value, final Integer ttl) {
@@ -33,25 +91,106 @@ public class RedisSnapshotCollection {
                     resourceId, ttl);
             return;
         }
-        final var key = Utils.getResourceSnapshotKey(resourceType, resourceId);
+        final var key = redisKeys.getResourceSnapshotKey(resourceType, resourceId);
         log.debug("Inserting snapshot. resourceType={}, resourceId={}, key={}", resourceType, resourceId, key);
-        try {
-            commands.setex(key, ttl, objectMapper.writeValueAsBytes(value));
-        } catch (JsonProcessingException e) {
-            throw new SubscriptionException(String.format("Could not process snapshot into json. resourceKey=%s", key), e);
+        final var encoded = codec.encode(value);
+        final var hashKey = redisKeys.getResourceSnapshotHashKey(resourceType, resourceId);
+        if (!skipUnchanged) {
+            // a hash left behind could later match a snapshot it was not written with
+            dataSource.withTransaction(tx -> {
+                tx.value(byte[].class).setex(key, ttl, encoded);
+                tx.key().del(hashKey);
+            });
+        } else {
+            final var hash = SnapshotCodec.hash(encoded);
+            final var refreshed = REFRESH_IF_UNCHANGED.execute(dataSource, List.of(key, hashKey),
+                    List.of(hash, String.valueOf(ttl))).toInteger() == 1;
+            if (refreshed) {
+                skippedSnapshots.increment();
+                cache.put(key, value, Duration.ofSeconds(ttl));
+                return;
+            }
+            dataSource.withTransaction(tx -> {
+                tx.value(byte[].class).setex(key, ttl, encoded);
+                tx.value(String.class).setex(hashKey, ttl, hash);
+            });
         }
+        writtenSnapshots.increment();
+        readReplicaRouter.written(key);
+        cache.put(key, value, Duration.ofSeconds(ttl));
+        cache.publishInvalidation(key);
     }
 
     public Optional<Snapshot> get(final String resourceType, final String resourceId) {
-        final var key = Utils.getResourceSnapshotKey(resourceType, resourceId);
-        final var bytes = commands.get(key);
-        if (bytes == null) {
-            return Optional.empty();
+        return Optional.ofNullable(get(List.of(new Resource(resourceType, resourceId)))
+                .get(new Resource(resourceType, resourceId)));
+    }
+
+    /**
+     * Fetches snapshots of all resources, serving them from the in-process cache when possible and reading the rest with
+     * a single Redis call per hash slot, from the read replica when it is enabled. Snapshots written or invalidated
+     * within the staleness window are read from the primary, see {@link SnapshotCache}. A snapshot missing on the
+     * replica is not read again from the primary, since a miss does not show the replica is behind and most resources
+     * have no snapshot; the subscriber gets the snapshot requested anyway. Resources without a cached snapshot are not
+     * present in the returned map.
+     */
+    public Map<Resource, Snapshot> get(final Collection<Resource> resources) {
+        if (resources.isEmpty()) {
+            return Map.of();
+        }
+
+        final var snapshots = new HashMap<Resource, Snapshot>();
+        final var resourcesByKey = new LinkedHashMap<String, Resource>();
+        resources.forEach(resource -> {
+            final var key = redisKeys.getResourceSnapshotKey(resource.resourceType(), resource.resourceId());
+            final var cached = cache.getIfPresent(key);
+            if (cached != null) {
+                snapshots.put(resource, cached);
+            } else {
+                resourcesByKey.put(key, resource);
+            }
+        });
+        if (resourcesByKey.isEmpty()) {
+            return snapshots;
+        }
+
+        final var primaryKeys = new ArrayList<String>();
+        final var replicaKeys = new ArrayList<String>();
+        resourcesByKey.keySet().forEach(key -> (readReplicaRouter.useReplica(key) ? replicaKeys : primaryKeys).add(key));
+        read(readReplicaRouter.replicaDataSource(), replicaCommands, replicaKeys, resourcesByKey, snapshots);
+        read(dataSource, commands, primaryKeys, resourcesByKey, snapshots);
+        return snapshots;
+    }
+
+    /**
+     * Reads the keys from the given data source into the snapshots, filling the cache when it is enabled.
+     */
+    private void read(final RedisDataSource source, final ValueCommands<String, byte[]> sourceCommands,
+            final List<String> keys, final Map<String, Resource> resourcesByKey, final Map<Resource, Snapshot> snapshots) {
+        if (keys.isEmpty()) {
+            return;
         }
-        try {
-            return Optional.of(objectMapper.readValue(bytes, Snapshot.class));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        if (!cache.isEnabled()) {
+            redisKeys.groupBySlot(keys).forEach(slotKeys -> sourceCommands
+                    .mget(slotKeys.toArray(String[]::new)).forEach((key, bytes) -> {
+                        if (bytes != null) {
+                            snapshots.put(resourcesByKey.get(key), codec.decode(bytes));
+                        }
+                    }));
+        } else {
+            for (List<String> slotKeys : redisKeys.groupBySlot(keys)) {
+                final var response = GET_WITH_TTL.execute(source, slotKeys, List.of());
+                for (int i = 0; i < slotKeys.size(); i++) {
+                    final var value = response.get(i * 2);
+                    if (value == null) {
+                        continue;
+                    }
+                    final var key = slotKeys.get(i);
+                    final var snapshot = codec.decode(value.toBytes());
+                    snapshots.put(resourcesByKey.get(key), snapshot);
+                    cache.put(key, snapshot, Duration.ofMillis(response.get(i * 2 + 1).toLong()));
+                }
+            }
         }
     }
 }
@@ -3,15 +3,24 @@ package org.iris_events.subscription.collection;
 import static org.iris_events.subscription.collection.Utils.RESOURCE_SUB_TEMPLATE;
 import static org.iris_events.subscription.collection.Utils.SESSION_SUB_TEMPLATE;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.Map;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.iris_events.subscription.model.Resource;
@@ -24,203 +33,866 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.iris_events.subscription.exception.SubscriptionException;
 
+import io.quarkus.arc.properties.UnlessBuildProperty;
 import io.quarkus.redis.client.RedisClient;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.runtime.StartupEvent;
 import io.vertx.redis.client.Response;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 
 @ApplicationScoped()
+@UnlessBuildProperty(name = "subscription.collection.type", stringValue = "memory")
 public class RedisSubscriptionCollection implements SubscriptionCollection {
     private static final Logger log = LoggerFactory.getLogger(RedisSubscriptionCollection.class);
+    private static final int SESSION_REMOVAL_CHUNK_SIZE = 500;
 
     @ConfigProperty(name = "subscription.collection.redis.ttl", defaultValue = "86400")
     String TTL;
 
+    @ConfigProperty(name = "subscription.collection.redis.storage-mode", defaultValue = "json")
+    StorageMode storageMode;
+
+    @ConfigProperty(name = "subscription.collection.redis.migrate-on-startup", defaultValue = "false")
+    boolean migrateOnStartup;
+
+    @ConfigProperty(name = "subscription.collection.redis.migrate-key-layout-on-startup", defaultValue = "false")
+    boolean migrateKeyLayoutOnStartup;
+
+    @ConfigProperty(name = "subscription.cleanup.batch-size", defaultValue = "500")
+    int cleanupBatchSize;
+
+    @ConfigProperty(name = "subscription.cleanup.max-batches", defaultValue = "20")
+    int cleanupMaxBatches;
+
+    @ConfigProperty(name = "subscription.cleanup.full-sweep", defaultValue = "false")
+    boolean cleanupFullSweep;
+
+    @ConfigProperty(name = "subscription.cleanup.counters-reconcile-interval", defaultValue = "PT1H")
+    Duration countersReconcileInterval;
+
     @Inject
     RedisClient redisClient;
 
+    @Inject
+    RedisKeys keys;
+
     @Inject
     ObjectMapper objectMapper;
 
+    @Inject
+    SubscriptionNearCache nearCache;
+
+    @Inject
+    ReadReplicaRouter readReplicaRouter;
+
+    private final boolean readReplicas;
+
+    public RedisSubscriptionCollection() {
+        this.readReplicas = true;
+    }
+
+    /**
+     * Collection with the configuration of the given one, working on another Redis instance through the client and
+     * near cache of that instance. Reads go to the instance itself, as read replicas are configured for the default
+     * client only.
+     */
+    private RedisSubscriptionCollection(final RedisSubscriptionCollection settings, final RedisClient redisClient,
+            final SubscriptionNearCache nearCache) {
+        this.TTL = settings.TTL;
+        this.storageMode = settings.storageMode;
+        this.migrateOnStartup = settings.migrateOnStartup;
+        this.migrateKeyLayoutOnStartup = settings.migrateKeyLayoutOnStartup;
+        this.cleanupBatchSize = settings.cleanupBatchSize;
+        this.cleanupMaxBatches = settings.cleanupMaxBatches;
+        this.cleanupFullSweep = settings.cleanupFullSweep;
+        this.countersReconcileInterval = settings.countersReconcileInterval;
+        this.keys = settings.keys;
+        this.objectMapper = settings.objectMapper;
+        this.readReplicaRouter = settings.readReplicaRouter;
+        this.redisClient = redisClient;
+        this.nearCache = nearCache;
+        this.readReplicas = false;
+    }
+
+    void startup(@Observes StartupEvent event) {
+        if (migrateKeyLayoutOnStartup) {
+            migrateKeyLayout();
+        }
+        if (migrateOnStartup) {
+            migrateResourceSets();
+        }
+        // nodes starting together find the counters missing at once, only the one setting the marker seeds them
+        if (countersMissing() && claimCountersReconcile()) {
+            reconcileCounters();
+        }
+    }
+
+    private boolean countersMissing() {
+        if (keys.layout() == KeyLayout.TAGGED) {
+            return redisClient.exists(List.of(Utils.SUBSCRIPTION_SLOTS_KEY)).toInteger() == 0;
+        }
+        return redisClient.exists(List.of(Utils.SUBSCRIPTION_COUNT_KEY)).toInteger() == 0
+                && redisClient.exists(List.of(Utils.SESSION_COUNT_KEY)).toInteger() == 0;
+    }
+
+    /**
+     * Collection with the configuration of this one on another Redis instance, used for the shards of
+     * {@link ShardedSubscriptionCollection}. The shard has its own near cache, invalidated by the keyspace notifications
+     * of that instance and released by {@link #closeShard()}.
+     */
+    RedisSubscriptionCollection forShard(final RedisClient client, final RedisDataSource dataSource) {
+        return new RedisSubscriptionCollection(this, client, nearCache.forDataSource(dataSource));
+    }
+
+    void closeShard() {
+        nearCache.destroy();
+    }
+
     @Override
     public void insert(final Subscription subscription) {
-        final var sessionId = subscription.sessionId();
+        insertAll(List.of(subscription));
+    }
 
-        if (sessionId == null) {
-            return;
+    /**
+     * Inserts all subscriptions with one atomic script call per hash slot of their sessions, which writes the
+     * subscription keys, their ttl, the session sets, the counters, the expiry index and the resource sets of the slot.
+     * With the standard layout that is a single call; with the tagged layout resource sets in other slots are then
+     * updated with one call per slot.
+     */
+    @Override
+    public void insertAll(final Collection<Subscription> subscriptions) {
+        final var resourceSetMembers = new LinkedHashMap<String, List<String>>();
+        for (SlotInsert insert : insertCalls(keys, objectMapper, storageMode, TTL, subscriptions, resourceSetMembers)) {
+            if (Scripts.INSERT.execute(redisClient, insert.call().keys(), insert.call().args()).toInteger() == 1) {
+                slotUsed(insert.slotKeys());
+            }
+            insert.resourceSets().forEach(this::resourceSetWritten);
         }
+        updateResourceSets("SADD", resourceSetMembers);
+    }
 
-        final var resourceType = subscription.resourceType();
-        final var resourceId = subscription.resourceId();
-
-        try {
-            final var subscriptionJson = objectMapper.writeValueAsString(subscription);
-            final var subscriptionId = Utils.generateSubscriptionId(subscription);
-            final var sessionSubId = Utils.getSessionSubscriptionsSetId(sessionId);
-            final var resSubscriptionsId = Utils.getResourceSubscriptionsSetId(resourceType, resourceId);
-
-            redisClient.set(List.of(subscriptionId, subscriptionJson));
-            redisClient.expire(subscriptionId, TTL);
-            redisClient.sadd(List.of(sessionSubId, subscriptionId));
-            redisClient.sadd(List.of(resSubscriptionsId, subscriptionId));
-        } catch (JsonProcessingException e) {
-            throw new SubscriptionException("Could not process subscription into json", e);
+    /**
+     * {@link Scripts#INSERT} calls writing the subscriptions with a session, one per hash slot of their sessions. Members
+     * of resource sets outside the slot of their call are added to {@code otherResourceSetMembers}, to be added to the
+     * sets separately.
+     */
+    static List<SlotInsert> insertCalls(final RedisKeys keys, final ObjectMapper objectMapper,
+            final StorageMode storageMode, final String ttl, final Collection<Subscription> subscriptions,
+            final Map<String, List<String>> otherResourceSetMembers) {
+        final var sessionSubscriptions = subscriptions.stream()
+                .filter(subscription -> subscription.sessionId() != null)
+                .toList();
+        if (sessionSubscriptions.isEmpty()) {
+            return List.of();
         }
+        final var expiresAt = String.valueOf(
+                System.currentTimeMillis() + Duration.ofSeconds(Long.parseLong(ttl)).toMillis());
+        final var inserts = new ArrayList<SlotInsert>();
+        final var slots = keys.groupBySlot(sessionSubscriptions,
+                subscription -> keys.getSessionSubscriptionsSetId(subscription.sessionId()));
+        for (List<Subscription> slotSubscriptions : slots.values()) {
+            final var slotKeys = keys.getSlotKeys(slotSubscriptions.get(0).sessionId());
+            final var scriptKeys = new ArrayList<String>(slotSubscriptions.size() * 2 + 3);
+            scriptKeys.add(slotKeys.subscriptionCount());
+            scriptKeys.add(slotKeys.sessionCount());
+            scriptKeys.add(slotKeys.expiryIndex());
+            final var args = new ArrayList<String>(slotSubscriptions.size() + 3);
+            args.add(ttl);
+            args.add(expiresAt);
+            args.add(String.valueOf(slotSubscriptions.size()));
+            final var slotResourceSetMembers = new LinkedHashMap<String, List<String>>();
+            for (Subscription subscription : slotSubscriptions) {
+                final var sessionId = subscription.sessionId();
+                final var subscriptionId = keys.generateSubscriptionId(subscription);
+                try {
+                    args.add(objectMapper.writeValueAsString(subscription));
+                } catch (JsonProcessingException e) {
+                    throw new SubscriptionException("Could not process subscription into json", e);
+                }
+                scriptKeys.add(subscriptionId);
+                scriptKeys.add(keys.getSessionSubscriptionsSetId(sessionId));
+                final var resourceSetKey = keys.getResourceSubscriptionsSetId(subscription.resourceType(),
+                        subscription.resourceId());
+                (keys.inSlot(slotKeys, resourceSetKey) ? slotResourceSetMembers : otherResourceSetMembers)
+                        .computeIfAbsent(resourceSetKey, key -> new ArrayList<>())
+                        .add(storageMode == StorageMode.COMPACT ? sessionId : subscriptionId);
+            }
+            addSetUpdates(scriptKeys, args, slotResourceSetMembers);
+            inserts.add(new SlotInsert(slotKeys, new Scripts.Call(scriptKeys, args), slotResourceSetMembers.keySet()));
+        }
+        return inserts;
     }
 
+    /**
+     * {@link Scripts#INSERT} call of one hash slot, with the resource sets it updates.
+     */
+    record SlotInsert(RedisKeys.SlotKeys slotKeys, Scripts.Call call, Set<String> resourceSets) {
+    }
+
+    /**
+     * Subscriptions on the resource, served from the near cache when it is enabled. A set changed by any node within the
+     * replica staleness window is loaded from the primary, see {@link SubscriptionNearCache}, so a reload after an
+     * invalidation does not cache what the replica still holds. A replica read falls back to the primary only when the
+     * replica shows it is behind, with set members whose subscriptions have not reached it yet; an empty set is kept, as
+     * most resources have no subscribers and reading them twice would double the load.
+     */
     @Override
     public Set<Subscription> get(final Resource resource) {
         final var resourceId = resource.resourceId();
         final var resourceType = resource.resourceType();
-        final var resSubscriptionsId = Utils.getResourceSubscriptionsSetId(resourceType, resourceId);
+        final var resSubscriptionsId = keys.getResourceSubscriptionsSetId(resourceType, resourceId);
+
+        return nearCache.get(resSubscriptionsId, key -> {
+            if (!readReplicas || !readReplicaRouter.useReplica(key)) {
+                return readResource(redisClient, key, resourceType, resourceId);
+            }
+            final var replicaClient = readReplicaRouter.replicaClient();
+            final var members = mapResponseToStringList(replicaClient.smembers(key));
+            final var subscriptions = toSubscriptions(replicaClient, key, resourceType, resourceId, members);
+            final var behind = subscriptions.size() < members.size();
+            return behind && readReplicaRouter.fallbackOnMiss()
+                    ? readResource(redisClient, key, resourceType, resourceId)
+                    : subscriptions;
+        });
+    }
+
+    /**
+     * Reads the subscriptions on the resource from the primary, bypassing the near cache and read replicas.
+     */
+    Set<Subscription> load(final Resource resource) {
+        return readResource(redisClient, keys.getResourceSubscriptionsSetId(resource.resourceType(),
+                resource.resourceId()), resource.resourceType(), resource.resourceId());
+    }
 
-        final var subscriptionIds = mapResponseToStringList(redisClient.smembers(resSubscriptionsId));
-        return getSubscriptionsBySubscriptionIds(subscriptionIds);
+    private Set<Subscription> readResource(final RedisClient client, final String resourceSetKey,
+            final String resourceType, final String resourceId) {
+        return toSubscriptions(client, resourceSetKey, resourceType, resourceId,
+                mapResponseToStringList(client.smembers(resourceSetKey)));
+    }
+
+    private Set<Subscription> toSubscriptions(final RedisClient client, final String resourceSetKey,
+            final String resourceType, final String resourceId, final List<String> members) {
+        if (storageMode == StorageMode.COMPACT) {
+            return members.stream()
+                    .map(member -> new Subscription(resourceType, resourceId, Utils.toSessionId(resourceSetKey, member)))
+                    .collect(Collectors.toSet());
+        }
+        final var subscriptionIds = members.stream().map(member -> keys.toSubscriptionId(resourceSetKey, member))
+                .toList();
+        return getSubscriptionsBySubscriptionIds(client, subscriptionIds);
     }
 
     @Override
     public Set<Subscription> get(final String sessionId) {
-        final var sessionSubscriptionsSetId = Utils.getSessionSubscriptionsSetId(sessionId);
+        final var sessionSubscriptionsSetId = keys.getSessionSubscriptionsSetId(sessionId);
         final var subscriptionIds = mapResponseToStringList(redisClient.smembers(sessionSubscriptionsSetId));
-        return getSubscriptionsBySubscriptionIds(subscriptionIds);
+        return getSubscriptionsBySubscriptionIds(redisClient, subscriptionIds);
     }
 
     @Override
     public void remove(final String sessionId) {
-        final var sessionSubscriptionsSetId = Utils.getSessionSubscriptionsSetId(sessionId);
-        final var sessionSubscriptionIds = redisClient.smembers(sessionSubscriptionsSetId).stream().map(Response::toString)
-                .toList();
-
-        removeFromResourceIndexes(sessionSubscriptionIds);
-        final var idsToRemove = Stream.concat(Stream.of(sessionSubscriptionsSetId), sessionSubscriptionIds.stream()).toList();
-        redisClient.del(idsToRemove);
+        removeAll(List.of(sessionId));
     }
 
+    /**
+     * Removes the sessions with all their subscriptions. Each chunk of sessions is removed by one script call per hash
+     * slot of the sessions, which reads the session sets on the server and returns the removed subscription ids. With
+     * the standard layout the script updates the resource sets as well; with the tagged layout they are updated
+     * afterwards per hash slot of the resources.
+     */
     @Override
-    public void remove(final String sessionId, final String resourceType, final String resourceId) {
-        final var sessionSubscriptionsSetId = Utils.getSessionSubscriptionsSetId(sessionId);
-        if (redisClient.exists(List.of(sessionSubscriptionsSetId)).toInteger() <= 0) {
-            return;
+    public void removeAll(final Collection<String> sessionIds) {
+        final var sessions = List.copyOf(sessionIds);
+        for (int from = 0; from < sessions.size(); from += SESSION_REMOVAL_CHUNK_SIZE) {
+            final var chunk = sessions.subList(from, Math.min(from + SESSION_REMOVAL_CHUNK_SIZE, sessions.size()));
+            final var removed = new ArrayList<String>();
+            for (Scripts.Call call : removeSessionsCalls(keys, chunk)) {
+                removed.addAll(mapResponseToStringList(
+                        Scripts.REMOVE_SESSIONS.execute(redisClient, call.keys(), call.args())));
+            }
+            resourceSetsRemoved(removed);
         }
+    }
 
-        final var sessionSubscriptionIds = redisClient.smembers(sessionSubscriptionsSetId)
-                .stream()
-                .map(Response::toString)
+    /**
+     * {@link Scripts#REMOVE_SESSIONS} calls removing the sessions, one per hash slot of their session sets.
+     */
+    static List<Scripts.Call> removeSessionsCalls(final RedisKeys keys, final List<String> sessionIds) {
+        return keys.groupBySlot(sessionIds, keys::getSessionSubscriptionsSetId).values().stream()
+                .map(slotSessions -> {
+                    final var slotKeys = keys.getSlotKeys(slotSessions.get(0));
+                    final var scriptKeys = new ArrayList<String>(slotSessions.size() + 3);
+                    scriptKeys.add(slotKeys.subscriptionCount());
+                    scriptKeys.add(slotKeys.sessionCount());
+                    scriptKeys.add(slotKeys.expiryIndex());
+                    final var args = new ArrayList<String>(slotSessions.size() * 2 + 1);
+                    args.add(keys.scriptResourceSetPrefix());
+                    slotSessions.forEach(sessionId -> {
+                        scriptKeys.add(keys.getSessionSubscriptionsSetId(sessionId));
+                        args.add(sessionId);
+                        args.add(keys.getSubscriptionIdPrefix(sessionId));
+                    });
+                    return new Scripts.Call(scriptKeys, args);
+                })
                 .toList();
+    }
 
-        if (resourceId == null) {
-            final var sessionsByResourceId = scanByResourceType(resourceType);
-            sessionsByResourceId
-                    .forEach((resourceSubscriptionsSetId, allSessionSubscriptionIds) -> {
-                        final var intersect = allSessionSubscriptionIds.stream().distinct()
-                                .filter(sessionSubscriptionIds::contains)
-                                .collect(Collectors.toSet());
-                        removeForResourceAndSession(sessionSubscriptionsSetId, resourceSubscriptionsSetId, intersect);
+    /**
+     * Resource set members to remove for removed subscriptions: the subscription id and the compact session id, as
+     * either form may be stored.
+     */
+    static Map<String, List<String>> removedResourceSetMembers(final RedisKeys keys,
+            final Collection<String> subscriptionIds) {
+        final var members = new LinkedHashMap<String, List<String>>();
+        subscriptionIds.stream().filter(Utils::isValidSubscriptionId).forEach(subscriptionId -> {
+            final var resourceSetKey = keys.getResourceSetKey(subscriptionId);
+            final var setMembers = members.computeIfAbsent(resourceSetKey, key -> new ArrayList<>());
+            setMembers.add(subscriptionId);
+            setMembers.add(Utils.toSessionId(resourceSetKey, subscriptionId));
+        });
+        return members;
+    }
+
+    /**
+     * {@link Scripts#UPDATE_SETS} calls applying the command to the members of the sets, one per hash slot of the sets.
+     */
+    static List<Scripts.Call> updateSetsCalls(final RedisKeys keys, final String command,
+            final Map<String, List<String>> membersBySet) {
+        return keys.groupBySlot(membersBySet.keySet(), Function.identity()).values().stream()
+                .map(setKeys -> {
+                    final var args = new ArrayList<String>();
+                    args.add(command);
+                    setKeys.forEach(setKey -> {
+                        final var members = membersBySet.get(setKey);
+                        args.add(String.valueOf(members.size()));
+                        args.addAll(members);
                     });
+                    return new Scripts.Call(List.copyOf(setKeys), args);
+                })
+                .toList();
+    }
+
+    /**
+     * Appends the resource set updates to the keys and arguments of a script, in the encoding of
+     * {@link Scripts#UPDATE_SETS}.
+     */
+    private static void addSetUpdates(final List<String> scriptKeys, final List<String> args,
+            final Map<String, List<String>> membersBySet) {
+        membersBySet.forEach((setKey, members) -> {
+            scriptKeys.add(setKey);
+            args.add(String.valueOf(members.size()));
+            args.addAll(members);
+        });
+    }
+
+    /**
+     * Brings the resource sets up to date with subscriptions removed by a removal script. With the standard layout the
+     * script already removed them from the resource sets, which are only invalidated.
+     */
+    private void resourceSetsRemoved(final Collection<String> subscriptionIds) {
+        final var removedMembers = removedResourceSetMembers(keys, subscriptionIds);
+        if (keys.layout() == KeyLayout.TAGGED) {
+            updateResourceSets("SREM", removedMembers);
         } else {
-            final var resourceSubscriptionsSetId = Utils.getResourceSubscriptionsSetId(resourceType, resourceId);
-            final var resourceSubscriptionIds = redisClient.smembers(resourceSubscriptionsSetId).stream()
-                    .map(Response::toString)
-                    .collect(Collectors.toSet());
-            final var intersect = sessionSubscriptionIds.stream().distinct()
-                    .filter(resourceSubscriptionIds::contains)
-                    .collect(Collectors.toSet());
-            removeForResourceAndSession(sessionSubscriptionsSetId, resourceSubscriptionsSetId, intersect);
+            removedMembers.keySet().forEach(this::resourceSetWritten);
         }
     }
 
-    private void removeForResourceAndSession(final String sessionSubscriptionsSetId, final String resourceSubscriptionsSetId,
-            final Set<String> resourceIds) {
+    private void updateResourceSets(final String command, final Map<String, List<String>> membersBySet) {
+        for (Scripts.Call call : updateSetsCalls(keys, command, membersBySet)) {
+            Scripts.UPDATE_SETS.execute(redisClient, call.keys(), call.args());
+        }
+        membersBySet.keySet().forEach(this::resourceSetWritten);
+    }
 
-        // remove all subscriptions by intersected IDS
-        if (resourceIds.isEmpty()) {
+    /**
+     * Removes the subscriptions of the session on one resource or, with a null resource id, on all resources of the type.
+     * Only the session's own subscriptions are looked at; the subscription ids in the session set already carry the
+     * resource type, so they serve as the per session and type index.
+     */
+    @Override
+    public void remove(final String sessionId, final String resourceType, final String resourceId) {
+        if (resourceId != null) {
+            final var subscriptionId = keys.getSubscriptionId(sessionId, resourceType, resourceId);
+            final var resourceSetKey = keys.getResourceSubscriptionsSetId(resourceType, resourceId);
+            final var call = removeCall(keys, sessionId, resourceType, resourceId);
+            Scripts.REMOVE.execute(redisClient, call.keys(), call.args());
+            if (keys.inSlot(keys.getSlotKeys(sessionId), resourceSetKey)) {
+                resourceSetWritten(resourceSetKey);
+            } else {
+                updateResourceSets("SREM", removedResourceSetMembers(keys, List.of(subscriptionId)));
+            }
             return;
         }
-        redisClient.del(resourceIds.stream().toList());
-        redisClient.srem(Stream.concat(Stream.of(sessionSubscriptionsSetId), resourceIds.stream()).toList());
-        redisClient.srem(Stream.concat(Stream.of(resourceSubscriptionsSetId), resourceIds.stream()).toList());
+
+        final var call = removeByPrefixCall(keys, sessionId, resourceType);
+        final var response = Scripts.REMOVE_BY_PREFIX.execute(redisClient, call.keys(), call.args());
+        resourceSetsRemoved(mapResponseToStringList(response));
+    }
+
+    /**
+     * {@link Scripts#REMOVE} call removing the subscription of the session on the resource, together with its resource
+     * set members when the resource set is in the slot of the session.
+     */
+    static Scripts.Call removeCall(final RedisKeys keys, final String sessionId, final String resourceType,
+            final String resourceId) {
+        final var slotKeys = keys.getSlotKeys(sessionId);
+        final var subscriptionId = keys.getSubscriptionId(sessionId, resourceType, resourceId);
+        final var scriptKeys = new ArrayList<>(List.of(keys.getSessionSubscriptionsSetId(sessionId),
+                slotKeys.subscriptionCount(), slotKeys.sessionCount(), slotKeys.expiryIndex(), subscriptionId));
+        final var args = new ArrayList<>(List.of("1"));
+        if (keys.inSlot(slotKeys, keys.getResourceSubscriptionsSetId(resourceType, resourceId))) {
+            addSetUpdates(scriptKeys, args, removedResourceSetMembers(keys, List.of(subscriptionId)));
+        }
+        return new Scripts.Call(scriptKeys, args);
+    }
+
+    /**
+     * {@link Scripts#REMOVE_BY_PREFIX} call removing the subscriptions of the session on all resources of the type.
+     */
+    static Scripts.Call removeByPrefixCall(final RedisKeys keys, final String sessionId, final String resourceType) {
+        final var slotKeys = keys.getSlotKeys(sessionId);
+        return new Scripts.Call(List.of(keys.getSessionSubscriptionsSetId(sessionId), slotKeys.subscriptionCount(),
+                slotKeys.sessionCount(), slotKeys.expiryIndex()),
+                List.of(keys.getSubscriptionIdPrefix(sessionId) + resourceType + Utils.PIPE,
+                        keys.scriptResourceSetPrefix(), sessionId, keys.getSubscriptionIdPrefix(sessionId)));
+    }
+
+    /**
+     * Registers a slot whose counters were created, so the aggregates over all slots find it.
+     */
+    private void slotUsed(final RedisKeys.SlotKeys slotKeys) {
+        if (slotKeys.slot() >= 0) {
+            redisClient.sadd(List.of(Utils.SUBSCRIPTION_SLOTS_KEY, String.valueOf(slotKeys.slot())));
+        }
     }
 
+    /**
+     * Counters and expiry indexes of all slots that had subscriptions, the shared ones with the standard layout.
+     */
+    private List<RedisKeys.SlotKeys> usedSlots() {
+        if (keys.layout() != KeyLayout.TAGGED) {
+            return List.of(keys.getSlotKeys(-1));
+        }
+        return mapResponseToStringList(redisClient.smembers(Utils.SUBSCRIPTION_SLOTS_KEY)).stream()
+                .map(Integer::parseInt)
+                .sorted()
+                .map(keys::getSlotKeys)
+                .toList();
+    }
+
+    /**
+     * Number of subscriptions that have not expired, summed over the counters maintained per slot by the insert and
+     * remove scripts. Subscriptions past their expiry but not yet removed by {@link #cleanUp()} are subtracted using the
+     * expiry index of their slot.
+     */
     @Override
     public int size() {
-        return scanForSize(Utils.SUB_TEMPLATE);
+        final var now = String.valueOf(System.currentTimeMillis());
+        var size = 0L;
+        for (RedisKeys.SlotKeys slotKeys : usedSlots()) {
+            size += Scripts.SIZE.execute(redisClient, List.of(slotKeys.subscriptionCount(), slotKeys.expiryIndex()),
+                    List.of(now)).toLong();
+        }
+        return (int) Math.max(size, 0);
     }
 
+    /**
+     * Number of sessions with at least one subscription, summed over the counters maintained per slot by the insert and
+     * remove scripts. A session whose subscriptions all expired is counted until {@link #cleanUp()} removes its session
+     * set.
+     */
     @Override
     public int sessionSubscriptionCount() {
-        return scanForSize(SESSION_SUB_TEMPLATE);
+        var count = 0L;
+        for (RedisKeys.SlotKeys slotKeys : usedSlots()) {
+            count += readRawCounter(slotKeys.sessionCount());
+        }
+        return (int) Math.max(count, 0);
     }
 
-    @Override
-    public void cleanUp() {
-        cleanSubscriptionPointers(RESOURCE_SUB_TEMPLATE);
-        cleanSubscriptionPointers(SESSION_SUB_TEMPLATE);
+    /**
+     * Recounts subscriptions and sessions per slot from the session sets and corrects the counters of each slot by the
+     * difference to their value when the scan started. Counter changes made by writes during the scan are kept rather
+     * than overwritten, so only writes to session sets the scan has already passed can leave a drift, which the next run
+     * corrects. Runs on startup when the counters are missing and then periodically as part of {@link #cleanUp()}, both
+     * on one node per {@code counters-reconcile-interval}.
+     */
+    public void reconcileCounters() {
+        final var subscriptionsBefore = new HashMap<Integer, Long>();
+        final var sessionsBefore = new HashMap<Integer, Long>();
+        usedSlots().forEach(slotKeys -> {
+            subscriptionsBefore.put(slotKeys.slot(), readRawCounter(slotKeys.subscriptionCount()));
+            sessionsBefore.put(slotKeys.slot(), readRawCounter(slotKeys.sessionCount()));
+        });
+        final var subscriptionCounts = new HashMap<Integer, Long>();
+        final var sessionCounts = new HashMap<Integer, Long>();
+        var scanCursor = "0";
+        do {
+            final var scanResponse = redisClient.scan(
+                    List.of(scanCursor, "match", String.format(SESSION_SUB_TEMPLATE, "*")));
+            scanCursor = scanResponse.get(0).toString();
+            for (Response sessionSetKey : scanResponse.get(1)) {
+                final var members = redisClient.scard(sessionSetKey.toString()).toLong();
+                if (members > 0) {
+                    final var slot = keys.getSlotKeys(Utils.slot(sessionSetKey.toString())).slot();
+                    subscriptionCounts.merge(slot, members, Long::sum);
+                    sessionCounts.merge(slot, 1L, Long::sum);
+                }
+            }
+        } while (!scanCursor.equals("0"));
+
+        final var slots = new TreeSet<>(subscriptionsBefore.keySet());
+        slots.addAll(subscriptionCounts.keySet());
+        var subscriptionCount = 0L;
+        var subscriptionDrift = 0L;
+        var sessionCount = 0L;
+        var sessionDrift = 0L;
+        for (int slot : slots) {
+            final var slotKeys = keys.getSlotKeys(slot);
+            final var subscriptions = subscriptionCounts.getOrDefault(slot, 0L);
+            final var sessions = sessionCounts.getOrDefault(slot, 0L);
+            final var slotSubscriptionDrift = subscriptions - subscriptionsBefore.getOrDefault(slot, 0L);
+            final var slotSessionDrift = sessions - sessionsBefore.getOrDefault(slot, 0L);
+            redisClient.incrby(slotKeys.subscriptionCount(), String.valueOf(slotSubscriptionDrift));
+            redisClient.incrby(slotKeys.sessionCount(), String.valueOf(slotSessionDrift));
+            slotUsed(slotKeys);
+            subscriptionCount += subscriptions;
+            subscriptionDrift += slotSubscriptionDrift;
+            sessionCount += sessions;
+            sessionDrift += slotSessionDrift;
+        }
+        log.info("Reconciled subscription counters. subscriptionCount={}, subscriptionDrift={}, sessionCount={}, sessionDrift={}",
+                subscriptionCount, subscriptionDrift, sessionCount, sessionDrift);
     }
 
-    private void removeFromResourceIndexes(final List<String> subscriptionIds) {
-        // Group operations by resource set key to batch them
-        Map<String, List<String>> removalsByResourceSet = subscriptionIds.stream()
-                .filter(Utils::isValidSubscriptionId)
-                .collect(Collectors.groupingBy(Utils::getResourceSetKey));
+    private long readRawCounter(final String counterKey) {
+        final var response = redisClient.get(counterKey);
+        return response == null ? 0 : response.toLong();
+    }
 
-        // Execute batched removals
-        for (Map.Entry<String, List<String>> entry : removalsByResourceSet.entrySet()) {
-            String resourceSetKey = entry.getKey();
-            List<String> subscriptionsToRemove = entry.getValue();
+    /**
+     * Removes the index entries of expired subscriptions, taken in bounded batches from the expiry index, so the cost of
+     * a pass does not depend on the number of subscriptions. The keyspace sweep is only needed for subscriptions written
+     * before the expiry index existed and is disabled by default; it is resumed across passes. The counters are
+     * reconciled once per {@code counters-reconcile-interval}.
+     */
+    @Override
+    public void cleanUp() {
+        final var removed = removeExpiredSubscriptions();
+        log.debug("Removed expired subscriptions. removed={}", removed);
+        if (cleanupFullSweep) {
+            cleanSubscriptionPointers(RESOURCE_SUB_TEMPLATE);
+            cleanSubscriptionPointers(SESSION_SUB_TEMPLATE);
+        }
+        if (claimCountersReconcile()) {
+            reconcileCounters();
+        }
+    }
 
-            List<String> sremArgs = new ArrayList<>(subscriptionsToRemove.size() + 1);
-            sremArgs.add(resourceSetKey);
-            sremArgs.addAll(subscriptionsToRemove);
+    /**
+     * Sets the reconcile marker unless another node holds it, so the counters are reconciled at most once per interval
+     * across all nodes. The marker expires when the next reconcile is due.
+     */
+    private boolean claimCountersReconcile() {
+        return redisClient.set(List.of(Utils.COUNTERS_RECONCILED_KEY, "1", "NX", "PX",
+                String.valueOf(countersReconcileInterval.toMillis()))) != null;
+    }
 
-            redisClient.srem(sremArgs);
+    /**
+     * Takes expired subscriptions from the expiry index of every slot in batches. A pass runs at most
+     * {@code cleanupMaxBatches} batches over all slots, visiting the slots in random order so none is left behind when a
+     * pass runs out of batches.
+     */
+    private int removeExpiredSubscriptions() {
+        var removed = 0;
+        var batches = 0;
+        final var slots = new ArrayList<>(usedSlots());
+        Collections.shuffle(slots);
+        for (RedisKeys.SlotKeys slotKeys : slots) {
+            while (batches < cleanupMaxBatches) {
+                final var now = System.currentTimeMillis();
+                final var expired = mapResponseToStringList(redisClient.zrangebyscore(List.of(slotKeys.expiryIndex(),
+                        "-inf", String.valueOf(now), "LIMIT", "0", String.valueOf(cleanupBatchSize))));
+                if (expired.isEmpty()) {
+                    break;
+                }
+                batches++;
+
+                final var invalid = expired.stream().filter(id -> !Utils.isValidSubscriptionId(id)).toList();
+                if (!invalid.isEmpty()) {
+                    redisClient.zrem(Stream.concat(Stream.of(slotKeys.expiryIndex()), invalid.stream()).toList());
+                }
+
+                final var scriptKeys = new ArrayList<String>(expired.size() * 2 + 3);
+                scriptKeys.add(slotKeys.subscriptionCount());
+                scriptKeys.add(slotKeys.sessionCount());
+                scriptKeys.add(slotKeys.expiryIndex());
+                final var args = new ArrayList<String>(expired.size() * 2 + 2);
+                args.add(String.valueOf(now));
+                args.add(keys.scriptResourceSetPrefix());
+                for (String subscriptionId : expired) {
+                    if (!Utils.isValidSubscriptionId(subscriptionId)) {
+                        continue;
+                    }
+                    final var sessionId = Utils.toSessionId(keys.getResourceSetKey(subscriptionId), subscriptionId);
+                    scriptKeys.add(subscriptionId);
+                    scriptKeys.add(keys.getSessionSubscriptionsSetId(sessionId));
+                    args.add(sessionId);
+                    args.add(keys.getSubscriptionIdPrefix(sessionId));
+                }
+                if (scriptKeys.size() > 3) {
+                    final var expiredIds = mapResponseToStringList(Scripts.REMOVE_EXPIRED.execute(redisClient,
+                            scriptKeys, args));
+                    removed += expiredIds.size();
+                    resourceSetsRemoved(expiredIds);
+                }
+                if (expired.size() < cleanupBatchSize) {
+                    break;
+                }
+            }
         }
-
+        return removed;
     }
 
+    /**
+     * Sweeps the index sets matching the template for pointers to missing subscriptions. A pass covers at most
+     * {@code cleanupMaxBatches} scan pages; the scan cursor is stored in Redis after every page, so the next pass, on
+     * this or any other node, continues where the previous one stopped.
+     */
     private void cleanSubscriptionPointers(String subTemplate) {
-        var scanCursor = "0";
-        var subscriptionIdsToRemove = new HashMap<String, List<String>>();
+        final var sessionSets = subTemplate.equals(SESSION_SUB_TEMPLATE);
+        final var cursorKey = Utils.getCleanupCursorKey(subTemplate);
+        final var storedCursor = redisClient.get(cursorKey);
+        var scanCursor = storedCursor == null ? "0" : storedCursor.toString();
+        var pages = 0;
         do {
             final var subscriptionScanResult = redisClient.scan(
                     List.of(scanCursor, "match", String.format(subTemplate, "*")));
             scanCursor = subscriptionScanResult.get(0).toString();
 
+            final var subscriptionIdsToRemove = new HashMap<String, List<String>>();
             subscriptionScanResult.get(1).stream().map(Response::toString)
                     .forEach(subscriptionPointerSet -> redisClient.smembers(subscriptionPointerSet).stream()
-                            .map(res -> List.of(res.toString()))
-                            .filter(subscriptionId -> redisClient.exists(subscriptionId).toLong() == 0L)
+                            .map(Response::toString)
+                            .filter(member -> redisClient.exists(
+                                    List.of(keys.toSubscriptionId(subscriptionPointerSet, member))).toLong() == 0L)
                             .forEach(forRemoval -> subscriptionIdsToRemove.computeIfAbsent(subscriptionPointerSet,
-                                    k -> new ArrayList<>()).addAll(forRemoval)));
-        } while (!scanCursor.equals("0"));
+                                    k -> new ArrayList<>()).add(forRemoval)));
+            removeSubscriptionPointers(subscriptionIdsToRemove, sessionSets);
+
+            if (scanCursor.equals("0")) {
+                redisClient.del(List.of(cursorKey));
+            } else {
+                redisClient.set(List.of(cursorKey, scanCursor));
+            }
+        } while (!scanCursor.equals("0") && ++pages < cleanupMaxBatches);
+    }
 
-        subscriptionIdsToRemove.forEach((key, value) -> redisClient.srem(
-                Stream.concat(Stream.of(key), value.stream()).collect(Collectors.toList())));
+    private void removeSubscriptionPointers(final Map<String, List<String>> subscriptionIdsToRemove,
+            final boolean sessionSets) {
+        subscriptionIdsToRemove.forEach((key, members) -> {
+            if (sessionSets) {
+                final var slotKeys = keys.getSlotKeys(Utils.slot(key));
+                final var scriptKeys = new ArrayList<String>(members.size() + 3);
+                scriptKeys.add(key);
+                scriptKeys.add(slotKeys.subscriptionCount());
+                scriptKeys.add(slotKeys.sessionCount());
+                members.forEach(member -> scriptKeys.add(keys.toSubscriptionId(key, member)));
+                Scripts.REMOVE_POINTERS.execute(redisClient, scriptKeys, members);
+                return;
+            }
+            // the subscriptions live in other slots than the resource set, so the check cannot run in the same script;
+            // a pointer whose subscription was re-inserted in the meantime is put back
+            redisClient.srem(Stream.concat(Stream.of(key), members.stream()).toList());
+            final var reinserted = members.stream()
+                    .filter(member -> redisClient.exists(List.of(keys.toSubscriptionId(key, member))).toLong() == 1L)
+                    .toList();
+            if (!reinserted.isEmpty()) {
+                redisClient.sadd(Stream.concat(Stream.of(key), reinserted.stream()).toList());
+            }
+            resourceSetWritten(key);
+        });
     }
 
-    private HashMap<String, List<String>> scanByResourceType(String resourceType) {
+    /**
+     * Rewrites the members of all resource subscription sets into the configured storage mode. Readers understand both
+     * member forms, so this can run while other nodes keep serving.
+     */
+    public void migrateResourceSets() {
         var scanCursor = "0";
-        var subscriptionIds = new HashMap<String, List<String>>();
+        var migratedSets = 0;
         do {
-            final var subscriptionScanResult = redisClient.scan(
-                    List.of(scanCursor, "match", String.format(RESOURCE_SUB_TEMPLATE, resourceType) + "|*"));
-            scanCursor = subscriptionScanResult.get(0).toString();
+            final var scanResult = redisClient.scan(
+                    List.of(scanCursor, "match", String.format(RESOURCE_SUB_TEMPLATE, "*")));
+            scanCursor = scanResult.get(0).toString();
+
+            for (String resourceSetKey : mapResponseToStringList(scanResult.get(1))) {
+                final var toAdd = new ArrayList<String>();
+                final var toRemove = new ArrayList<String>();
+                for (String member : mapResponseToStringList(redisClient.smembers(resourceSetKey))) {
+                    final var migrated = storageMode == StorageMode.COMPACT
+                            ? Utils.toSessionId(resourceSetKey, member)
+                            : keys.toSubscriptionId(resourceSetKey, member);
+                    if (!migrated.equals(member)) {
+                        toAdd.add(migrated);
+                        toRemove.add(member);
+                    }
+                }
+                if (toAdd.isEmpty()) {
+                    continue;
+                }
+                redisClient.sadd(Stream.concat(Stream.of(resourceSetKey), toAdd.stream()).toList());
+                redisClient.srem(Stream.concat(Stream.of(resourceSetKey), toRemove.stream()).toList());
+                resourceSetWritten(resourceSetKey);
+                migratedSets++;
+            }
+        } while (!scanCursor.equals("0"));
+        log.info("Migrated resource subscription sets. storageMode={}, migratedSets={}", storageMode, migratedSets);
+    }
 
-            subscriptionScanResult.get(1).stream().map(Response::toString)
-                    .forEach(subscriptionPointerSet -> redisClient.smembers(subscriptionPointerSet).stream()
-                            .map(res -> List.of(res.toString()))
-                            .forEach(matching -> subscriptionIds.computeIfAbsent(subscriptionPointerSet,
-                                    k -> new ArrayList<>()).addAll(matching)));
+    /**
+     * Rewrites subscriptions, session and resource sets, expiry index entries and snapshots written with the other key
+     * layout into the configured one. Keys are renamed, which Redis Cluster only allows within a slot, so the migration
+     * runs against the single primary before its data is moved to a cluster, once all nodes use the target layout. The
+     * counters of the other layout are dropped and recounted in the configured one.
+     */
+    public void migrateKeyLayout() {
+        final var layout = keys.layout();
+        final var subscriptions = migrateKeys(Utils.SUB_TEMPLATE, this::migrateSubscription);
+        final var sessionSets = migrateKeys(SESSION_SUB_TEMPLATE,
+                key -> migrateSet(key, keys.toKeyLayout(SESSION_SUB_TEMPLATE, key)));
+        final var resourceSets = migrateKeys(RESOURCE_SUB_TEMPLATE,
+                key -> migrateSet(key, keys.toKeyLayout(RESOURCE_SUB_TEMPLATE, key)));
+        final var snapshots = migrateKeys(Utils.RESOURCE_SNAP_TEMPLATE,
+                key -> migrateValue(key, keys.toKeyLayout(Utils.RESOURCE_SNAP_TEMPLATE, key)))
+                + migrateKeys(Utils.RESOURCE_SNAP_HASH_TEMPLATE,
+                        key -> migrateValue(key, keys.toKeyLayout(Utils.RESOURCE_SNAP_HASH_TEMPLATE, key)));
+        dropCounters(new RedisKeys(layout == KeyLayout.TAGGED ? KeyLayout.STANDARD : KeyLayout.TAGGED));
+        reconcileCounters();
+        log.info("Migrated key layout. layout={}, subscriptions={}, sessionSets={}, resourceSets={}, snapshots={}",
+                layout, subscriptions, sessionSets, resourceSets, snapshots);
+    }
+
+    private void dropCounters(final RedisKeys layoutKeys) {
+        final var counterKeys = new ArrayList<String>();
+        if (layoutKeys.layout() == KeyLayout.TAGGED) {
+            mapResponseToStringList(redisClient.smembers(Utils.SUBSCRIPTION_SLOTS_KEY)).forEach(slot -> {
+                final var slotKeys = layoutKeys.getSlotKeys(Integer.parseInt(slot));
+                counterKeys.add(slotKeys.subscriptionCount());
+                counterKeys.add(slotKeys.sessionCount());
+            });
+            counterKeys.add(Utils.SUBSCRIPTION_SLOTS_KEY);
+        } else {
+            counterKeys.add(Utils.SUBSCRIPTION_COUNT_KEY);
+            counterKeys.add(Utils.SESSION_COUNT_KEY);
+        }
+        counterKeys.forEach(key -> redisClient.del(List.of(key)));
+    }
+
+    private int migrateKeys(final String template, final Predicate<String> migration) {
+        var scanCursor = "0";
+        var migrated = 0;
+        do {
+            final var scanResult = redisClient.scan(List.of(scanCursor, "match", String.format(template, "*")));
+            scanCursor = scanResult.get(0).toString();
+            for (String key : mapResponseToStringList(scanResult.get(1))) {
+                if (migration.test(key)) {
+                    migrated++;
+                }
+            }
         } while (!scanCursor.equals("0"));
+        return migrated;
+    }
+
+    private boolean migrateSubscription(final String subscriptionId) {
+        if (!Utils.isValidSubscriptionId(subscriptionId)) {
+            return false;
+        }
+        final var target = keys.toKeyLayout(subscriptionId);
+        if (!migrateValue(subscriptionId, target)) {
+            return false;
+        }
+        final var sessionId = Utils.toSessionId(keys.getResourceSetKey(subscriptionId), subscriptionId);
+        final var sourceKeys = new RedisKeys(subscriptionId.startsWith(Utils.SUB_PREFIX + "{")
+                ? KeyLayout.TAGGED
+                : KeyLayout.STANDARD);
+        final var sourceIndex = sourceKeys.getSlotKeys(sessionId).expiryIndex();
+        final var expiresAt = redisClient.zscore(sourceIndex, subscriptionId);
+        if (expiresAt != null) {
+            redisClient.zadd(List.of(keys.getSlotKeys(sessionId).expiryIndex(), expiresAt.toString(), target));
+            redisClient.zrem(List.of(sourceIndex, subscriptionId));
+        }
+        return true;
+    }
+
+    /**
+     * Renames a string key, keeping its ttl. A target written in the meantime is newer and wins.
+     */
+    private boolean migrateValue(final String key, final String target) {
+        if (key.equals(target)) {
+            return false;
+        }
+        if (redisClient.renamenx(key, target).toInteger() == 0) {
+            redisClient.del(List.of(key));
+        }
+        return true;
+    }
+
+    /**
+     * Moves the members of a session or resource set into the target set, rewriting subscription ids into the
+     * configured layout. Compact resource set members are session ids and stay as they are.
+     */
+    private boolean migrateSet(final String key, final String target) {
+        final var members = mapResponseToStringList(redisClient.smembers(key));
+        final var migrated = members.stream()
+                .map(member -> Utils.isValidSubscriptionId(member) ? keys.toKeyLayout(member) : member)
+                .toList();
+        if (key.equals(target) && migrated.equals(members)) {
+            return false;
+        }
+        if (!migrated.isEmpty()) {
+            redisClient.sadd(Stream.concat(Stream.of(target), migrated.stream()).toList());
+        }
+        if (key.equals(target)) {
+            final var kept = new HashSet<>(migrated);
+            final var stale = members.stream().filter(member -> !kept.contains(member)).toList();
+            redisClient.srem(Stream.concat(Stream.of(key), stale.stream()).toList());
+        } else {
+            redisClient.del(List.of(key));
+        }
+        if (key.startsWith(Utils.RESOURCE_SUB_PREFIX)) {
+            resourceSetWritten(key);
+            resourceSetWritten(target);
+        }
+        return true;
+    }
 
-        return subscriptionIds;
+    /**
+     * Calls the consumer with every resource that has a resource subscription set.
+     */
+    void forEachResource(final Consumer<Resource> consumer) {
+        var scanCursor = "0";
+        do {
+            final var scanResult = redisClient.scan(
+                    List.of(scanCursor, "match", String.format(RESOURCE_SUB_TEMPLATE, "*")));
+            scanCursor = scanResult.get(0).toString();
+            mapResponseToStringList(scanResult.get(1)).forEach(
+                    resourceSetKey -> Utils.toResource(resourceSetKey).ifPresent(consumer));
+        } while (!scanCursor.equals("0"));
     }
 
-    private Set<Subscription> getSubscriptionsBySubscriptionIds(final List<String> subscriptionIds) {
+    private Set<Subscription> getSubscriptionsBySubscriptionIds(final RedisClient client,
+            final List<String> subscriptionIds) {
         if (subscriptionIds.isEmpty()) {
             return Set.of();
         }
 
-        return redisClient.mget(subscriptionIds).stream().filter(Objects::nonNull)
+        return keys.groupBySlot(subscriptionIds).stream()
+                .flatMap(slotIds -> client.mget(slotIds).stream())
+                .filter(Objects::nonNull)
                 .map(Response::toString)
                 .map(this::deserializeSubscriptionJson)
                 .filter(Optional::isPresent)
@@ -237,17 +909,14 @@ public class RedisSubscriptionCollection implements SubscriptionCollection {
         return Optional.empty();
     }
 
-    private int scanForSize(String subTemplate) {
-        var scanCursor = "0";
-        var size = 0;
-
-        do {
-            final var scanResponse = redisClient.scan(List.of(scanCursor, "match", String.format(subTemplate, "*")));
-            scanCursor = scanResponse.get(0).toString();
-            size = size + scanResponse.get(1).size();
-        } while (!scanCursor.equals("0"));
-        return size;
 
+    /**
+     * Invalidates the near cache entry of a resource set changed by this node and routes its reads to the primary
+     * while replicas may lag behind.
+     */
+    private void resourceSetWritten(final String resourceSetKey) {
+        nearCache.invalidate(resourceSetKey);
+        readReplicaRouter.written(resourceSetKey);
     }
 
     private List<String> mapResponseToStringList(final Response smembers) {
@@ -0,0 +1,69 @@
+package org.iris_events.subscription.collection;
+
+import static org.iris_events.subscription.collection.Utils.RESOURCE_SUB_TEMPLATE;
+
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.quarkus.redis.datasource.RedisDataSource;
+
+/**
+ * Redis keyspace notifications on the resource subscription sets, which report changes to the sets made by any node.
+ */
+final class ResourceSetEvents {
+    private static final Logger log = LoggerFactory.getLogger(ResourceSetEvents.class);
+    static final String CHANNEL_PATTERN = "__keyspace@*__:" + String.format(RESOURCE_SUB_TEMPLATE, "*");
+    private static final String KEYSPACE_EVENTS_CONFIG = "notify-keyspace-events";
+    private static final String REQUIRED_KEYSPACE_EVENTS = "Kgs";
+    private static final String ALL_EVENTS = "A";
+    private static final String CHANNEL_KEY_DELIMITER = "__:";
+
+    private ResourceSetEvents() {
+    }
+
+    /**
+     * Resource set key the notification channel reports on.
+     */
+    static Optional<String> resourceSetKey(final String channel) {
+        final var delimiterIndex = channel.indexOf(CHANNEL_KEY_DELIMITER);
+        if (delimiterIndex < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(channel.substring(delimiterIndex + CHANNEL_KEY_DELIMITER.length()));
+    }
+
+    /**
+     * Adds the keyspace event flags needed for set notifications to the server configuration, keeping the flags
+     * already set.
+     */
+    static void enable(final RedisDataSource dataSource) {
+        final var current = currentKeyspaceEvents(dataSource);
+        final var flags = new StringBuilder(current);
+        for (char flag : REQUIRED_KEYSPACE_EVENTS.toCharArray()) {
+            final var covered = flag != 'K' && current.contains(ALL_EVENTS);
+            if (!covered && current.indexOf(flag) < 0) {
+                flags.append(flag);
+            }
+        }
+        if (!flags.toString().equals(current)) {
+            log.info("Enabling keyspace notifications. {}={}", KEYSPACE_EVENTS_CONFIG, flags);
+            dataSource.execute("CONFIG", "SET", KEYSPACE_EVENTS_CONFIG, flags.toString());
+        }
+    }
+
+    private static String currentKeyspaceEvents(final RedisDataSource dataSource) {
+        final var response = dataSource.execute("CONFIG", "GET", KEYSPACE_EVENTS_CONFIG);
+        if (response == null || response.size() == 0) {
+            return "";
+        }
+        try {
+            // RESP3 replies with a map
+            return response.get(KEYSPACE_EVENTS_CONFIG).toString();
+        } catch (UnsupportedOperationException e) {
+            // RESP2 replies with a flat [name, value] array
+            return response.get(1).toString();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package org.iris_events.subscription.collection;
+
+import java.util.List;
+
+/**
+ * Server side scripts used by {@link RedisSubscriptionCollection}. Every script runs atomically in a single round trip
+ * and only touches keys of one hash slot, see {@link RedisKeys}: a session's subscriptions, its session set and the
+ * counters and expiry index of its slot are changed together with the resource sets. With the standard layout there is
+ * no cluster and every write is a single script call; with the tagged layout a resource set lives in the slot of its
+ * resource, so resource sets outside the session's slot are updated by separate {@link #UPDATE_SETS} calls.
+ * <p>
+ * The subscription and session counters of a slot follow its session sets: a subscription is counted while its id is a
+ * member of its session set, and a session is counted while its session set exists. Scripts adjust the counters only on
+ * actual membership changes, so repeated inserts and removals keep them exact.
+ */
+public class Scripts {
+
+    /**
+     * Applies SADD or SREM to the resource sets from KEYS[firstKey] on, with the member count and the members of each
+     * set in ARGV from ARGV[firstArg] on.
+     */
+    private static final String UPDATE_SETS_FUNCTION = """
+            local function updateSets(command, firstKey, firstArg)
+                local n = firstArg
+                for k = firstKey, #KEYS do
+                    local count = tonumber(ARGV[n])
+                    for i = n + 1, n + count do
+                        redis.call(command, KEYS[k], ARGV[i])
+                    end
+                    n = n + count + 1
+                end
+            end
+            """;
+
+    /**
+     * Removes a removed subscription from its resource set, whose key is derived from the subscription id, as the
+     * subscription id and the compact session id. Skipped with an empty prefix, when the resource set may live in
+     * another slot.
+     */
+    private static final String REMOVE_FROM_RESOURCE_SET_FUNCTION = """
+            local function removeFromResourceSet(resourceSetPrefix, sessionId, sessionPrefix, subscriptionKey)
+                if resourceSetPrefix ~= '' then
+                    local resourceSetKey = resourceSetPrefix .. string.sub(subscriptionKey, #sessionPrefix + 1)
+                    redis.call('SREM', resourceSetKey, subscriptionKey, sessionId)
+                end
+            end
+            """;
+
+    /**
+     * Inserts subscriptions of sessions sharing a hash slot. KEYS[1] and KEYS[2] are the subscription and session
+     * counters and KEYS[3] the expiry index of the slot, followed by (subscription key, session set key) pairs and then
+     * the resource sets of the slot to add members to. ARGV[1] is the subscription ttl in seconds, ARGV[2] the expiry
+     * time in epoch millis and ARGV[3] the number of pairs, followed by the subscription json per pair and then the
+     * member count and the members per resource set. Returns 1 if the subscription counter of the slot did not exist
+     * yet.
+     */
+    public static final RedisScript INSERT = new RedisScript(UPDATE_SETS_FUNCTION + """
+            local created = redis.call('EXISTS', KEYS[1]) == 0 and 1 or 0
+            local pairCount = tonumber(ARGV[3])
+            for i = 4, 3 + pairCount * 2, 2 do
+                local subscriptionKey = KEYS[i]
+                local sessionSetKey = KEYS[i + 1]
+                redis.call('SET', subscriptionKey, ARGV[4 + (i - 4) / 2], 'EX', ARGV[1])
+                redis.call('ZADD', KEYS[3], ARGV[2], subscriptionKey)
+                if redis.call('SADD', sessionSetKey, subscriptionKey) == 1 then
+                    redis.call('INCR', KEYS[1])
+                    if redis.call('SCARD', sessionSetKey) == 1 then
+                        redis.call('INCR', KEYS[2])
+                    end
+                end
+            end
+            updateSets('SADD', 4 + pairCount * 2, 4 + pairCount)
+            return created
+            """);
+
+    /**
+     * Removes subscriptions of one session. KEYS[1] is the session set, KEYS[2] and KEYS[3] are the subscription and
+     * session counters and KEYS[4] the expiry index of its slot, followed by the subscription keys and then the resource
+     * sets of the slot to remove members from. ARGV[1] is the number of subscription keys, followed by the member count
+     * and the members per resource set. Returns the number of subscriptions removed.
+     */
+    public static final RedisScript REMOVE = new RedisScript(UPDATE_SETS_FUNCTION + """
+            local sessionSetKey = KEYS[1]
+            local last = 4 + tonumber(ARGV[1])
+            local removed = 0
+            for i = 5, last do
+                removed = removed + redis.call('SREM', sessionSetKey, KEYS[i])
+                redis.call('DEL', KEYS[i])
+                redis.call('ZREM', KEYS[4], KEYS[i])
+            end
+            if removed > 0 then
+                redis.call('DECRBY', KEYS[2], removed)
+                if redis.call('EXISTS', sessionSetKey) == 0 then
+                    redis.call('DECR', KEYS[3])
+                end
+            end
+            updateSets('SREM', last + 1, 2)
+            return removed
+            """);
+
+    /**
+     * Removes sessions sharing a hash slot with all their subscriptions. KEYS[1] and KEYS[2] are the subscription and
+     * session counters and KEYS[3] the expiry index of the slot, followed by the session set of every session. The
+     * subscription keys are read from the session sets, which they share their hash tag with. ARGV[1] is the resource
+     * set key prefix, empty if the resource sets are updated separately, followed by the session id and the
+     * subscription id prefix per session. Returns the removed subscription ids.
+     */
+    public static final RedisScript REMOVE_SESSIONS = new RedisScript(REMOVE_FROM_RESOURCE_SET_FUNCTION + """
+            local removed = {}
+            local removedSessions = 0
+            for i = 4, #KEYS do
+                local n = i - 4
+                local members = redis.call('SMEMBERS', KEYS[i])
+                for _, subscriptionKey in ipairs(members) do
+                    redis.call('DEL', subscriptionKey)
+                    redis.call('ZREM', KEYS[3], subscriptionKey)
+                    removeFromResourceSet(ARGV[1], ARGV[2 + n * 2], ARGV[3 + n * 2], subscriptionKey)
+                    table.insert(removed, subscriptionKey)
+                end
+                if #members > 0 then
+                    redis.call('DEL', KEYS[i])
+                    removedSessions = removedSessions + 1
+                end
+            end
+            if #removed > 0 then
+                redis.call('DECRBY', KEYS[1], #removed)
+                redis.call('DECRBY', KEYS[2], removedSessions)
+            end
+            return removed
+            """);
+
+    /**
+     * Removes the subscriptions of one session whose id starts with a prefix. KEYS[1] is the session set, KEYS[2] and
+     * KEYS[3] are the subscription and session counters and KEYS[4] the expiry index of its slot. ARGV[1] is the prefix
+     * to match, ARGV[2] the resource set key prefix, empty if the resource sets are updated separately, and ARGV[3] and
+     * ARGV[4] the session id and its subscription id prefix. Returns the removed subscription ids.
+     */
+    public static final RedisScript REMOVE_BY_PREFIX = new RedisScript(REMOVE_FROM_RESOURCE_SET_FUNCTION + """
+            local sessionSetKey = KEYS[1]
+            local prefix = ARGV[1]
+            local removed = {}
+            for _, subscriptionKey in ipairs(redis.call('SMEMBERS', sessionSetKey)) do
+                if string.sub(subscriptionKey, 1, #prefix) == prefix then
+                    redis.call('SREM', sessionSetKey, subscriptionKey)
+                    redis.call('DEL', subscriptionKey)
+                    redis.call('ZREM', KEYS[4], subscriptionKey)
+                    removeFromResourceSet(ARGV[2], ARGV[3], ARGV[4], subscriptionKey)
+                    table.insert(removed, subscriptionKey)
+                end
+            end
+            if #removed > 0 then
+                redis.call('DECRBY', KEYS[2], #removed)
+                if redis.call('EXISTS', sessionSetKey) == 0 then
+                    redis.call('DECR', KEYS[3])
+                end
+            end
+            return removed
+            """);
+
+    /**
+     * Adds or removes members of sets sharing a hash slot, used with the tagged layout for the resource sets outside
+     * the slot of the session. ARGV[1] is SADD or SREM, followed per key by the member count and the members.
+     */
+    public static final RedisScript UPDATE_SETS = new RedisScript(UPDATE_SETS_FUNCTION + """
+            updateSets(ARGV[1], 1, 2)
+            return #KEYS
+            """);
+
+    /**
+     * Removes pointers to expired subscriptions from a session set. KEYS[1] is the session set, KEYS[2] and KEYS[3] are
+     * the subscription and session counters of its slot, followed by the subscription keys. ARGV holds the set member of
+     * each subscription key. A member is only removed if its subscription key is still missing, so a subscription
+     * re-inserted in the meantime is kept.
+     */
+    public static final RedisScript REMOVE_POINTERS = new RedisScript("""
+            local setKey = KEYS[1]
+            local removed = 0
+            for i = 4, #KEYS do
+                if redis.call('EXISTS', KEYS[i]) == 0 then
+                    removed = removed + redis.call('SREM', setKey, ARGV[i - 3])
+                end
+            end
+            if removed > 0 then
+                redis.call('DECRBY', KEYS[2], removed)
+                if redis.call('EXISTS', setKey) == 0 then
+                    redis.call('DECR', KEYS[3])
+                end
+            end
+            return removed
+            """);
+
+    /**
+     * Removes session set entries of subscriptions taken from the expiry index of a slot. KEYS[1] and KEYS[2] are the
+     * subscription and session counters and KEYS[3] the expiry index of the slot, followed by (subscription key,
+     * session set key) pairs. ARGV[1] is the current time in epoch millis and ARGV[2] the resource set key prefix,
+     * empty if the resource sets are updated separately, followed by the session id and its subscription id prefix per
+     * pair. A subscription that is still alive, for example because it was re-inserted, is rescheduled with its
+     * remaining ttl instead. Returns the ids of the expired subscriptions.
+     */
+    public static final RedisScript REMOVE_EXPIRED = new RedisScript(REMOVE_FROM_RESOURCE_SET_FUNCTION + """
+            local now = tonumber(ARGV[1])
+            local expired = {}
+            local removed = 0
+            for i = 4, #KEYS, 2 do
+                local n = (i - 4) / 2
+                local subscriptionKey = KEYS[i]
+                local sessionSetKey = KEYS[i + 1]
+                local pttl = redis.call('PTTL', subscriptionKey)
+                if pttl > 0 then
+                    redis.call('ZADD', KEYS[3], now + pttl, subscriptionKey)
+                else
+                    redis.call('ZREM', KEYS[3], subscriptionKey)
+                    if pttl == -2 then
+                        removeFromResourceSet(ARGV[2], ARGV[3 + n * 2], ARGV[4 + n * 2], subscriptionKey)
+                        table.insert(expired, subscriptionKey)
+                        if redis.call('SREM', sessionSetKey, subscriptionKey) == 1 then
+                            removed = removed + 1
+                            if redis.call('EXISTS', sessionSetKey) == 0 then
+                                redis.call('DECR', KEYS[2])
+                            end
+                        end
+                    end
+                end
+            end
+            if removed > 0 then
+                redis.call('DECRBY', KEYS[1], removed)
+            end
+            return expired
+            """);
+
+    /**
+     * Number of subscriptions of a slot that have not expired. KEYS[1] is the subscription counter and KEYS[2] the expiry
+     * index of the slot, ARGV[1] the current time in epoch millis. Subscriptions past their expiry stay counted until the
+     * cleanup removes them, so they are subtracted.
+     */
+    public static final RedisScript SIZE = new RedisScript("""
+            local count = tonumber(redis.call('GET', KEYS[1]) or '0')
+            return count - redis.call('ZCOUNT', KEYS[2], '-inf', ARGV[1])
+            """);
+
+    private Scripts() {
+    }
+
+    /**
+     * Keys and arguments of one script call.
+     */
+    record Call(List<String> keys, List<String> args) {
+    }
+}
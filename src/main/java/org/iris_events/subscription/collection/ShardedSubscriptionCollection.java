@@ -0,0 +1,228 @@
+package org.iris_events.subscription.collection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.iris_events.subscription.model.Resource;
+import org.iris_events.subscription.model.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.redis.client.RedisClient;
+import io.quarkus.redis.client.RedisClientName;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Alternative;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+
+/**
+ * Subscription collection spread over several Redis instances. Every resource is owned by one shard, picked by
+ * consistent hashing of the resource, and the shard keeps all subscriptions on the resource together with their
+ * session and resource sets, so its scripts stay atomic. Lookups by resource go to a single shard; session wide
+ * operations and the cleanup run on all shards in parallel.
+ * <p>
+ * Shards are Redis clients named in {@code subscription.collection.sharded.shards}, configured with
+ * {@code quarkus.redis.<name>.hosts}; {@code <default>} is the client configured with {@code quarkus.redis.hosts}, which
+ * also holds the cleanup lease. After adding a shard, {@link #rebalance()} moves the resources now owned by it. Each
+ * shard has its own near cache, invalidated by the keyspace notifications of its Redis instance.
+ * <p>
+ * Selected with the build property {@code subscription.collection.type=sharded}. The session count is summed over the
+ * shards, so a session subscribed on several shards is counted once per shard. The reactive execution mode and the
+ * snapshot collections keep using the default client.
+ */
+@ApplicationScoped
+@Alternative
+@Priority(1)
+@IfBuildProperty(name = "subscription.collection.type", stringValue = "sharded")
+public class ShardedSubscriptionCollection implements SubscriptionCollection {
+    private static final Logger log = LoggerFactory.getLogger(ShardedSubscriptionCollection.class);
+    static final String DEFAULT_SHARD = "<default>";
+
+    @ConfigProperty(name = "subscription.collection.sharded.shards", defaultValue = DEFAULT_SHARD)
+    List<String> shardNames;
+
+    @ConfigProperty(name = "subscription.collection.sharded.virtual-nodes", defaultValue = "160")
+    int virtualNodes;
+
+    @ConfigProperty(name = "subscription.collection.sharded.rebalance-on-startup", defaultValue = "false")
+    boolean rebalanceOnStartup;
+
+    @Inject
+    RedisSubscriptionCollection defaultCollection;
+
+    @Inject
+    @Any
+    Instance<RedisClient> redisClients;
+
+    @Inject
+    @Any
+    Instance<RedisDataSource> dataSources;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<RedisSubscriptionCollection> createdShards = new ArrayList<>();
+    private ConsistentHashRing<RedisSubscriptionCollection> ring;
+
+    @PostConstruct
+    void init() {
+        final var shards = new LinkedHashMap<String, RedisSubscriptionCollection>();
+        shardNames.forEach(name -> {
+            if (DEFAULT_SHARD.equals(name)) {
+                shards.put(name, defaultCollection);
+                return;
+            }
+            final var client = RedisClientName.Literal.of(name);
+            final var shard = defaultCollection.forShard(redisClients.select(client).get(),
+                    dataSources.select(client).get());
+            createdShards.add(shard);
+            shards.put(name, shard);
+        });
+        useShards(shards);
+    }
+
+    void useShards(final Map<String, RedisSubscriptionCollection> shards) {
+        ring = new ConsistentHashRing<>(shards, virtualNodes);
+        log.info("Using sharded subscription collection. shards={}", ring.names());
+    }
+
+    void startup(@Observes StartupEvent event) {
+        // the default collection observes the startup event itself
+        ring.nodes().stream().filter(shard -> shard != defaultCollection).forEach(shard -> shard.startup(event));
+        if (rebalanceOnStartup) {
+            rebalance();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+        createdShards.forEach(RedisSubscriptionCollection::closeShard);
+    }
+
+    @Override
+    public void insert(final Subscription subscription) {
+        shardOf(subscription.resourceType(), subscription.resourceId()).insert(subscription);
+    }
+
+    @Override
+    public void insertAll(final Collection<Subscription> subscriptions) {
+        subscriptions.stream()
+                .collect(Collectors.groupingBy(subscription -> shardOf(subscription.resourceType(),
+                        subscription.resourceId())))
+                .forEach(RedisSubscriptionCollection::insertAll);
+    }
+
+    @Override
+    public Set<Subscription> get(final Resource resource) {
+        return shardOf(resource.resourceType(), resource.resourceId()).get(resource);
+    }
+
+    @Override
+    public Set<Subscription> get(final String sessionId) {
+        final var subscriptions = new HashSet<Subscription>();
+        onAllShards(shard -> shard.get(sessionId)).forEach(subscriptions::addAll);
+        return subscriptions;
+    }
+
+    @Override
+    public void remove(final String sessionId) {
+        removeAll(List.of(sessionId));
+    }
+
+    @Override
+    public void removeAll(final Collection<String> sessionIds) {
+        onAllShards(shard -> {
+            shard.removeAll(sessionIds);
+            return null;
+        });
+    }
+
+    @Override
+    public void remove(final String sessionId, final String resourceType, final String resourceId) {
+        if (resourceId != null) {
+            shardOf(resourceType, resourceId).remove(sessionId, resourceType, resourceId);
+            return;
+        }
+        onAllShards(shard -> {
+            shard.remove(sessionId, resourceType, null);
+            return null;
+        });
+    }
+
+    @Override
+    public int size() {
+        return onAllShards(SubscriptionCollection::size).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    public int sessionSubscriptionCount() {
+        return onAllShards(SubscriptionCollection::sessionSubscriptionCount).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    public void cleanUp() {
+        onAllShards(shard -> {
+            shard.cleanUp();
+            return null;
+        });
+    }
+
+    /**
+     * Moves every resource stored on a shard other than its owner to the owner. Subscriptions are inserted on the owner
+     * before they are removed from the old shard, so they stay readable, although lookups go to the owner as soon as
+     * the ring changes. Moved subscriptions get a fresh ttl.
+     */
+    public void rebalance() {
+        final var moved = new AtomicInteger();
+        ring.nodes().forEach(shard -> shard.forEachResource(resource -> {
+            final var owner = shardOf(resource.resourceType(), resource.resourceId());
+            if (owner == shard) {
+                return;
+            }
+            final var subscriptions = shard.get(resource);
+            owner.insertAll(subscriptions);
+            subscriptions.forEach(subscription -> shard.remove(subscription.sessionId(), resource.resourceType(),
+                    resource.resourceId()));
+            moved.incrementAndGet();
+        }));
+        log.info("Rebalanced subscription shards. shards={}, movedResources={}", ring.names(), moved.get());
+    }
+
+    private RedisSubscriptionCollection shardOf(final String resourceType, final String resourceId) {
+        return ring.get(Utils.getUniqueResId(resourceType, resourceId));
+    }
+
+    private <T> List<T> onAllShards(final Function<RedisSubscriptionCollection, T> operation) {
+        final var futures = ring.nodes().stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> operation.apply(shard), executor))
+                .toList();
+        try {
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
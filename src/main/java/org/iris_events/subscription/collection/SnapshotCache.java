@@ -0,0 +1,176 @@
+package org.iris_events.subscription.collection;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * In-process cache of resource snapshot key to snapshot, bounded by the approximate number of bytes held. Every entry
+ * expires together with its Redis key. A node writing a snapshot publishes the key on an invalidation channel, and the
+ * other nodes drop their copy so the next read loads the new snapshot. The key is reported to the
+ * {@link ReadReplicaRouter} as written as well, so that read goes to the primary within the staleness window rather than
+ * caching the old snapshot from a lagging replica.
+ */
+@ApplicationScoped
+public class SnapshotCache {
+    private static final Logger log = LoggerFactory.getLogger(SnapshotCache.class);
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+    private static final String MESSAGE_DELIMITER = "|";
+
+    @ConfigProperty(name = "subscription.snapshot-cache.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "subscription.snapshot-cache.max-bytes", defaultValue = "67108864")
+    long maxBytes;
+
+    @ConfigProperty(name = "subscription.snapshot-cache.max-entry-bytes", defaultValue = "1048576")
+    int maxEntryBytes;
+
+    @ConfigProperty(name = "subscription.snapshot-cache.max-ttl", defaultValue = "PT1M")
+    Duration maxTtl;
+
+    @ConfigProperty(name = "subscription.snapshot-cache.invalidation-channel", defaultValue = "snapshotInvalidation")
+    String invalidationChannel;
+
+    @Inject
+    RedisDataSource dataSource;
+
+    @Inject
+    ReactiveRedisDataSource reactiveDataSource;
+
+    @Inject
+    ReadReplicaRouter readReplicaRouter;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private Cache<String, Entry> cache;
+    private PubSubCommands.RedisSubscriber subscriber;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        buildCache();
+        subscriber = dataSource.pubsub(String.class).subscribe(invalidationChannel, this::onInvalidation);
+        log.info("Snapshot cache enabled. maxBytes={}, maxEntryBytes={}, maxTtl={}, nodeId={}", maxBytes, maxEntryBytes,
+                maxTtl, nodeId);
+    }
+
+    void buildCache() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, Entry entry) -> entry.weight())
+                .expireAfter(new EntryExpiry())
+                .build();
+    }
+
+    @PreDestroy
+    void destroy() {
+        if (subscriber != null) {
+            subscriber.unsubscribe();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Snapshot getIfPresent(final String snapshotKey) {
+        if (!enabled) {
+            return null;
+        }
+        final var entry = cache.getIfPresent(snapshotKey);
+        return entry == null ? null : entry.snapshot();
+    }
+
+    /**
+     * Caches the snapshot for the remaining ttl of its Redis key, capped by the configured max ttl. The cap bounds how
+     * long a copy loaded concurrently with a write on another node can outlive the invalidation. Snapshots above the
+     * entry size limit are not cached.
+     */
+    public void put(final String snapshotKey, final Snapshot snapshot, final Duration ttl) {
+        if (!enabled || ttl.isNegative() || ttl.isZero()) {
+            return;
+        }
+        final var weight = weigh(snapshot);
+        if (weight > maxEntryBytes) {
+            cache.invalidate(snapshotKey);
+            return;
+        }
+        final var entryTtl = ttl.compareTo(maxTtl) > 0 ? maxTtl : ttl;
+        cache.put(snapshotKey, new Entry(snapshot, entryTtl.toNanos(), weight));
+    }
+
+    /**
+     * Tells the other nodes to drop their copy of the snapshot. The message is published without waiting for Redis.
+     */
+    public void publishInvalidation(final String snapshotKey) {
+        if (!enabled) {
+            return;
+        }
+        reactiveDataSource.pubsub(String.class)
+                .publish(invalidationChannel, nodeId + MESSAGE_DELIMITER + snapshotKey)
+                .subscribe().with(
+                        ignored -> log.trace("Snapshot invalidation published. key={}", snapshotKey),
+                        failure -> log.warn("Could not publish snapshot invalidation. key={}", snapshotKey, failure));
+    }
+
+    void onInvalidation(final String message) {
+        final var delimiterIndex = message.indexOf(MESSAGE_DELIMITER);
+        if (delimiterIndex < 0 || message.substring(0, delimiterIndex).equals(nodeId)) {
+            return;
+        }
+        final var snapshotKey = message.substring(delimiterIndex + MESSAGE_DELIMITER.length());
+        readReplicaRouter.written(snapshotKey);
+        cache.invalidate(snapshotKey);
+    }
+
+    private static int weigh(final Snapshot snapshot) {
+        return ENTRY_OVERHEAD_BYTES
+                + length(snapshot.eventName())
+                + length(snapshot.routingKey())
+                + (snapshot.message() == null ? 0 : snapshot.message().length);
+    }
+
+    private static int length(final String value) {
+        return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private record Entry(Snapshot snapshot, long ttlNanos, int weight) {
+    }
+
+    private static final class EntryExpiry implements Expiry<String, Entry> {
+        @Override
+        public long expireAfterCreate(final String key, final Entry entry, final long currentTime) {
+            return entry.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(final String key, final Entry entry, final long currentTime,
+                final long currentDuration) {
+            return entry.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterRead(final String key, final Entry entry, final long currentTime,
+                final long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
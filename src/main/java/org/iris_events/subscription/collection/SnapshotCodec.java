@@ -0,0 +1,235 @@
+package org.iris_events.subscription.collection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.iris_events.subscription.exception.SubscriptionException;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * Encodes snapshots for storage in Redis. The binary frame is a magic byte and a version byte, followed by the event
+ * name, the routing key and the raw message, each prefixed with its length as a four byte int (-1 for null). Snapshots
+ * written as Jackson JSON by earlier versions are still read, and the JSON format can be selected for writing while
+ * nodes not understanding the binary frame are being replaced.
+ * <p>
+ * Messages at or above the compression threshold are deflated and written in a version 2 frame, which carries a
+ * compression byte after the version and the uncompressed message length before the message. Smaller messages keep
+ * the version 1 frame. The uncompressed length is read from stored data and checked against
+ * {@code subscription.snapshot.max-message-bytes} before the message buffer is allocated.
+ */
+@ApplicationScoped
+public class SnapshotCodec {
+    static final byte MAGIC = 0x00;
+    static final byte VERSION = 1;
+    static final byte COMPRESSED_VERSION = 2;
+    static final byte DEFLATE = 1;
+    private static final int HEADER_LENGTH = 2;
+    private static final int COMPRESSED_HEADER_LENGTH = 3;
+    private static final int NULL_LENGTH = -1;
+
+    @ConfigProperty(name = "subscription.snapshot.format", defaultValue = "binary")
+    SnapshotFormat format;
+
+    @ConfigProperty(name = "subscription.snapshot.compression.enabled", defaultValue = "false")
+    boolean compressionEnabled;
+
+    @ConfigProperty(name = "subscription.snapshot.compression.threshold", defaultValue = "16384")
+    int compressionThreshold;
+
+    @ConfigProperty(name = "subscription.snapshot.compression.level", defaultValue = "1")
+    int compressionLevel;
+
+    @ConfigProperty(name = "subscription.snapshot.max-message-bytes", defaultValue = "16777216")
+    int maxMessageBytes;
+
+    private final ObjectMapper objectMapper;
+
+    public SnapshotCodec(final ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public byte[] encode(final Snapshot snapshot) {
+        if (format == SnapshotFormat.JSON) {
+            try {
+                return objectMapper.writeValueAsBytes(snapshot);
+            } catch (JsonProcessingException e) {
+                throw new SubscriptionException("Could not process snapshot into json", e);
+            }
+        }
+
+        final var eventName = toBytes(snapshot.eventName());
+        final var routingKey = toBytes(snapshot.routingKey());
+        final var message = snapshot.message();
+        final var compressed = shouldCompress(message) ? deflate(message) : null;
+        if (compressed != null && compressed.length < message.length) {
+            final var buffer = ByteBuffer.allocate(COMPRESSED_HEADER_LENGTH + fieldLength(eventName)
+                    + fieldLength(routingKey) + Integer.BYTES + fieldLength(compressed));
+            buffer.put(MAGIC).put(COMPRESSED_VERSION).put(DEFLATE);
+            putField(buffer, eventName);
+            putField(buffer, routingKey);
+            buffer.putInt(message.length);
+            putField(buffer, compressed);
+            return buffer.array();
+        }
+
+        final var buffer = ByteBuffer.allocate(HEADER_LENGTH + fieldLength(eventName) + fieldLength(routingKey)
+                + fieldLength(message));
+        buffer.put(MAGIC).put(VERSION);
+        putField(buffer, eventName);
+        putField(buffer, routingKey);
+        putField(buffer, message);
+        return buffer.array();
+    }
+
+    public Snapshot decode(final byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != MAGIC) {
+            return decodeJson(bytes);
+        }
+
+        final var buffer = ByteBuffer.wrap(bytes);
+        buffer.get();
+        final var version = buffer.get();
+        try {
+            return switch (version) {
+                case VERSION -> new Snapshot(toString(getField(buffer)), toString(getField(buffer)), getField(buffer));
+                case COMPRESSED_VERSION -> decodeCompressed(buffer);
+                default -> throw new SubscriptionException(
+                        String.format("Unsupported snapshot format version. version=%s", version));
+            };
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new SubscriptionException("Could not read binary snapshot", e);
+        }
+    }
+
+    /**
+     * Content hash of an encoded snapshot, used to detect rewrites of an unchanged snapshot.
+     */
+    public static String hash(final byte[] encoded) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(encoded));
+        } catch (NoSuchAlgorithmException e) {
+            throw new SubscriptionException("SHA-256 digest not available", e);
+        }
+    }
+
+    private Snapshot decodeCompressed(final ByteBuffer buffer) {
+        final var compression = buffer.get();
+        if (compression != DEFLATE) {
+            throw new SubscriptionException(
+                    String.format("Unsupported snapshot compression. compression=%s", compression));
+        }
+        final var eventName = toString(getField(buffer));
+        final var routingKey = toString(getField(buffer));
+        final var length = buffer.getInt();
+        if (length > maxMessageBytes) {
+            throw new SubscriptionException(String.format(
+                    "Compressed snapshot message exceeds the maximum size. length=%s, maxMessageBytes=%s", length,
+                    maxMessageBytes));
+        }
+        final var message = inflate(getField(buffer), length);
+        return new Snapshot(eventName, routingKey, message);
+    }
+
+    private Snapshot decodeJson(final byte[] bytes) {
+        try {
+            return objectMapper.readValue(bytes, Snapshot.class);
+        } catch (IOException e) {
+            throw new SubscriptionException("Could not read snapshot json", e);
+        }
+    }
+
+    private boolean shouldCompress(final byte[] message) {
+        return compressionEnabled && message != null && message.length >= compressionThreshold;
+    }
+
+    private byte[] deflate(final byte[] message) {
+        final var deflater = new Deflater(compressionLevel);
+        try {
+            deflater.setInput(message);
+            deflater.finish();
+            final var output = new ByteArrayOutputStream(message.length / 2);
+            final var chunk = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(final byte[] compressed, final int length) {
+        if (compressed == null || length < 0) {
+            throw new IllegalArgumentException("Invalid compressed snapshot message");
+        }
+        final var inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            final var message = new byte[length];
+            var offset = 0;
+            while (offset < length && !inflater.finished()) {
+                final var inflated = inflater.inflate(message, offset, length - offset);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += inflated;
+            }
+            if (offset != length) {
+                throw new IllegalArgumentException("Compressed snapshot message is truncated");
+            }
+            return message;
+        } catch (DataFormatException e) {
+            throw new SubscriptionException("Could not inflate snapshot message", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int fieldLength(final byte[] field) {
+        return Integer.BYTES + (field == null ? 0 : field.length);
+    }
+
+    private static void putField(final ByteBuffer buffer, final byte[] field) {
+        if (field == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        buffer.putInt(field.length).put(field);
+    }
+
+    private static byte[] getField(final ByteBuffer buffer) {
+        final var length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid snapshot field length " + length);
+        }
+        final var field = new byte[length];
+        buffer.get(field);
+        return field;
+    }
+
+    private static byte[] toBytes(final String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String toString(final byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,15 @@
+package org.iris_events.subscription.collection;
+
+/**
+ * Format snapshots are written in. Both formats are always readable.
+ */
+public enum SnapshotFormat {
+    /**
+     * Length prefixed binary frame holding the raw message bytes.
+     */
+    BINARY,
+    /**
+     * Jackson JSON with the message base64 encoded, as written by earlier versions.
+     */
+    JSON
+}
@@ -0,0 +1,16 @@
+package org.iris_events.subscription.collection;
+
+/**
+ * Form of the members stored in the resource subscription sets. Readers understand both forms, so nodes running
+ * different modes can share the same Redis during a rollout.
+ */
+public enum StorageMode {
+    /**
+     * Resource sets hold subscription ids, subscriptions are read from their json values.
+     */
+    JSON,
+    /**
+     * Resource sets hold session ids, subscriptions are rebuilt from the set key and member without a second read.
+     */
+    COMPACT
+}
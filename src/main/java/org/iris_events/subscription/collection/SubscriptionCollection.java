@@ -1,5 +1,6 @@
 package org.iris_events.subscription.collection;
 
+import java.util.Collection;
 import java.util.Set;
 
 import org.iris_events.subscription.model.Resource;
@@ -8,12 +9,16 @@ import org.iris_events.subscription.model.Subscription;
 public interface SubscriptionCollection {
     void insert(Subscription subscription);
 
+    void insertAll(Collection<Subscription> subscriptions);
+
     Set<Subscription> get(Resource resource);
 
     Set<Subscription> get(String sessionId);
 
     void remove(String sessionId);
 
+    void removeAll(Collection<String> sessionIds);
+
     void remove(String sessionId, String resourceType, String resourceId);
 
     int size();
@@ -21,4 +26,11 @@ public interface SubscriptionCollection {
     int sessionSubscriptionCount();
 
     void cleanUp();
+
+    /**
+     * Whether the subscriptions are shared with the other nodes, so one node cleaning them up is enough.
+     */
+    default boolean sharedAcrossNodes() {
+        return true;
+    }
 }
@@ -0,0 +1,151 @@
+package org.iris_events.subscription.collection;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.iris_events.subscription.model.Subscription;
+
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * In-process cache of resource subscription set key to subscribers, including empty sets for resources without
+ * subscribers. Entries are invalidated through Redis keyspace notifications on the resource subscription sets, so
+ * changes made by other nodes are picked up as well. The write expiry bounds staleness if a notification is missed.
+ * <p>
+ * Loads are atomic per key for the blocking and the non-blocking readers alike: an invalidation arriving while a load is
+ * in flight drops the load, so a set read before the change is never cached. An invalidated set is also reported to the
+ * {@link ReadReplicaRouter} as written, so its reload within the staleness window reads the primary instead of a
+ * replica that may not have the change yet.
+ * <p>
+ * The cache only sees notifications of the Redis instance it subscribes to; every shard of
+ * {@link ShardedSubscriptionCollection} gets its own cache, see {@link #forDataSource(RedisDataSource)}.
+ */
+@ApplicationScoped
+public class SubscriptionNearCache {
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionNearCache.class);
+
+    @ConfigProperty(name = "subscription.near-cache.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "subscription.near-cache.max-size", defaultValue = "10000")
+    long maxSize;
+
+    @ConfigProperty(name = "subscription.near-cache.expire-after-write", defaultValue = "PT30S")
+    Duration expireAfterWrite;
+
+    @ConfigProperty(name = "subscription.near-cache.configure-keyspace-events", defaultValue = "true")
+    boolean configureKeyspaceEvents;
+
+    @Inject
+    RedisDataSource dataSource;
+
+    @Inject
+    ReadReplicaRouter readReplicaRouter;
+
+    private AsyncCache<String, Set<Subscription>> cache;
+    private PubSubCommands.RedisSubscriber subscriber;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .buildAsync();
+
+        if (configureKeyspaceEvents) {
+            ResourceSetEvents.enable(dataSource);
+        }
+        subscriber = dataSource.pubsub(String.class)
+                .subscribeToPattern(ResourceSetEvents.CHANNEL_PATTERN, (channel, event) -> onKeyspaceEvent(channel));
+        log.info("Subscription near cache enabled. maxSize={}, expireAfterWrite={}", maxSize, expireAfterWrite);
+    }
+
+    /**
+     * Cache with the configuration of this one for the resource sets stored on another Redis instance, subscribed to
+     * the keyspace notifications of that instance.
+     */
+    SubscriptionNearCache forDataSource(final RedisDataSource otherDataSource) {
+        return create(enabled, maxSize, expireAfterWrite, configureKeyspaceEvents, otherDataSource, readReplicaRouter);
+    }
+
+    /**
+     * Cache outside of the container, released by {@link #destroy()}.
+     */
+    static SubscriptionNearCache create(final boolean enabled, final long maxSize, final Duration expireAfterWrite,
+            final boolean configureKeyspaceEvents, final RedisDataSource dataSource,
+            final ReadReplicaRouter readReplicaRouter) {
+        final var nearCache = new SubscriptionNearCache();
+        nearCache.enabled = enabled;
+        nearCache.maxSize = maxSize;
+        nearCache.expireAfterWrite = expireAfterWrite;
+        nearCache.configureKeyspaceEvents = configureKeyspaceEvents;
+        nearCache.dataSource = dataSource;
+        nearCache.readReplicaRouter = readReplicaRouter;
+        nearCache.init();
+        return nearCache;
+    }
+
+    @PreDestroy
+    void destroy() {
+        if (subscriber != null) {
+            subscriber.unsubscribe();
+        }
+    }
+
+    public Set<Subscription> get(final String resourceSubscriptionsSetId,
+            final Function<String, Set<Subscription>> loader) {
+        if (!enabled) {
+            return loader.apply(resourceSubscriptionsSetId);
+        }
+        return cache.synchronous().get(resourceSubscriptionsSetId, key -> Set.copyOf(loader.apply(key)));
+    }
+
+    public Uni<Set<Subscription>> getAsync(final String resourceSubscriptionsSetId,
+            final Function<String, Uni<Set<Subscription>>> loader) {
+        if (!enabled) {
+            return loader.apply(resourceSubscriptionsSetId);
+        }
+        return Uni.createFrom().completionStage(() -> cache.get(resourceSubscriptionsSetId,
+                (key, executor) -> loader.apply(key).map(Set::copyOf).subscribeAsCompletionStage()));
+    }
+
+    public Set<Subscription> getIfPresent(final String resourceSubscriptionsSetId) {
+        return enabled ? cache.synchronous().getIfPresent(resourceSubscriptionsSetId) : null;
+    }
+
+    public void put(final String resourceSubscriptionsSetId, final Set<Subscription> subscriptions) {
+        if (enabled) {
+            cache.synchronous().put(resourceSubscriptionsSetId, Set.copyOf(subscriptions));
+        }
+    }
+
+    public void invalidate(final String resourceSubscriptionsSetId) {
+        if (enabled) {
+            cache.synchronous().invalidate(resourceSubscriptionsSetId);
+        }
+    }
+
+    private void onKeyspaceEvent(final String channel) {
+        ResourceSetEvents.resourceSetKey(channel).ifPresent(key -> {
+            readReplicaRouter.written(key);
+            invalidate(key);
+        });
+    }
+}
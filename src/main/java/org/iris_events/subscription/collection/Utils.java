@@ -1,41 +1,54 @@
 package org.iris_events.subscription.collection;
 
-import org.iris_events.subscription.model.Subscription;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import org.iris_events.subscription.model.Resource;
 
 public class Utils {
 
     public static final String SUB_TEMPLATE = "subscription|%s";
     public static final String SESSION_SUB_TEMPLATE = "sessionIdSub|%s";
     public static final String RESOURCE_SNAP_TEMPLATE = "resTypeResIdSnap|%s";
+    public static final String RESOURCE_SNAP_HASH_TEMPLATE = "resTypeResIdSnapHash|%s";
     public static final String RESOURCE_SUB_TEMPLATE = "resTypeResIdSub|%s";
+    public static final String SUBSCRIPTION_COUNT_KEY = "subscriptionCount";
+    public static final String SESSION_COUNT_KEY = "sessionSubscriptionCount";
+    public static final String EXPIRY_INDEX_KEY = "subscriptionExpiry";
+    public static final String CLEANUP_CURSOR_TEMPLATE = "subscriptionCleanupCursor|%s";
+    public static final String CLEANUP_LEASE_KEY = "subscriptionCleanupLease";
+    public static final String COUNTERS_RECONCILED_KEY = "subscriptionCountersReconciled";
+    public static final String SUBSCRIPTION_SLOTS_KEY = "subscriptionSlots";
+    public static final String PARTITION_MEMBERS_KEY = "subscriptionPartitionMembers";
     public static final String PIPE = "|";
+    public static final String SUB_PREFIX = String.format(SUB_TEMPLATE, "");
+    public static final String RESOURCE_SUB_PREFIX = String.format(RESOURCE_SUB_TEMPLATE, "");
     public static final String SUBSCRIPTION_ID_DELIMITER = "\\|";
     public static final int MIN_SUBSCRIPTION_PARTS = 4;
     public static final int RESOURCE_TYPE_INDEX = 2;
     public static final int RESOURCE_ID_INDEX = 3;
-
-
-    public static String getResourceSubscriptionsSetId(final String resourceType, final String resourceId) {
-        final var uniqueResId = getUniqueResId(resourceType, resourceId);
-        return String.format(RESOURCE_SUB_TEMPLATE, uniqueResId);
-    }
-
-    public static String getResourceSnapshotKey(final String resourceType, final String resourceId) {
-        final var uniqueResId = getUniqueResId(resourceType, resourceId);
-        return String.format(RESOURCE_SNAP_TEMPLATE, uniqueResId);
-    }
+    public static final String KEY_LAYOUT_PROPERTY = "subscription.collection.redis.key-layout";
+    static final int CLUSTER_SLOTS = 16384;
+    private static final String TAG_START = "{";
+    private static final String TAG_END = "}";
 
     public static String getUniqueResId(String resourceType, String resourceId) {
         return String.format("%s|%s", resourceType, resourceId);
     }
 
-    public static String getSessionSubscriptionsSetId(final String sessionId) {
-        return String.format(SESSION_SUB_TEMPLATE, sessionId);
+    public static String getCleanupCursorKey(final String subTemplate) {
+        return String.format(CLEANUP_CURSOR_TEMPLATE, String.format(subTemplate, ""));
     }
 
-    public static String generateSubscriptionId(Subscription subscription) {
-        final var subId = subscription.sessionId() + PIPE + subscription.resourceType() + PIPE + subscription.resourceId();
-        return String.format(SUB_TEMPLATE, subId);
+    /**
+     * Resolves a resource subscription set member, either a subscription id or a compact session id, to the session id.
+     */
+    public static String toSessionId(final String resourceSetKey, final String member) {
+        if (!member.startsWith(SUB_PREFIX)) {
+            return member;
+        }
+        final var uniqueResId = untag(resourceSetKey.substring(RESOURCE_SUB_PREFIX.length()));
+        return untag(member.substring(SUB_PREFIX.length(), member.length() - uniqueResId.length() - PIPE.length()));
     }
 
     public static boolean isValidSubscriptionId(String subscriptionId) {
@@ -43,8 +56,51 @@ public class Utils {
                 subscriptionId.split(SUBSCRIPTION_ID_DELIMITER).length >= MIN_SUBSCRIPTION_PARTS;
     }
 
-    public static String getResourceSetKey(String subscriptionId) {
-        String[] parts = subscriptionId.split(SUBSCRIPTION_ID_DELIMITER);
-        return Utils.getResourceSubscriptionsSetId(parts[RESOURCE_TYPE_INDEX], parts[RESOURCE_ID_INDEX]);
+    /**
+     * Resource of a resource subscription set key of either layout.
+     */
+    public static Optional<Resource> toResource(final String resourceSetKey) {
+        if (!resourceSetKey.startsWith(RESOURCE_SUB_PREFIX)) {
+            return Optional.empty();
+        }
+        final var uniqueResId = untag(resourceSetKey.substring(RESOURCE_SUB_PREFIX.length()));
+        final var separator = uniqueResId.indexOf(PIPE);
+        if (separator <= 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new Resource(uniqueResId.substring(0, separator), uniqueResId.substring(separator + 1)));
+    }
+
+    /**
+     * Redis Cluster hash slot of the key: CRC16 of the hash tag, or of the whole key when it has no non empty tag.
+     */
+    public static int slot(final String key) {
+        var hashed = key;
+        final var start = key.indexOf(TAG_START);
+        if (start >= 0) {
+            final var end = key.indexOf(TAG_END, start + 1);
+            if (end > start + 1) {
+                hashed = key.substring(start + 1, end);
+            }
+        }
+        return crc16(hashed.getBytes(StandardCharsets.UTF_8)) % CLUSTER_SLOTS;
+    }
+
+    static String untag(final String value) {
+        if (value.startsWith(TAG_START) && value.endsWith(TAG_END)) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    private static int crc16(final byte[] bytes) {
+        var crc = 0;
+        for (byte b : bytes) {
+            crc ^= (b & 0xff) << 8;
+            for (int i = 0; i < 8; i++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+        }
+        return crc & 0xffff;
     }
 }
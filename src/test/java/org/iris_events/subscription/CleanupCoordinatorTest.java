@@ -0,0 +1,55 @@
+package org.iris_events.subscription;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.iris_events.subscription.collection.Utils;
+
+import io.quarkus.redis.client.RedisClient;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+
+@QuarkusTest
+class CleanupCoordinatorTest {
+
+    @Inject
+    RedisClient redisClient;
+
+    @Inject
+    CleanupCoordinator cleanupCoordinator;
+
+    @BeforeEach
+    public void setup() {
+        redisClient.flushdb(List.of());
+    }
+
+    @Test
+    void acquireAndRenew() {
+        assertThat(cleanupCoordinator.tryAcquire(), is(true));
+        assertThat(cleanupCoordinator.tryAcquire(), is(true));
+    }
+
+    @Test
+    void leaseHeldByOtherNode() {
+        redisClient.set(List.of(Utils.CLEANUP_LEASE_KEY, "other-node"));
+
+        assertThat(cleanupCoordinator.tryAcquire(), is(false));
+
+        cleanupCoordinator.release();
+        assertThat(redisClient.get(Utils.CLEANUP_LEASE_KEY).toString(), is("other-node"));
+    }
+
+    @Test
+    void release() {
+        cleanupCoordinator.tryAcquire();
+
+        cleanupCoordinator.release();
+
+        assertThat(redisClient.exists(List.of(Utils.CLEANUP_LEASE_KEY)).toInteger(), is(0));
+    }
+}
@@ -0,0 +1,116 @@
+package org.iris_events.subscription;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.iris_events.common.MessagingHeaders.Message.EVENT_TYPE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.iris_events.annotations.ExchangeType;
+import org.iris_events.annotations.Scope;
+import org.iris_events.common.message.ResourceMessage;
+import org.iris_events.context.EventContext;
+import org.iris_events.producer.RoutingDetails;
+import org.iris_events.subscription.model.Subscription;
+
+/**
+ * Resource updates in {@link FanOutMode#PER_RESOURCE} are published once to the resource exchange.
+ */
+class ConsumerFanOutTest {
+    private static final String RESOURCE_TYPE = "inventory";
+    private static final String EVENT_NAME = "inventory-updated";
+    private static final String RESOURCE_EXCHANGE = "resource-fanout";
+
+    private Consumer consumer;
+    private SubscriptionManager subscriptionManager;
+    private SubscriptionEventProducer producer;
+
+    @BeforeEach
+    public void setup() {
+        final var eventContext = mock(EventContext.class);
+        when(eventContext.getHeaderValue(EVENT_TYPE)).thenReturn(Optional.of(EVENT_NAME));
+        subscriptionManager = mock(SubscriptionManager.class);
+        producer = mock(SubscriptionEventProducer.class);
+
+        consumer = new Consumer();
+        consumer.eventContext = eventContext;
+        consumer.objectMapper = new ObjectMapper();
+        consumer.producer = producer;
+        consumer.subscriptionManager = subscriptionManager;
+        consumer.resourceUpdateConflator = mock(ResourceUpdateConflator.class);
+        consumer.executionMode = ExecutionMode.BLOCKING;
+        consumer.fanOutMode = FanOutMode.PER_RESOURCE;
+        consumer.resourceExchange = RESOURCE_EXCHANGE;
+    }
+
+    @Test
+    void updateIsPublishedOnceAsInternalMessage() throws IOException {
+        final var resourceId = "warehouse-1";
+        final var subscriptionId = subscribe(resourceId);
+
+        consumer.resourceUpdated(new ResourceMessage(RESOURCE_TYPE, resourceId, "payload"));
+
+        final var routingDetails = new RoutingDetails.Builder()
+                .eventName(EVENT_NAME)
+                .exchange(RESOURCE_EXCHANGE)
+                .exchangeType(ExchangeType.TOPIC)
+                .routingKey("inventory.warehouse-1")
+                .scope(Scope.INTERNAL)
+                .subscriptionId(subscriptionId)
+                .build();
+        verify(producer).sendResourceUpdate(eq(RESOURCE_EXCHANGE), eq(RESOURCE_TYPE), eq(resourceId), any(),
+                eq(routingDetails));
+        verify(producer, never()).sendResourceMessages(anyString(), anyString(), any(), any(), anyList());
+    }
+
+    @Test
+    void dotsInTheResourceIdKeepTheRoutingKeyTwoWords() throws IOException {
+        final var resourceId = "eu.warehouse.1";
+        subscribe(resourceId);
+
+        consumer.resourceUpdated(new ResourceMessage(RESOURCE_TYPE, resourceId, "payload"));
+
+        final var routingDetails = ArgumentCaptor.forClass(RoutingDetails.class);
+        verify(producer).sendResourceUpdate(eq(RESOURCE_EXCHANGE), eq(RESOURCE_TYPE), eq(resourceId), any(),
+                routingDetails.capture());
+        assertThat(routingDetails.getValue().getRoutingKey(), is("inventory.eu%2Ewarehouse%2E1"));
+    }
+
+    @Test
+    void routingKeyEscapingIsReversible() {
+        assertThat(ResourceRoutingKey.of("inventory", "100%.a"), is("inventory.100%25%2Ea"));
+        assertThat(ResourceRoutingKey.of("inventory", "100%2Ea"), is("inventory.100%252Ea"));
+        assertThat(ResourceRoutingKey.of("stock.item", "1"), is("stock%2Eitem.1"));
+    }
+
+    @Test
+    void updateWithoutSubscribersIsNotPublished() throws IOException {
+        when(subscriptionManager.getSubscriptions(RESOURCE_TYPE, "unsubscribed")).thenReturn(Set.of());
+
+        consumer.resourceUpdated(new ResourceMessage(RESOURCE_TYPE, "unsubscribed", "payload"));
+
+        verify(producer, never()).sendResourceUpdate(anyString(), anyString(), anyString(), any(), any());
+    }
+
+    private String subscribe(final String resourceId) {
+        final var subscription = new Subscription(RESOURCE_TYPE, resourceId, "session");
+        when(subscriptionManager.getSubscriptions(RESOURCE_TYPE, resourceId)).thenReturn(Set.of(subscription));
+        return subscription.id();
+    }
+}
@@ -0,0 +1,160 @@
+package org.iris_events.subscription;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.iris_events.common.MessagingHeaders.Message.CACHE_TTL;
+import static org.iris_events.common.MessagingHeaders.Message.EVENT_TYPE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.iris_events.common.message.ResourceMessage;
+import org.iris_events.context.EventContext;
+import org.iris_events.subscription.collection.ReactiveRedisSnapshotCollection;
+import org.iris_events.subscription.collection.ReactiveRedisSubscriptionCollection;
+import org.iris_events.subscription.collection.RedisSnapshotCollection;
+import org.iris_events.subscription.collection.Snapshot;
+import org.iris_events.subscription.events.Subscribe;
+import org.iris_events.subscription.events.Unsubscribe;
+import org.iris_events.subscription.model.Resource;
+import org.iris_events.subscription.model.Subscription;
+
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Updates of one resource handed off by the reactive and virtual thread execution modes are stored and published in the
+ * order they were received, even when the first one is slower. The same holds for the messages of one session.
+ */
+class ConsumerOrderingTest {
+    private static final String RESOURCE_TYPE = "ordered-type";
+    private static final String RESOURCE_ID = "1";
+    private static final Resource RESOURCE = new Resource(RESOURCE_TYPE, RESOURCE_ID);
+
+    private final List<String> stored = new CopyOnWriteArrayList<>();
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+
+    private Consumer consumer;
+    private VirtualThreadDispatcher dispatcher;
+
+    @BeforeEach
+    public void setup() {
+        dispatcher = new VirtualThreadDispatcher();
+        dispatcher.maxConcurrency = 16;
+        dispatcher.init();
+
+        final var eventContext = mock(EventContext.class);
+        when(eventContext.getHeaderValue(EVENT_TYPE)).thenReturn(Optional.of("ordered-event"));
+        when(eventContext.getHeaderValue(CACHE_TTL)).thenReturn(Optional.of("10"));
+
+        final var producer = mock(SubscriptionEventProducer.class);
+        doAnswer(invocation -> delivered.add(payload(invocation.getArgument(2))))
+                .when(producer).sendResourceMessages(eq(RESOURCE_TYPE), eq(RESOURCE_ID), any(), any(), anyList());
+
+        consumer = new Consumer();
+        consumer.eventContext = eventContext;
+        consumer.objectMapper = new ObjectMapper();
+        consumer.producer = producer;
+        consumer.virtualThreadDispatcher = dispatcher;
+        consumer.resourceUpdateConflator = mock(ResourceUpdateConflator.class);
+        consumer.fanOutMode = FanOutMode.PER_SESSION;
+        consumer.ackAfterCompletion = Optional.of(false);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dispatcher.destroy();
+    }
+
+    @Test
+    void reactiveUpdatesOfOneResourceKeepTheirOrder() throws IOException {
+        final var snapshotCollection = mock(ReactiveRedisSnapshotCollection.class);
+        when(snapshotCollection.insert(eq(RESOURCE_TYPE), eq(RESOURCE_ID), any(), eq(10))).thenAnswer(invocation -> {
+            final var payload = payload(invocation.<Snapshot> getArgument(2).message());
+            // the first update is the slow one
+            final var delay = payload.contains("first") ? Duration.ofMillis(300) : Duration.ofMillis(1);
+            return Uni.createFrom().voidItem().onItem().delayIt().by(delay).invoke(() -> stored.add(payload));
+        });
+        final var subscriptionCollection = mock(ReactiveRedisSubscriptionCollection.class);
+        when(subscriptionCollection.get(RESOURCE)).thenReturn(Uni.createFrom().item(subscriptions()));
+        consumer.reactiveSnapshotCollection = snapshotCollection;
+        consumer.reactiveSubscriptionCollection = subscriptionCollection;
+        consumer.executionMode = ExecutionMode.REACTIVE;
+
+        sendTwoUpdates();
+    }
+
+    @Test
+    void virtualThreadUpdatesOfOneResourceKeepTheirOrder() throws IOException {
+        final var snapshotCollection = mock(RedisSnapshotCollection.class);
+        doAnswer(invocation -> {
+            final var payload = payload(invocation.<Snapshot> getArgument(2).message());
+            // the first update is the slow one
+            Thread.sleep(payload.contains("first") ? 300 : 1);
+            return stored.add(payload);
+        }).when(snapshotCollection).insert(eq(RESOURCE_TYPE), eq(RESOURCE_ID), any(), eq(10));
+        final var subscriptionManager = mock(SubscriptionManager.class);
+        when(subscriptionManager.getSubscriptions(RESOURCE_TYPE, RESOURCE_ID)).thenReturn(subscriptions());
+        consumer.snapshotCollection = snapshotCollection;
+        consumer.subscriptionManager = subscriptionManager;
+        consumer.executionMode = ExecutionMode.VIRTUAL_THREAD;
+
+        sendTwoUpdates();
+    }
+
+    @Test
+    void virtualThreadSubscribeAndUnsubscribeOfOneSessionKeepTheirOrder() throws IOException {
+        when(consumer.eventContext.getSessionId()).thenReturn(Optional.of("session"));
+        final var subscriptionManager = mock(SubscriptionManager.class);
+        doAnswer(invocation -> {
+            // the subscribe is the slow one
+            Thread.sleep(300);
+            return stored.add("subscribed");
+        }).when(subscriptionManager).addSubscriptions(anyList());
+        doAnswer(invocation -> stored.add("unsubscribed"))
+                .when(subscriptionManager).unsubscribe("session", RESOURCE);
+        consumer.snapshotCollection = mock(RedisSnapshotCollection.class);
+        consumer.subscriptionManager = subscriptionManager;
+        consumer.executionMode = ExecutionMode.VIRTUAL_THREAD;
+        consumer.ackAfterCompletion = Optional.empty();
+
+        consumer.subscribe(new Subscribe(List.of(RESOURCE)));
+        consumer.unsubscribe(new Unsubscribe(List.of(RESOURCE)));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> stored.size() == 2);
+        assertThat(stored, is(List.of("subscribed", "unsubscribed")));
+    }
+
+    private void sendTwoUpdates() throws IOException {
+        consumer.resourceUpdated(new ResourceMessage(RESOURCE_TYPE, RESOURCE_ID, "first"));
+        consumer.resourceUpdated(new ResourceMessage(RESOURCE_TYPE, RESOURCE_ID, "second"));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> delivered.size() == 2);
+        assertThat(stored, is(List.of("\"first\"", "\"second\"")));
+        assertThat(delivered, is(List.of("\"first\"", "\"second\"")));
+    }
+
+    private static Set<Subscription> subscriptions() {
+        return Set.of(new Subscription(RESOURCE_TYPE, RESOURCE_ID, "session"));
+    }
+
+    private static String payload(final byte[] message) {
+        return new String(message);
+    }
+}
@@ -3,7 +3,7 @@ package org.iris_events.subscription;
 import static org.iris_events.common.MessagingHeaders.Message.EVENT_TYPE;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
-import static org.mockito.Mockito.inOrder;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -28,6 +28,7 @@ import org.iris_events.common.message.ResourceMessage;
 import org.iris_events.runtime.BasicPropertiesProvider;
 import org.iris_events.context.EventContext;
 import org.iris_events.producer.RoutingDetails;
+import org.iris_events.subscription.SubscriptionEventProducer.SessionMessage;
 import org.iris_events.subscription.events.SnapshotRequested;
 import org.iris_events.subscription.events.Subscribe;
 import org.iris_events.subscription.events.Subscribed;
@@ -102,8 +103,8 @@ class ConsumerTest {
             final var payload = "a";
             consumer.resourceUpdated(new ResourceMessage(RESOURCE_TYPE, RESOURCE_ID, payload));
 
-            verify(producer).sendResourceMessage(RESOURCE_TYPE, RESOURCE_ID, objectMapper.writeValueAsBytes(payload),
-                    routingDetails);
+            verify(producer).sendResourceMessages(RESOURCE_TYPE, RESOURCE_ID, objectMapper.writeValueAsBytes(payload),
+                    routingDetails, List.of(sessionId));
         }
 
         private String buildRoutingKey(String eventName, String exchange) {
@@ -133,9 +134,12 @@ class ConsumerTest {
         void subscriptionManager() throws IOException {
             consumer.subscribe(subscribe);
 
-            final var subscriptionArgumentCaptor = ArgumentCaptor.forClass(Subscription.class);
-            verify(subscriptionManager).addSubscription(subscriptionArgumentCaptor.capture());
-            final var subscription = subscriptionArgumentCaptor.getValue();
+            @SuppressWarnings("unchecked")
+            final ArgumentCaptor<List<Subscription>> subscriptionsArgumentCaptor = ArgumentCaptor.forClass(List.class);
+            verify(subscriptionManager).addSubscriptions(subscriptionsArgumentCaptor.capture());
+            final var subscriptions = subscriptionsArgumentCaptor.getValue();
+            assertThat(subscriptions.size(), is(1));
+            final var subscription = subscriptions.get(0);
             assertThat(subscription.sessionId(), is(sessionId));
             assertThat(subscription.resourceId(), is(RESOURCE_ID));
             assertThat(subscription.resourceType(), is(RESOURCE_TYPE));
@@ -143,25 +147,27 @@ class ConsumerTest {
         }
 
         @Test
-        void eventContext() throws IOException {
+        void sessionMessages() throws IOException {
             consumer.subscribe(subscribe);
 
-            final var subscriptionIdArgumentCaptor = ArgumentCaptor.forClass(String.class);
-            verify(eventContext).setSubscriptionId(subscriptionIdArgumentCaptor.capture());
-            final var subscriptionIdArgumentCaptorValue = subscriptionIdArgumentCaptor.getValue();
-            assertThat(subscriptionIdArgumentCaptorValue, is(RESOURCE_TYPE + "-" + RESOURCE_ID));
+            final var messages = sessionMessages();
+            assertThat(messages.size(), is(2));
+            final var subscriptionId = buildSubscriptionId(RESOURCE_TYPE, RESOURCE_ID);
+            assertThat(messages.get(0).routingDetails().getSubscriptionId(), is(subscriptionId));
+            assertThat(messages.get(1).routingDetails().getSubscriptionId(), is(subscriptionId));
         }
 
         @Test
         void subscribed() throws IOException {
             consumer.subscribe(subscribe);
 
-            final var objectArgumentCaptor = ArgumentCaptor.forClass(Subscribed.class);
-            verify(producer).send(objectArgumentCaptor.capture());
-            final var subscribed = objectArgumentCaptor.getValue();
+            final var message = sessionMessages().get(0);
+            final var subscribed = objectMapper.readValue(message.payload(), Subscribed.class);
 
             assertThat(subscribed.resourceId(), is(RESOURCE_ID));
             assertThat(subscribed.resourceType(), is(RESOURCE_TYPE));
+            assertThat(message.routingDetails().getExchange(), is(Exchanges.SESSION.getValue()));
+            assertThat(message.routingDetails().getScope(), is(Scope.SESSION));
         }
 
         @Test
@@ -170,10 +176,6 @@ class ConsumerTest {
 
             consumer.subscribe(subscribe);
 
-            final var inOrder = inOrder(producer);
-            final var subscribed = new Subscribed(RESOURCE_TYPE, RESOURCE_ID);
-            inOrder.verify(producer).send(subscribed);
-
             final var subscriptionId = buildSubscriptionId(RESOURCE_TYPE, RESOURCE_ID);
             final var routingDetails = new RoutingDetails.Builder()
                     .eventName(exchangeName)
@@ -185,7 +187,18 @@ class ConsumerTest {
                     .build();
             final var snapshotRequested = new SnapshotRequested(RESOURCE_TYPE, RESOURCE_ID);
             final var payloadsAsBytes = objectMapper.writeValueAsBytes(snapshotRequested);
-            inOrder.verify(producer).sendResourceMessage(RESOURCE_TYPE, RESOURCE_ID, payloadsAsBytes, routingDetails);
+            final var message = sessionMessages().get(1);
+            assertThat(message.resourceType(), is(RESOURCE_TYPE));
+            assertThat(message.resourceId(), is(RESOURCE_ID));
+            assertThat(message.payload(), is(payloadsAsBytes));
+            assertThat(message.routingDetails(), is(routingDetails));
+        }
+
+        private List<SessionMessage> sessionMessages() {
+            @SuppressWarnings("unchecked")
+            final ArgumentCaptor<List<SessionMessage>> messagesArgumentCaptor = ArgumentCaptor.forClass(List.class);
+            verify(producer).sendSessionMessages(eq(sessionId), messagesArgumentCaptor.capture());
+            return messagesArgumentCaptor.getValue();
         }
     }
 
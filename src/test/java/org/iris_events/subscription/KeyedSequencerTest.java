@@ -0,0 +1,72 @@
+package org.iris_events.subscription;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class KeyedSequencerTest {
+    private final KeyedSequencer<String> sequencer = new KeyedSequencer<>(Thread::startVirtualThread);
+
+    @Test
+    void tasksOfOneKeyRunInSubmissionOrder() throws Exception {
+        final var order = new CopyOnWriteArrayList<String>();
+
+        sequencer.submit("key", () -> CompletableFuture.runAsync(() -> {
+            sleep(200);
+            order.add("first");
+        }, Thread::startVirtualThread));
+        final var second = sequencer.submit("key",
+                () -> CompletableFuture.runAsync(() -> order.add("second"), Thread::startVirtualThread));
+
+        second.get(5, TimeUnit.SECONDS);
+        assertThat(order, is(List.of("first", "second")));
+        assertThat(sequencer.size(), is(0));
+    }
+
+    @Test
+    void tasksOfOtherKeysDoNotWait() throws Exception {
+        final var blocked = new CompletableFuture<Void>();
+        sequencer.submit("blocked", () -> blocked);
+
+        sequencer.submit("other", () -> CompletableFuture.completedFuture(null)).get(5, TimeUnit.SECONDS);
+
+        blocked.complete(null);
+    }
+
+    @Test
+    void failedTaskDoesNotStopTheQueue() throws Exception {
+        final var failed = sequencer.submit("key", () -> CompletableFuture.failedFuture(new IllegalStateException()));
+        final var next = sequencer.submit("key", () -> CompletableFuture.completedFuture(null));
+
+        next.get(5, TimeUnit.SECONDS);
+        assertThat(failed.isCompletedExceptionally(), is(true));
+    }
+
+    @Test
+    void longQueueDoesNotOverflowTheStack() throws Exception {
+        final var gate = new CompletableFuture<Void>();
+        sequencer.submit("key", () -> gate);
+        CompletableFuture<Void> last = null;
+        for (int i = 0; i < 100_000; i++) {
+            last = sequencer.submit("key", () -> CompletableFuture.completedFuture(null));
+        }
+
+        gate.complete(null);
+
+        last.get(10, TimeUnit.SECONDS);
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.iris_events.subscription;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+
+import org.iris_events.runtime.channel.ChannelService;
+import org.iris_events.subscription.PartitionBindings.PartitionedUpdate;
+import org.iris_events.subscription.collection.PartitionMembership;
+import org.iris_events.subscription.collection.Snapshot;
+import org.iris_events.subscription.model.Resource;
+
+class PartitionBindingsTest {
+    private static final String EXCHANGE = "resource-partitions";
+    private static final String QUEUE = "amq.gen-partitions";
+    private static final Resource RESOURCE = new Resource("inventory", "item-1");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Channel channel;
+    private SubscriptionEventProducer producer;
+    private PartitionMembership membership;
+    private PartitionBindings bindings;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        channel = Mockito.mock(Channel.class);
+        final var declareOk = Mockito.mock(AMQP.Queue.DeclareOk.class);
+        Mockito.when(declareOk.getQueue()).thenReturn(QUEUE);
+        Mockito.when(channel.queueDeclare()).thenReturn(declareOk);
+        Mockito.when(channel.isOpen()).thenReturn(true);
+        final var channelService = Mockito.mock(ChannelService.class);
+        Mockito.when(channelService.getOrCreateChannelById(Mockito.anyString())).thenReturn(channel);
+        producer = Mockito.mock(SubscriptionEventProducer.class);
+
+        membership = Mockito.mock(PartitionMembership.class);
+        Mockito.when(membership.ownedPartitions()).thenReturn(Set.of(1, 3, 5));
+        Mockito.when(membership.partitionOf(RESOURCE)).thenReturn(5);
+
+        bindings = new PartitionBindings();
+        bindings.exchange = EXCHANGE;
+        bindings.prefetch = 100;
+        bindings.membership = membership;
+        bindings.producer = producer;
+        bindings.objectMapper = objectMapper;
+        bindings.channelService = channelService;
+    }
+
+    @Test
+    void ownedPartitionsAreBound() throws IOException {
+        bindings.start(update -> {
+        });
+
+        Mockito.verify(channel).queueBind(QUEUE, EXCHANGE, "1");
+        Mockito.verify(channel).queueBind(QUEUE, EXCHANGE, "3");
+        Mockito.verify(channel).queueBind(QUEUE, EXCHANGE, "5");
+        Mockito.verify(membership).onOwnershipChange(Mockito.any());
+    }
+
+    @Test
+    void lostPartitionsAreUnbound() throws IOException {
+        bindings.start(update -> {
+        });
+
+        bindings.ownershipChanged(Set.of(), Set.of(3));
+        bindings.ownershipChanged(Set.of(), Set.of(3));
+
+        Mockito.verify(channel, Mockito.times(1)).queueUnbind(QUEUE, EXCHANGE, "3");
+    }
+
+    @Test
+    void updateIsForwardedToThePartitionOfTheResource() throws IOException {
+        final var snapshot = new Snapshot("inventory-updated", "inventory-updated.session", new byte[] { 1 });
+
+        bindings.forward(RESOURCE, snapshot, Optional.of(60));
+
+        final var payload = ArgumentCaptor.forClass(byte[].class);
+        Mockito.verify(producer).sendPartitionedUpdate(Mockito.eq(EXCHANGE), Mockito.eq("5"), Mockito.eq("inventory"),
+                Mockito.eq("item-1"), payload.capture());
+        final var update = objectMapper.readValue(payload.getValue(), PartitionedUpdate.class);
+        assertThat(update.resourceId(), is("item-1"));
+        assertThat(update.snapshot().routingKey(), is("inventory-updated.session"));
+        assertThat(update.cacheTtl(), is(60));
+    }
+}
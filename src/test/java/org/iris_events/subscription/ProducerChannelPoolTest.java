@@ -0,0 +1,107 @@
+package org.iris_events.subscription;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.rabbitmq.client.Channel;
+
+import org.iris_events.runtime.channel.ChannelService;
+
+class ProducerChannelPoolTest {
+    private final Map<String, Channel> channels = new HashMap<>();
+    private ChannelService channelService;
+    private ProducerChannelPool channelPool;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        channelService = Mockito.mock(ChannelService.class);
+        Mockito.when(channelService.getOrCreateChannelById(Mockito.anyString())).thenAnswer(invocation -> channels
+                .computeIfAbsent(invocation.getArgument(0), channelId -> openChannel()));
+        channelPool = new ProducerChannelPool(channelService);
+        channelPool.size = 4;
+        channelPool.init();
+    }
+
+    @Test
+    void sessionKeepsItsSlot() {
+        final var slot = channelPool.slotFor("session");
+
+        assertThat(channelPool.slotFor("session"), is(slot));
+        assertThat(slot < channelPool.size(), is(true));
+    }
+
+    @Test
+    void failedChannelIsReplacedRemovedAndAborted() throws IOException {
+        final var failed = channelPool.channel(0);
+        final var failedChannelId = channelPool.status().getFirst().channelId();
+
+        channelPool.failed(0, failed, new IOException("publish failed"));
+        final var replacement = channelPool.channel(0);
+
+        assertThat(replacement, not(sameInstance(failed)));
+        assertThat(channelPool.status().getFirst().channelId(), not(failedChannelId));
+        assertThat(channelPool.status().getFirst().replacements(), is(1L));
+        Mockito.verify(channelService).removeChannel(failedChannelId);
+        Mockito.verify(failed).abort();
+    }
+
+    @Test
+    void concurrentFailuresReplaceOnce() throws IOException {
+        final var failed = channelPool.channel(0);
+
+        channelPool.failed(0, failed, new IOException("publish failed"));
+        final var replacement = channelPool.channel(0);
+        channelPool.failed(0, failed, new IOException("publish failed"));
+
+        assertThat(channelPool.channel(0), sameInstance(replacement));
+        assertThat(channelPool.status().getFirst().replacements(), is(1L));
+    }
+
+    @Test
+    void closedChannelIsReplacedAndRemoved() throws IOException {
+        final var closed = channelPool.channel(1);
+        final var closedChannelId = channelPool.status().get(1).channelId();
+        Mockito.when(closed.isOpen()).thenReturn(false);
+
+        final var replacement = channelPool.channel(1);
+
+        assertThat(replacement, not(sameInstance(closed)));
+        assertThat(replacement.isOpen(), is(true));
+        Mockito.verify(channelService).removeChannel(closedChannelId);
+    }
+
+    @Test
+    void statusDoesNotOpenChannels() throws IOException {
+        final var status = channelPool.status();
+
+        assertThat(status.size(), is(4));
+        assertThat(status.stream().allMatch(ProducerChannelPool.ChannelStatus::ready), is(true));
+        Mockito.verify(channelService, Mockito.never()).getOrCreateChannelById(Mockito.anyString());
+    }
+
+    @Test
+    void replacedSlotIsNotReadyUntilReopened() throws IOException {
+        channelPool.failed(2, channelPool.channel(2), new IOException("publish failed"));
+
+        assertThat(channelPool.status().get(2).ready(), is(false));
+
+        channelPool.channel(2);
+        assertThat(channelPool.status().get(2).ready(), is(true));
+    }
+
+    private static Channel openChannel() {
+        final var channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.isOpen()).thenReturn(true);
+        return channel;
+    }
+}
@@ -0,0 +1,111 @@
+package org.iris_events.subscription;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.iris_events.subscription.model.Resource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ResourceUpdateConflatorTest {
+    private ResourceUpdateConflator conflator;
+
+    @BeforeEach
+    public void setup() {
+        conflator = new ResourceUpdateConflator();
+        conflator.resourceTypes = Optional.of(List.of("conflated-type"));
+        conflator.window = Duration.ofMillis(200);
+        conflator.meterRegistry = new SimpleMeterRegistry();
+        conflator.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        conflator.destroy();
+    }
+
+    @Test
+    void onlyConfiguredTypesAreConflated() {
+        assertThat(conflator.isConflated("conflated-type"), is(true));
+        assertThat(conflator.isConflated("other-type"), is(false));
+    }
+
+    @Test
+    void deliversNewestUpdatePerResource() throws InterruptedException {
+        final var delivered = new CopyOnWriteArrayList<String>();
+        final var done = new CountDownLatch(2);
+        final var first = new Resource("conflated-type", "1");
+        final var second = new Resource("conflated-type", "2");
+
+        for (int i = 0; i < 10; i++) {
+            final var update = "1-" + i;
+            conflator.submit(first, () -> {
+                delivered.add(update);
+                done.countDown();
+            });
+        }
+        conflator.submit(second, () -> {
+            delivered.add("2-0");
+            done.countDown();
+        });
+
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        Thread.sleep(300);
+        assertThat(delivered.size(), is(2));
+        assertThat(delivered.contains("1-9"), is(true));
+        assertThat(delivered.contains("2-0"), is(true));
+    }
+
+    @Test
+    void slowDeliveryIsNotOvertakenByLaterUpdates() throws InterruptedException {
+        final var resource = new Resource("conflated-type", "slow");
+        final var other = new Resource("conflated-type", "other");
+        final var delivered = new CopyOnWriteArrayList<Integer>();
+        final var inFlight = new AtomicInteger();
+        final var maxInFlight = new AtomicInteger();
+        final var otherDelivered = new CountDownLatch(1);
+
+        // updates keep arriving for a second while each delivery takes 500ms
+        for (int i = 0; i < 50; i++) {
+            final var update = i;
+            conflator.submit(resource, () -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                sleep(500);
+                delivered.add(update);
+                inFlight.decrementAndGet();
+            });
+            if (i == 20) {
+                conflator.submit(other, otherDelivered::countDown);
+            }
+            Thread.sleep(20);
+        }
+
+        // the slow delivery does not hold up the windows of other resources
+        assertThat(otherDelivered.await(1, TimeUnit.SECONDS), is(true));
+        await().atMost(Duration.ofSeconds(5)).until(() -> delivered.contains(49));
+        assertThat(maxInFlight.get(), is(1));
+        assertThat(delivered, is(delivered.stream().sorted().toList()));
+        assertThat(delivered.getLast(), is(49));
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
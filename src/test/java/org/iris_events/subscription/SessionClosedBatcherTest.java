@@ -0,0 +1,120 @@
+package org.iris_events.subscription;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.iris_events.subscription.collection.SubscriptionCollection;
+import org.iris_events.subscription.model.Subscription;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.redis.client.RedisClient;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+
+@QuarkusTest
+class SessionClosedBatcherTest {
+
+    @Inject
+    SubscriptionManager subscriptionManager;
+
+    @Inject
+    SubscriptionCollection subscriptionCollection;
+
+    @Inject
+    RedisClient redisClient;
+
+    private SessionClosedBatcher batcher;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        redisClient.flushdb(List.of());
+        meterRegistry = new SimpleMeterRegistry();
+        batcher = new SessionClosedBatcher();
+        batcher.enabled = true;
+        batcher.window = Duration.ofHours(1);
+        batcher.maxSize = 2;
+        batcher.subscriptionManager = subscriptionManager;
+        batcher.meterRegistry = meterRegistry;
+        batcher.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        batcher.destroy();
+    }
+
+    @Test
+    void flushRemovesQueuedSessionsInBatches() {
+        subscribe("session1", "session2", "session3");
+        batcher.sessionIds.addAll(List.of("session1", "session2", "session3"));
+
+        batcher.flush();
+
+        assertSubscriptionsRemoved("session1", "session2", "session3");
+        assertThat(meterRegistry.counter("subscription.session-closed.sessions").count(), is(3.0));
+        assertThat(meterRegistry.summary("subscription.session-closed.batch.size").count(), is(2L));
+    }
+
+    @Test
+    void fullBatchIsFlushedBeforeWindow() {
+        subscribe("session1", "session2");
+
+        batcher.add("session1");
+        batcher.add("session2");
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> subscriptionCollection.size() == 0);
+        assertSubscriptionsRemoved("session1", "session2");
+    }
+
+    @Test
+    void fullBatchesQueueOneFlushAtATime() {
+        final var sessions = IntStream.range(0, 100).mapToObj(i -> "session" + i).toArray(String[]::new);
+        subscribe(sessions);
+
+        // holding the batcher keeps a running flush from draining the queue
+        synchronized (batcher) {
+            for (String session : sessions) {
+                batcher.add(session);
+            }
+            // the periodic flush and a single full-batch flush, the other one may already be running
+            assertThat(batcher.executor.getQueue().size() <= 2, is(true));
+        }
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> subscriptionCollection.size() == 0);
+        assertThat(meterRegistry.counter("subscription.session-closed.sessions").count(), is(100.0));
+    }
+
+    @Test
+    void shutdownFlushesQueueAndLaterSessionsAreRemovedDirectly() {
+        subscribe("session1", "session2");
+        batcher.add("session1");
+
+        batcher.shutdown(null);
+        assertSubscriptionsRemoved("session1");
+
+        batcher.add("session2");
+        assertSubscriptionsRemoved("session2");
+    }
+
+    private void subscribe(final String... sessionIds) {
+        for (String sessionId : sessionIds) {
+            subscriptionManager.addSubscription(new Subscription("batchedType", "batchedId", sessionId));
+        }
+    }
+
+    private void assertSubscriptionsRemoved(final String... sessionIds) {
+        for (String sessionId : sessionIds) {
+            assertThat(subscriptionCollection.get(sessionId).isEmpty(), is(true));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.iris_events.subscription;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+
+import org.iris_events.annotations.ExchangeType;
+import org.iris_events.annotations.Scope;
+import org.iris_events.common.Exchanges;
+import org.iris_events.common.MessagingHeaders;
+import org.iris_events.producer.EventProducer;
+import org.iris_events.producer.RoutingDetails;
+import org.iris_events.runtime.BasicPropertiesProvider;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SubscriptionEventProducerTest {
+    private static final String SESSION_ID = "session";
+
+    private ProducerChannelPool channelPool;
+    private BasicPropertiesProvider basicPropertiesProvider;
+    private SubscriptionEventProducer producer;
+    private RoutingDetails routingDetails;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        channelPool = Mockito.mock(ProducerChannelPool.class);
+        Mockito.when(channelPool.slotFor(ArgumentMatchers.anyString())).thenReturn(2);
+        Mockito.when(channelPool.slotForCurrentThread()).thenReturn(0);
+        Mockito.when(channelPool.channel(ArgumentMatchers.anyInt())).thenAnswer(invocation -> Mockito.mock(Channel.class));
+
+        routingDetails = new RoutingDetails.Builder()
+                .eventName("event")
+                .exchange(Exchanges.SESSION.getValue())
+                .exchangeType(ExchangeType.TOPIC)
+                .routingKey("event.session")
+                .scope(Scope.SESSION)
+                .build();
+        basicPropertiesProvider = Mockito.mock(BasicPropertiesProvider.class);
+        Mockito.when(basicPropertiesProvider.getOrCreateAmqpBasicProperties(routingDetails))
+                .thenReturn(new AMQP.BasicProperties.Builder()
+                        .headers(Map.of(MessagingHeaders.Message.SESSION_ID, SESSION_ID))
+                        .build());
+
+        producer = new SubscriptionEventProducer(Mockito.mock(EventProducer.class), channelPool, basicPropertiesProvider,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void snapshotAndFanOutOfOneSessionUseTheSameSlot() throws IOException {
+        producer.sendResourceMessage("resourceType", "resourceId", new byte[0], routingDetails);
+        producer.sendResourceMessages("resourceType", "resourceId", new byte[0], routingDetails, List.of(SESSION_ID));
+
+        Mockito.verify(channelPool, Mockito.times(2)).slotFor(SESSION_ID);
+        Mockito.verify(channelPool, Mockito.times(2)).channel(2);
+        Mockito.verify(channelPool, Mockito.never()).slotForCurrentThread();
+    }
+
+    @Test
+    void failedPublishReplacesTheChannelOfItsSlot() throws IOException {
+        final var channel = Mockito.mock(Channel.class);
+        final var failure = new IOException("publish failed");
+        Mockito.when(channelPool.channel(2)).thenReturn(channel);
+        Mockito.doThrow(failure).when(channel).basicPublish(ArgumentMatchers.anyString(), ArgumentMatchers.anyString(),
+                ArgumentMatchers.anyBoolean(), ArgumentMatchers.any(), ArgumentMatchers.any());
+
+        producer.sendResourceMessage("resourceType", "resourceId", new byte[0], routingDetails);
+
+        Mockito.verify(channelPool).failed(2, channel, failure);
+    }
+
+    @Test
+    void sessionMessagesArePublishedInOrderOnTheChannelOfTheSession() throws IOException {
+        final var channel = Mockito.mock(Channel.class);
+        Mockito.when(channelPool.channel(2)).thenReturn(channel);
+        final var first = "first".getBytes();
+        final var second = "second".getBytes();
+
+        producer.sendSessionMessages(SESSION_ID, List.of(
+                new SubscriptionEventProducer.SessionMessage("resourceType", "1", first, routingDetails),
+                new SubscriptionEventProducer.SessionMessage("resourceType", "2", second, routingDetails)));
+
+        final var inOrder = Mockito.inOrder(channel);
+        inOrder.verify(channel).basicPublish(ArgumentMatchers.eq(Exchanges.SESSION.getValue()),
+                ArgumentMatchers.eq("event.session"), ArgumentMatchers.eq(true), ArgumentMatchers.any(),
+                ArgumentMatchers.eq(first));
+        inOrder.verify(channel).basicPublish(ArgumentMatchers.eq(Exchanges.SESSION.getValue()),
+                ArgumentMatchers.eq("event.session"), ArgumentMatchers.eq(true), ArgumentMatchers.any(),
+                ArgumentMatchers.eq(second));
+        Mockito.verify(channelPool).slotFor(SESSION_ID);
+        Mockito.verify(channelPool).channel(2);
+    }
+
+    @Test
+    void resourceUpdateIsPublishedPerResourceWithoutAddressing() throws IOException {
+        final var routingKey = ResourceRoutingKey.of("inventory", "warehouse.1");
+        final var resourceRoutingDetails = new RoutingDetails.Builder()
+                .eventName("event")
+                .exchange("resource-fanout")
+                .exchangeType(ExchangeType.TOPIC)
+                .routingKey(routingKey)
+                .scope(Scope.INTERNAL)
+                .build();
+        Mockito.when(basicPropertiesProvider.getOrCreateAmqpBasicProperties(resourceRoutingDetails))
+                .thenReturn(new AMQP.BasicProperties.Builder()
+                        .headers(Map.of(MessagingHeaders.Message.SESSION_ID, SESSION_ID,
+                                MessagingHeaders.Message.USER_ID, "user",
+                                MessagingHeaders.Message.EVENT_TYPE, "event"))
+                        .build());
+        final var channel = Mockito.mock(Channel.class);
+        Mockito.when(channelPool.channel(2)).thenReturn(channel);
+
+        producer.sendResourceUpdate("resource-fanout", "inventory", "warehouse.1", new byte[0], resourceRoutingDetails);
+
+        final var properties = ArgumentCaptor.forClass(AMQP.BasicProperties.class);
+        Mockito.verify(channelPool).slotFor(routingKey);
+        Mockito.verify(channel).basicPublish(ArgumentMatchers.eq("resource-fanout"), ArgumentMatchers.eq(routingKey),
+                ArgumentMatchers.eq(true), properties.capture(), ArgumentMatchers.any());
+        assertThat(properties.getValue().getHeaders(), is(Map.of(MessagingHeaders.Message.EVENT_TYPE, "event")));
+    }
+}
@@ -1,7 +1,8 @@
 package org.iris_events.subscription;
 
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.any;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -12,6 +13,7 @@ import java.util.UUID;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -23,6 +25,7 @@ import org.iris_events.common.MessagingHeaders;
 import org.iris_events.common.message.ResourceMessage;
 import org.iris_events.context.EventContext;
 import org.iris_events.producer.RoutingDetails;
+import org.iris_events.subscription.SubscriptionEventProducer.SessionMessage;
 import org.iris_events.subscription.events.SnapshotRequested;
 import org.iris_events.subscription.events.Subscribe;
 import org.iris_events.subscription.events.Subscribed;
@@ -84,9 +87,11 @@ public class SubscriptionIntegrationTest {
                 .build();
 
         InOrder inOrder = inOrder(eventProducer);
-        inOrder.verify(eventProducer).send(expectedSubscribedEvent);
-        inOrder.verify(eventProducer).sendResourceMessage(resourceType, resourceId, expectedSnapshotRequestedPayload,
-                snapshotRequestedRoutingDetails);
+        final var messages = sessionMessages(inOrder);
+        assertThat(messages.size(), is(2));
+        assertThat(objectMapper.readValue(messages.get(0).payload(), Subscribed.class), is(expectedSubscribedEvent));
+        assertThat(messages.get(1).payload(), is(expectedSnapshotRequestedPayload));
+        assertThat(messages.get(1).routingDetails(), is(snapshotRequestedRoutingDetails));
 
         consumer.resourceUpdated(resourceMessage);
         final var routingKey = String.format("%s.%s", eventName, Exchanges.SESSION.getValue());
@@ -99,8 +104,8 @@ public class SubscriptionIntegrationTest {
                 .subscriptionId(subscription.id())
                 .build();
         inOrder.verify(eventProducer)
-                .sendResourceMessage(resourceType, resourceId, objectMapper.writeValueAsBytes(resourceMessage.payload()),
-                        resourceUpdatedRoutingDetails);
+                .sendResourceMessages(resourceType, resourceId, objectMapper.writeValueAsBytes(resourceMessage.payload()),
+                        resourceUpdatedRoutingDetails, List.of(subscription.sessionId()));
         verifyNoMoreInteractions(eventProducer);
     }
 
@@ -122,13 +127,23 @@ public class SubscriptionIntegrationTest {
                 .build();
 
         InOrder inOrder = inOrder(eventProducer);
-        inOrder.verify(eventProducer).send(any(Subscribed.class));
-        inOrder.verify(eventProducer)
-                .sendResourceMessage(resourceType, resourceId, objectMapper.writeValueAsBytes(payload), routingDetails);
-        inOrder.verify(eventProducer).sendResourceMessage(anyString(), anyString(), any(), any(RoutingDetails.class));
+        final var messages = sessionMessages(inOrder);
+        assertThat(messages.size(), is(3));
+        assertThat(objectMapper.readValue(messages.get(0).payload(), Subscribed.class),
+                is(new Subscribed(resourceType, resourceId)));
+        assertThat(messages.get(1).payload(), is(objectMapper.writeValueAsBytes(payload)));
+        assertThat(messages.get(1).routingDetails(), is(routingDetails));
+        assertThat(messages.get(2).payload(), is(getSnapshotRequested(resourceType, resourceId)));
         verifyNoMoreInteractions(eventProducer);
     }
 
+    private List<SessionMessage> sessionMessages(final InOrder inOrder) {
+        @SuppressWarnings("unchecked")
+        final ArgumentCaptor<List<SessionMessage>> messages = ArgumentCaptor.forClass(List.class);
+        inOrder.verify(eventProducer).sendSessionMessages(eq(subscription.sessionId()), messages.capture());
+        return messages.getValue();
+    }
+
     private byte[] getSnapshotRequested(String resourceType, String resourceId) throws Exception {
         final var snapshotRequestedMessage = new SnapshotRequested(resourceType, resourceId);
         return objectMapper.writeValueAsBytes(snapshotRequestedMessage);
@@ -3,6 +3,9 @@ package org.iris_events.subscription;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,6 +13,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import org.iris_events.subscription.collection.RedisSubscriptionCollection;
+import org.iris_events.subscription.exception.SubscriptionException;
 import org.iris_events.subscription.model.Resource;
 import org.iris_events.subscription.model.Subscription;
 import io.quarkus.test.junit.QuarkusTest;
@@ -22,9 +26,12 @@ class SubscriptionManagerTest {
     @InjectMock
     RedisSubscriptionCollection collectionMock;
 
+    @InjectMock
+    CleanupCoordinator cleanupCoordinatorMock;
+
     @BeforeEach
     public void setup() {
-        manager = new SubscriptionManager(collectionMock);
+        manager = new SubscriptionManager(collectionMock, cleanupCoordinatorMock);
     }
 
     @Test
@@ -47,6 +54,30 @@ class SubscriptionManagerTest {
         assertThat(value.resourceType(), is(resourceType));
     }
 
+    @Test
+    void addSubscriptions() {
+        String sessionId = "sessionId";
+        String resourceType = "resource-type";
+
+        List<Subscription> subscriptions = List.of(
+                new Subscription(resourceType, "resourceId1", sessionId),
+                new Subscription(resourceType, "resourceId2", sessionId));
+
+        manager.addSubscriptions(subscriptions);
+
+        Mockito.verify(collectionMock).insertAll(subscriptions);
+    }
+
+    @Test
+    void addSubscriptionsRejectsInvalidSubscription() {
+        List<Subscription> subscriptions = List.of(
+                new Subscription("resource-type", "resourceId1", "sessionId"),
+                new Subscription("resourceType", "resourceId2", "sessionId"));
+
+        assertThrows(SubscriptionException.class, () -> manager.addSubscriptions(subscriptions));
+        Mockito.verifyNoInteractions(collectionMock);
+    }
+
     @Test
     void getSubscriptions() {
         String resourceType = "resourceType";
@@ -74,4 +105,34 @@ class SubscriptionManagerTest {
         assertThat(value, is(notNullValue()));
         assertThat(value, is(sessionId));
     }
+
+    @Test
+    void cleanupWithLease() {
+        Mockito.when(collectionMock.sharedAcrossNodes()).thenReturn(true);
+        Mockito.when(cleanupCoordinatorMock.tryAcquire()).thenReturn(true);
+
+        manager.cleanup();
+
+        Mockito.verify(collectionMock).cleanUp();
+    }
+
+    @Test
+    void cleanupSkippedWithoutLease() {
+        Mockito.when(collectionMock.sharedAcrossNodes()).thenReturn(true);
+        Mockito.when(cleanupCoordinatorMock.tryAcquire()).thenReturn(false);
+
+        manager.cleanup();
+
+        Mockito.verify(collectionMock, Mockito.never()).cleanUp();
+    }
+
+    @Test
+    void cleanupOfNodeLocalCollectionWithoutLease() {
+        Mockito.when(collectionMock.sharedAcrossNodes()).thenReturn(false);
+
+        manager.cleanup();
+
+        Mockito.verify(collectionMock).cleanUp();
+        Mockito.verifyNoInteractions(cleanupCoordinatorMock);
+    }
 }
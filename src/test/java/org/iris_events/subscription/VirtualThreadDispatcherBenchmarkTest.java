@@ -0,0 +1,195 @@
+package org.iris_events.subscription;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.iris_events.common.MessagingHeaders.Message.CACHE_TTL;
+import static org.iris_events.common.MessagingHeaders.Message.EVENT_TYPE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.iris_events.common.message.ResourceMessage;
+import org.iris_events.context.EventContext;
+import org.iris_events.subscription.collection.RedisSnapshotCollection;
+import org.iris_events.subscription.events.Subscribe;
+import org.iris_events.subscription.model.Resource;
+import org.iris_events.subscription.model.Subscription;
+import io.quarkus.redis.client.RedisClient;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+
+/**
+ * Compares the throughput of 10k resource updates handled by {@link Consumer#resourceUpdated} and of 10k subscribes
+ * handled by {@link Consumer#subscribe} on a platform worker pool and dispatched to virtual threads, against Redis with
+ * AMQP publishing stubbed out. Run with {@code mvn test -Dbenchmark=true -Dtest=VirtualThreadDispatcherBenchmarkTest}.
+ */
+@QuarkusTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class VirtualThreadDispatcherBenchmarkTest {
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadDispatcherBenchmarkTest.class);
+    private static final String RESOURCE_TYPE = "benchmark-resource";
+    private static final int UPDATES = 10_000;
+    private static final int SUBSCRIBES = 10_000;
+    private static final int RESOURCES = 100;
+    private static final int SESSIONS = 1_000;
+    private static final int DELIVERY_THREADS = 20;
+
+    @Inject
+    SubscriptionManager subscriptionManager;
+
+    @Inject
+    RedisSnapshotCollection snapshotCollection;
+
+    @Inject
+    VirtualThreadDispatcher virtualThreadDispatcher;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    RedisClient redisClient;
+
+    private final ThreadLocal<String> deliveredSession = new ThreadLocal<>();
+    private CountDownLatch published;
+
+    @BeforeEach
+    void setup() {
+        redisClient.flushdb(List.of());
+        for (int i = 0; i < RESOURCES; i++) {
+            subscriptionManager.addSubscription(new Subscription(RESOURCE_TYPE, String.valueOf(i), "session" + i));
+        }
+        published = new CountDownLatch(UPDATES);
+    }
+
+    @Test
+    void platformThreadsSubscribe() throws InterruptedException {
+        final var consumer = consumer(ExecutionMode.BLOCKING, Optional.empty());
+        try (var deliveryThreads = Executors.newFixedThreadPool(DELIVERY_THREADS)) {
+            subscribe("platform-threads", consumer, deliveryThreads);
+        }
+    }
+
+    @Test
+    void virtualThreadsSubscribe() throws InterruptedException {
+        final var consumer = consumer(ExecutionMode.VIRTUAL_THREAD, Optional.empty());
+        try (var deliveryThreads = Executors.newFixedThreadPool(DELIVERY_THREADS)) {
+            subscribe("virtual-threads", consumer, deliveryThreads);
+        }
+    }
+
+    @Test
+    void platformThreads() throws InterruptedException {
+        final var consumer = consumer(ExecutionMode.BLOCKING, Optional.empty());
+        try (var deliveryThreads = Executors.newFixedThreadPool(DELIVERY_THREADS)) {
+            run("platform-threads", consumer, deliveryThreads);
+        }
+    }
+
+    @Test
+    void virtualThreadsAckedAfterCompletion() throws InterruptedException {
+        final var consumer = consumer(ExecutionMode.VIRTUAL_THREAD, Optional.of(true));
+        try (var deliveryThreads = Executors.newFixedThreadPool(DELIVERY_THREADS)) {
+            run("virtual-threads-ack-after-completion", consumer, deliveryThreads);
+        }
+    }
+
+    @Test
+    void virtualThreadsAckedOnDispatch() throws InterruptedException {
+        final var consumer = consumer(ExecutionMode.VIRTUAL_THREAD, Optional.empty());
+        try (var deliveryThreads = Executors.newFixedThreadPool(DELIVERY_THREADS)) {
+            run("virtual-threads-ack-on-dispatch", consumer, deliveryThreads);
+        }
+    }
+
+    private void run(final String mode, final Consumer consumer, final ExecutorService deliveryThreads)
+            throws InterruptedException {
+        final var start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++) {
+            final var update = new ResourceMessage(RESOURCE_TYPE, String.valueOf(i % RESOURCES), "update" + i);
+            deliveryThreads.execute(() -> {
+                try {
+                    consumer.resourceUpdated(update);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        assertThat(published.await(5, TimeUnit.MINUTES), is(true));
+        final var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        log.info("Resource update benchmark. mode={}, updates={}, elapsedMillis={}, updatesPerSecond={}", mode, UPDATES,
+                elapsedMillis, UPDATES * 1000L / Math.max(elapsedMillis, 1));
+    }
+
+    private void subscribe(final String mode, final Consumer consumer, final ExecutorService deliveryThreads)
+            throws InterruptedException {
+        published = new CountDownLatch(SUBSCRIBES);
+        final var start = System.nanoTime();
+        for (int i = 0; i < SUBSCRIBES; i++) {
+            final var sessionId = "subscriber" + i % SESSIONS;
+            final var subscribe = new Subscribe(List.of(new Resource(RESOURCE_TYPE, String.valueOf(i % RESOURCES))));
+            deliveryThreads.execute(() -> {
+                deliveredSession.set(sessionId);
+                try {
+                    consumer.subscribe(subscribe);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        assertThat(published.await(5, TimeUnit.MINUTES), is(true));
+        final var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        log.info("Subscribe benchmark. mode={}, subscribes={}, elapsedMillis={}, subscribesPerSecond={}", mode,
+                SUBSCRIBES, elapsedMillis, SUBSCRIBES * 1000L / Math.max(elapsedMillis, 1));
+    }
+
+    private Consumer consumer(final ExecutionMode executionMode, final Optional<Boolean> ackAfterCompletion) {
+        final var eventContext = mock(EventContext.class);
+        when(eventContext.getHeaderValue(EVENT_TYPE)).thenReturn(Optional.of("benchmark-event"));
+        when(eventContext.getHeaderValue(CACHE_TTL)).thenReturn(Optional.of("60"));
+        when(eventContext.getSessionId()).thenAnswer(invocation -> Optional.ofNullable(deliveredSession.get()));
+        final var producer = mock(SubscriptionEventProducer.class);
+        doAnswer(invocation -> {
+            published.countDown();
+            return null;
+        }).when(producer).sendResourceMessages(anyString(), anyString(), any(), any(), anyList());
+        doAnswer(invocation -> {
+            published.countDown();
+            return null;
+        }).when(producer).sendSessionMessages(anyString(), anyList());
+
+        final var consumer = new Consumer();
+        consumer.eventContext = eventContext;
+        consumer.objectMapper = objectMapper;
+        consumer.producer = producer;
+        consumer.subscriptionManager = subscriptionManager;
+        consumer.snapshotCollection = snapshotCollection;
+        consumer.virtualThreadDispatcher = virtualThreadDispatcher;
+        consumer.resourceUpdateConflator = mock(ResourceUpdateConflator.class);
+        consumer.executionMode = executionMode;
+        consumer.fanOutMode = FanOutMode.PER_SESSION;
+        consumer.ackAfterCompletion = ackAfterCompletion;
+        return consumer;
+    }
+}
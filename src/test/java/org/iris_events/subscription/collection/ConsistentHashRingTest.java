@@ -0,0 +1,49 @@
+package org.iris_events.subscription.collection;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class ConsistentHashRingTest {
+    private static final int KEYS = 30_000;
+
+    @Test
+    void keysSpreadEvenly() {
+        final var ring = new ConsistentHashRing<>(Map.of("a", "a", "b", "b", "c", "c"), 160);
+
+        final var counts = new HashMap<String, Integer>();
+        IntStream.range(0, KEYS).forEach(i -> counts.merge(ring.get("resourceType|" + i), 1, Integer::sum));
+
+        counts.values().forEach(count -> assertThat(count, both(greaterThan(KEYS / 4)).and(lessThan(KEYS / 2))));
+    }
+
+    @Test
+    void addingNodeMovesOnlyItsShare() {
+        final var ring = new ConsistentHashRing<>(Map.of("a", "a", "b", "b", "c", "c"), 160);
+        final var grown = new ConsistentHashRing<>(Map.of("a", "a", "b", "b", "c", "c", "d", "d"), 160);
+
+        final var moved = IntStream.range(0, KEYS)
+                .mapToObj(i -> "resourceType|" + i)
+                .filter(key -> !ring.get(key).equals(grown.get(key)))
+                .peek(key -> assertThat(grown.get(key), is("d")))
+                .count();
+
+        assertThat(moved, both(greaterThan((long) KEYS / 8)).and(lessThan((long) KEYS / 3)));
+    }
+
+    @Test
+    void sameKeySameNode() {
+        final var ring = new ConsistentHashRing<>(Map.of("a", "a", "b", "b"), 160);
+
+        assertThat(ring.get("resourceType|resourceId"), is(ring.get("resourceType|resourceId")));
+        assertThat(ring.getName("resourceType|resourceId"), is(ring.get("resourceType|resourceId")));
+    }
+}
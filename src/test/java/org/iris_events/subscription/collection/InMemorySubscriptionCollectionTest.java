@@ -0,0 +1,52 @@
+package org.iris_events.subscription.collection;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import org.iris_events.subscription.model.Resource;
+import org.iris_events.subscription.model.Subscription;
+
+class InMemorySubscriptionCollectionTest extends SubscriptionCollectionContractTest {
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private InMemorySubscriptionCollection collection;
+
+    @Override
+    SubscriptionCollection collection() {
+        return collection;
+    }
+
+    @Override
+    void clear() {
+        collection = new InMemorySubscriptionCollection();
+        collection.ttl = 60;
+        collection.clock = now::get;
+    }
+
+    @Test
+    void cleanUpRemovesExpiredSubscriptions() {
+        now.addAndGet(30_000L);
+        collection.insert(new Subscription("resourceType1", "resourceId1", "sessionId1"));
+        now.addAndGet(30_000L);
+
+        collection.cleanUp();
+
+        assertThat(collection.size(), is(1));
+        assertThat(collection.sessionSubscriptionCount(), is(1));
+        assertThat(collection.get(new Resource("resourceType1", "resourceId1")),
+                is(Set.of(new Subscription("resourceType1", "resourceId1", "sessionId1"))));
+    }
+
+    @Test
+    void expiredSubscriptionsAreNotReturnedBeforeCleanUp() {
+        collection.insert(new Subscription("expiringType", "expiringId", "expiringSession"));
+        now.addAndGet(60_000L);
+
+        assertThat(collection.get(new Resource("expiringType", "expiringId")), is(Set.of()));
+        assertThat(collection.get("expiringSession"), is(Set.of()));
+    }
+}
@@ -0,0 +1,113 @@
+package org.iris_events.subscription.collection;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import org.iris_events.subscription.model.Resource;
+import org.iris_events.subscription.model.Subscription;
+
+class PartitionedSubscriptionCollectionTest {
+    private static final Resource RESOURCE = new Resource("resourceType", "resourceId");
+
+    private PartitionMembership membership;
+    private PartitionedSubscriptionCollection collection;
+    private RedisSubscriptionCollection store;
+
+    @BeforeEach
+    public void setup() {
+        membership = membership();
+        store = Mockito.mock(RedisSubscriptionCollection.class);
+        Mockito.when(store.get(RESOURCE)).thenReturn(Set.of());
+        collection = new PartitionedSubscriptionCollection();
+        collection.store = store;
+        collection.membership = membership;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        collection.destroy();
+    }
+
+    @Test
+    void partitionsAreSplitBetweenMembers() {
+        final var other = membership();
+        final var members = List.of(membership.nodeId(), other.nodeId());
+
+        membership.updateMembers(members);
+        other.updateMembers(members);
+
+        final var all = new HashSet<>(membership.ownedPartitions());
+        all.addAll(other.ownedPartitions());
+        assertThat(all.size(), is(membership.partitions));
+        assertThat(membership.ownedPartitions().size() + other.ownedPartitions().size(), is(membership.partitions));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void ownedResourcesAreServedFromMemoryOnceWarm() {
+        final var subscription = new Subscription(RESOURCE.resourceType(), RESOURCE.resourceId(), "session");
+        Mockito.doAnswer(invocation -> {
+            invocation.getArgument(0, Consumer.class).accept(RESOURCE);
+            return null;
+        }).when(store).forEachResource(ArgumentMatchers.any());
+        Mockito.when(store.load(RESOURCE)).thenReturn(Set.of(subscription));
+
+        membership.updateMembers(List.of(membership.nodeId()));
+        membership.onOwnershipChange(collection::ownershipChanged);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> collection.get(RESOURCE).equals(Set.of(subscription)));
+    }
+
+    @Test
+    void changedResourcesAreReloaded() {
+        final var subscription = new Subscription(RESOURCE.resourceType(), RESOURCE.resourceId(), "session");
+        Mockito.when(store.load(RESOURCE)).thenReturn(Set.of(subscription));
+        membership.updateMembers(List.of(membership.nodeId()));
+        membership.onOwnershipChange(collection::ownershipChanged);
+        collection.changed(RESOURCE);
+        await().atMost(Duration.ofSeconds(5)).until(() -> collection.get(RESOURCE).equals(Set.of(subscription)));
+
+        final var other = new Subscription(RESOURCE.resourceType(), RESOURCE.resourceId(), "other");
+        Mockito.when(store.load(RESOURCE)).thenReturn(Set.of(subscription, other));
+        collection.changed(RESOURCE);
+
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> collection.get(RESOURCE).equals(Set.of(subscription, other)));
+    }
+
+    @Test
+    void lostPartitionsAreReadFromRedis() {
+        final var subscription = new Subscription(RESOURCE.resourceType(), RESOURCE.resourceId(), "session");
+        Mockito.when(store.load(RESOURCE)).thenReturn(Set.of(subscription));
+        membership.updateMembers(List.of(membership.nodeId()));
+        membership.onOwnershipChange(collection::ownershipChanged);
+        collection.changed(RESOURCE);
+        await().atMost(Duration.ofSeconds(5)).until(() -> collection.get(RESOURCE).equals(Set.of(subscription)));
+
+        Mockito.clearInvocations(store);
+        collection.ownershipChanged(Set.of(), Set.of(membership.partitionOf(RESOURCE)));
+
+        assertThat(collection.get(RESOURCE), is(Set.of()));
+        Mockito.verify(store).get(RESOURCE);
+    }
+
+    private static PartitionMembership membership() {
+        final var membership = new PartitionMembership();
+        membership.partitions = 64;
+        membership.virtualNodes = 160;
+        return membership;
+    }
+}
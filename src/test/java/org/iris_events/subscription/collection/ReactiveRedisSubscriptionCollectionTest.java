@@ -0,0 +1,131 @@
+package org.iris_events.subscription.collection;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.iris_events.subscription.model.Resource;
+import org.iris_events.subscription.model.Subscription;
+import io.quarkus.redis.client.RedisClient;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+
+@QuarkusTest
+class ReactiveRedisSubscriptionCollectionTest {
+
+    @Inject
+    RedisClient redisClient;
+
+    @Inject
+    SubscriptionCollection subscriptionCollection;
+
+    @Inject
+    ReactiveRedisSubscriptionCollection reactiveSubscriptionCollection;
+
+    @Inject
+    ReactiveRedisSnapshotCollection reactiveSnapshotCollection;
+
+    @Inject
+    RedisSnapshotCollection snapshotCollection;
+
+    @BeforeEach
+    public void setup() {
+        redisClient.flushdb(List.of());
+
+        subscriptionCollection.insert(new Subscription("resource-type", "1", "session1"));
+        subscriptionCollection.insert(new Subscription("resource-type", "1", "session2"));
+        subscriptionCollection.insert(new Subscription("resource-type", "2", "session1"));
+    }
+
+    @Test
+    void getByResource() {
+        final var subscriptions = reactiveSubscriptionCollection.get(new Resource("resource-type", "1"))
+                .await().indefinitely();
+
+        assertThat(subscriptions, is(Set.of(
+                new Subscription("resource-type", "1", "session1"),
+                new Subscription("resource-type", "1", "session2"))));
+    }
+
+    @Test
+    void getByUnknownResource() {
+        final var subscriptions = reactiveSubscriptionCollection.get(new Resource("resource-type", "unknown"))
+                .await().indefinitely();
+
+        assertThat(subscriptions.isEmpty(), is(true));
+    }
+
+    @Test
+    void removeBySessionId() {
+        reactiveSubscriptionCollection.remove("session1").await().indefinitely();
+
+        assertThat(subscriptionCollection.get("session1").size(), is(0));
+        assertThat(subscriptionCollection.get(new Resource("resource-type", "1")),
+                is(Set.of(new Subscription("resource-type", "1", "session2"))));
+        assertThat(subscriptionCollection.get(new Resource("resource-type", "2")).size(), is(0));
+        assertThat(subscriptionCollection.size(), is(1));
+    }
+
+    @Test
+    void insertAll() {
+        reactiveSubscriptionCollection.insertAll(List.of(
+                new Subscription("resource-type", "1", "session3"),
+                new Subscription("resource-type", "3", "session3"))).await().indefinitely();
+
+        assertThat(subscriptionCollection.get("session3"), is(Set.of(
+                new Subscription("resource-type", "1", "session3"),
+                new Subscription("resource-type", "3", "session3"))));
+        assertThat(subscriptionCollection.get(new Resource("resource-type", "1")).size(), is(3));
+        assertThat(subscriptionCollection.size(), is(5));
+    }
+
+    @Test
+    void removeByResource() {
+        reactiveSubscriptionCollection.remove("session1", "resource-type", "1").await().indefinitely();
+
+        assertThat(subscriptionCollection.get("session1"), is(Set.of(new Subscription("resource-type", "2", "session1"))));
+        assertThat(subscriptionCollection.get(new Resource("resource-type", "1")),
+                is(Set.of(new Subscription("resource-type", "1", "session2"))));
+        assertThat(subscriptionCollection.size(), is(2));
+    }
+
+    @Test
+    void removeByResourceType() {
+        reactiveSubscriptionCollection.remove("session1", "resource-type", null).await().indefinitely();
+
+        assertThat(subscriptionCollection.get("session1").size(), is(0));
+        assertThat(subscriptionCollection.get(new Resource("resource-type", "2")).size(), is(0));
+        assertThat(subscriptionCollection.size(), is(1));
+    }
+
+    @Test
+    void snapshotBulkRead() {
+        final var snapshot = new Snapshot("event", "route", "message".getBytes());
+        snapshotCollection.insert("resource-type", "1", snapshot, 10);
+
+        final var snapshots = reactiveSnapshotCollection.get(List.of(new Resource("resource-type", "1"),
+                new Resource("resource-type", "2"))).await().indefinitely();
+
+        assertThat(snapshots.keySet(), is(Set.of(new Resource("resource-type", "1"))));
+        assertThat(new String(snapshots.get(new Resource("resource-type", "1")).message()), is("message"));
+    }
+
+    @Test
+    void snapshotRoundTrip() {
+        final var snapshot = new Snapshot("event", "route", "message".getBytes());
+        reactiveSnapshotCollection.insert("resource-type", "1", snapshot, 10).await().indefinitely();
+
+        final var blockingRead = snapshotCollection.get("resource-type", "1");
+        final var reactiveRead = reactiveSnapshotCollection.get("resource-type", "1").await().indefinitely();
+
+        assertThat(blockingRead.isPresent(), is(true));
+        assertThat(reactiveRead.isPresent(), is(true));
+        assertThat(new String(reactiveRead.get().message()), is("message"));
+        assertThat(blockingRead.get().eventName(), is(reactiveRead.get().eventName()));
+    }
+}
@@ -0,0 +1,75 @@
+package org.iris_events.subscription.collection;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.redis.client.RedisClient;
+import io.quarkus.redis.datasource.RedisDataSource;
+import jakarta.enterprise.inject.Instance;
+
+class ReadReplicaRouterTest {
+    private static final String KEY = "resTypeResIdSub|type|id";
+
+    private ReadReplicaRouter router;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        final Instance<RedisClient> redisClients = Mockito.mock(Instance.class);
+        final Instance<RedisDataSource> dataSources = Mockito.mock(Instance.class);
+        Mockito.when(redisClients.select(ArgumentMatchers.any())).thenReturn(redisClients);
+        Mockito.when(redisClients.get()).thenReturn(Mockito.mock(RedisClient.class));
+        Mockito.when(dataSources.select(ArgumentMatchers.any())).thenReturn(dataSources);
+        Mockito.when(dataSources.get()).thenReturn(Mockito.mock(RedisDataSource.class));
+
+        meterRegistry = new SimpleMeterRegistry();
+        router = new ReadReplicaRouter();
+        router.enabled = true;
+        router.clientName = "replica";
+        router.staleness = Duration.ofMillis(200);
+        router.fallbackOnMiss = true;
+        router.maxTrackedWrites = 100;
+        router.redisClients = redisClients;
+        router.dataSources = dataSources;
+        router.meterRegistry = meterRegistry;
+        router.init();
+    }
+
+    @Test
+    void readsGoToReplica() {
+        assertThat(router.useReplica(KEY), is(true));
+        assertThat(readCount("replica"), is(1.0));
+    }
+
+    @Test
+    void recentWritesGoToPrimaryUntilStalenessPasses() {
+        router.written(KEY);
+
+        assertThat(router.useReplica(KEY), is(false));
+        assertThat(router.useReplica("resTypeResIdSub|type|other"), is(true));
+        await().atMost(Duration.ofSeconds(5)).until(() -> router.useReplica(KEY));
+        assertThat(readCount("primary") >= 1.0, is(true));
+    }
+
+    @Test
+    void disabledRouterReadsFromPrimary() {
+        final var disabled = new ReadReplicaRouter();
+        disabled.written(KEY);
+
+        assertThat(disabled.useReplica(KEY), is(false));
+    }
+
+    private double readCount(final String target) {
+        return meterRegistry.counter("subscription.read-replica.reads", "target", target).count();
+    }
+}
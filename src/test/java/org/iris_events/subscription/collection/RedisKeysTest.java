@@ -0,0 +1,78 @@
+package org.iris_events.subscription.collection;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class RedisKeysTest {
+    private final RedisKeys keys = new RedisKeys(KeyLayout.TAGGED);
+
+    @Test
+    void taggedKeysShareSlots() {
+        final var subscriptionId = keys.getSubscriptionId("session", "type", "id");
+
+        assertThat(subscriptionId, is("subscription|{session}|type|id"));
+        assertThat(keys.getSessionSubscriptionsSetId("session"), is("sessionIdSub|{session}"));
+        assertThat(Utils.slot(subscriptionId), is(Utils.slot(keys.getSessionSubscriptionsSetId("session"))));
+        assertThat(Utils.slot(keys.getResourceSnapshotKey("type", "id")),
+                is(Utils.slot(keys.getResourceSnapshotHashKey("type", "id"))));
+    }
+
+    @Test
+    void slotKeysShareTheSessionSlot() {
+        final var slot = Utils.slot(keys.getSessionSubscriptionsSetId("session"));
+        final var slotKeys = keys.getSlotKeys("session");
+
+        assertThat(slotKeys.slot(), is(slot));
+        assertThat(Utils.slot(slotKeys.subscriptionCount()), is(slot));
+        assertThat(Utils.slot(slotKeys.sessionCount()), is(slot));
+        assertThat(Utils.slot(slotKeys.expiryIndex()), is(slot));
+        assertThat(keys.getSlotKeys(slot), is(slotKeys));
+    }
+
+    @Test
+    void standardLayoutHasSharedSlotKeys() {
+        final var slotKeys = new RedisKeys(KeyLayout.STANDARD).getSlotKeys("session");
+
+        assertThat(slotKeys.subscriptionCount(), is(Utils.SUBSCRIPTION_COUNT_KEY));
+        assertThat(slotKeys.sessionCount(), is(Utils.SESSION_COUNT_KEY));
+        assertThat(slotKeys.expiryIndex(), is(Utils.EXPIRY_INDEX_KEY));
+    }
+
+    @Test
+    void taggedMembersResolve() {
+        final var resourceSetKey = keys.getResourceSubscriptionsSetId("type", "id");
+        final var subscriptionId = keys.getSubscriptionId("session", "type", "id");
+
+        assertThat(resourceSetKey, is("resTypeResIdSub|{type|id}"));
+        assertThat(Utils.toSessionId(resourceSetKey, subscriptionId), is("session"));
+        assertThat(keys.toSubscriptionId(resourceSetKey, "session"), is(subscriptionId));
+        assertThat(keys.getResourceSetKey(subscriptionId), is(resourceSetKey));
+    }
+
+    @Test
+    void toKeyLayout() {
+        assertThat(keys.toKeyLayout("subscription|session|type|id"), is("subscription|{session}|type|id"));
+        assertThat(keys.toKeyLayout("subscription|{session}|type|id"), is("subscription|{session}|type|id"));
+    }
+
+    @Test
+    void groupBySlot() {
+        final var subscriptionIds = List.of(keys.getSubscriptionId("a", "type", "1"),
+                keys.getSubscriptionId("b", "type", "1"), keys.getSubscriptionId("a", "type", "2"));
+
+        assertThat(List.copyOf(keys.groupBySlot(subscriptionIds)),
+                is(List.of(List.of(subscriptionIds.get(0), subscriptionIds.get(2)), List.of(subscriptionIds.get(1)))));
+    }
+
+    @Test
+    void standardLayoutIsOneGroup() {
+        final var subscriptionIds = List.of("subscription|a|type|1", "subscription|b|type|1");
+
+        assertThat(List.copyOf(new RedisKeys(KeyLayout.STANDARD).groupBySlot(subscriptionIds)),
+                is(List.of(subscriptionIds)));
+    }
+}
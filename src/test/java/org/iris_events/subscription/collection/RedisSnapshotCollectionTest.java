@@ -3,13 +3,25 @@ package org.iris_events.subscription.collection;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.awaitility.Awaitility.await;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.time.Duration;
+import java.util.List;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import org.iris_events.subscription.model.Resource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.redis.client.RedisClient;
+import io.quarkus.redis.client.RedisClientName;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
 import io.quarkus.redis.datasource.RedisDataSource;
 import io.quarkus.test.junit.QuarkusTest;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
 
 @QuarkusTest
@@ -19,6 +31,20 @@ class RedisSnapshotCollectionTest {
     RedisDataSource dataSource;
     @Inject
     RedisSnapshotCollection snapshotCollection;
+    @Inject
+    MeterRegistry meterRegistry;
+    @Inject
+    ReactiveRedisDataSource reactiveDataSource;
+    @Inject
+    SnapshotCodec codec;
+    @Inject
+    RedisKeys keys;
+    @Inject
+    @Any
+    Instance<RedisClient> redisClients;
+    @Inject
+    @Any
+    Instance<RedisDataSource> dataSources;
 
     @BeforeEach
     public void setup() {
@@ -39,9 +65,141 @@ class RedisSnapshotCollectionTest {
         snapshotCollection.insert("temp", "temp", snapshot, 10);
         final var sizeAfterDuplicate = dataSource.execute("DBSIZE").toInteger();
 
-        assertThat(sizeBefore, is(4));
-        assertThat(sizeAfter, is(5));
-        assertThat(sizeAfterDuplicate, is(5));
+        // every snapshot is stored with its content hash
+        assertThat(sizeBefore, is(8));
+        assertThat(sizeAfter, is(10));
+        assertThat(sizeAfterDuplicate, is(10));
+    }
+
+    @Test
+    void skipUnchanged() {
+        final var skipped = meterRegistry.counter("subscription.snapshot.writes", "result", "skipped");
+        final var written = meterRegistry.counter("subscription.snapshot.writes", "result", "written");
+        final var skippedBefore = skipped.count();
+        final var writtenBefore = written.count();
+
+        snapshotCollection.insert("1", "1", new Snapshot("one", "route-one", "message-one".getBytes()), 100);
+        snapshotCollection.insert("1", "1", new Snapshot("one", "route-one", "message-changed".getBytes()), 100);
+
+        assertThat(skipped.count() - skippedBefore, is(1.0));
+        assertThat(written.count() - writtenBefore, is(1.0));
+        assertThat(dataSource.key().ttl(keys.getResourceSnapshotKey("1", "1")) > 10, is(true));
+        assertThat(new String(snapshotCollection.get("1", "1").orElseThrow().message()), is("message-changed"));
+    }
+
+    @Test
+    void reactiveGetFillsTheCache() {
+        final var cache = new SnapshotCache();
+        cache.enabled = true;
+        cache.maxBytes = 1024 * 1024;
+        cache.maxEntryBytes = 1024;
+        cache.maxTtl = Duration.ofMinutes(1);
+        cache.buildCache();
+        final var reactiveCollection = new ReactiveRedisSnapshotCollection(reactiveDataSource, codec, cache,
+                meterRegistry, new ReadReplicaRouter(), keys);
+        final var key = keys.getResourceSnapshotKey("1", "1");
+
+        final var snapshot = reactiveCollection.get("1", "1").await().indefinitely();
+        final var missing = reactiveCollection.get("missing", "missing").await().indefinitely();
+
+        assertThat(snapshot.orElseThrow().eventName(), is("one"));
+        assertThat(missing.isPresent(), is(false));
+        assertThat(cache.getIfPresent(key), is(notNullValue()));
+        assertThat(cache.getIfPresent(keys.getResourceSnapshotKey("missing", "missing")), is(nullValue()));
+
+        // served from the cache once the stored snapshot is gone
+        dataSource.key().del(key);
+        assertThat(reactiveCollection.get("1", "1").await().indefinitely().orElseThrow().eventName(), is("one"));
+    }
+
+    @Test
+    void getAll() {
+        final var snapshots = snapshotCollection.get(List.of(
+                new Resource("1", "1"),
+                new Resource("3", "4"),
+                new Resource("missing", "missing")));
+
+        assertThat(snapshots.size(), is(2));
+        assertThat(snapshots.get(new Resource("1", "1")).eventName(), is("one"));
+        assertThat(snapshots.get(new Resource("3", "4")).eventName(), is("three-four"));
+        assertThat(snapshots.containsKey(new Resource("missing", "missing")), is(false));
+    }
+
+    @Test
+    void replicaMissesAreNotReadFromPrimary() {
+        final var replica = dataSources.select(RedisClientName.Literal.of("replica")).get();
+        replica.flushall();
+        replica.value(byte[].class).setex(keys.getResourceSnapshotKey("2", "2"), 100,
+                codec.encode(new Snapshot("two-replica", "route-two", "message-two".getBytes())));
+        final var resources = List.of(new Resource("1", "1"), new Resource("2", "2"),
+                new Resource("missing", "missing"));
+
+        final var snapshots = replicaCollection(disabledCache(), replicaRouter()).get(resources);
+
+        assertThat(snapshots.size(), is(1));
+        assertThat(snapshots.get(new Resource("2", "2")).eventName(), is("two-replica"));
+    }
+
+    @Test
+    void reloadAfterInvalidationReadsPrimary() {
+        final var replica = dataSources.select(RedisClientName.Literal.of("replica")).get();
+        replica.flushall();
+        final var key = keys.getResourceSnapshotKey("1", "1");
+        replica.value(byte[].class).setex(key, 100,
+                codec.encode(new Snapshot("one-replica", "route-one", "message-one".getBytes())));
+        final var router = replicaRouter();
+        final var cache = new SnapshotCache();
+        cache.enabled = true;
+        cache.maxBytes = 1024 * 1024;
+        cache.maxEntryBytes = 1024;
+        cache.maxTtl = Duration.ofMinutes(1);
+        cache.readReplicaRouter = router;
+        cache.buildCache();
+        final var collection = replicaCollection(cache, router);
+        assertThat(collection.get("1", "1").orElseThrow().eventName(), is("one-replica"));
+
+        // another node writes the snapshot, the replica has not received it yet
+        snapshotCollection.insert("1", "1", new Snapshot("one-changed", "route-one", "message-one".getBytes()), 100);
+        cache.onInvalidation("other-node|" + key);
+
+        assertThat(collection.get("1", "1").orElseThrow().eventName(), is("one-changed"));
+        assertThat(cache.getIfPresent(key).eventName(), is("one-changed"));
+    }
+
+    @Test
+    void reactiveInsertRoutesReadsToPrimary() {
+        final var router = replicaRouter();
+        final var reactiveCollection = new ReactiveRedisSnapshotCollection(reactiveDataSource, codec, disabledCache(),
+                meterRegistry, router, keys);
+
+        reactiveCollection.insert("5", "5", new Snapshot("five", "route-five", "message-five".getBytes()), 10)
+                .await().indefinitely();
+
+        assertThat(router.useReplica(keys.getResourceSnapshotKey("5", "5")), is(false));
+        assertThat(router.useReplica(keys.getResourceSnapshotKey("6", "6")), is(true));
+    }
+
+    private RedisSnapshotCollection replicaCollection(final SnapshotCache cache, final ReadReplicaRouter router) {
+        return new RedisSnapshotCollection(dataSource, codec, cache, meterRegistry, router, keys);
+    }
+
+    private static SnapshotCache disabledCache() {
+        final var cache = new SnapshotCache();
+        cache.enabled = false;
+        return cache;
+    }
+
+    private ReadReplicaRouter replicaRouter() {
+        final var router = new ReadReplicaRouter();
+        router.enabled = true;
+        router.clientName = "replica";
+        router.staleness = Duration.ofMinutes(1);
+        router.maxTrackedWrites = 100;
+        router.redisClients = redisClients;
+        router.dataSources = dataSources;
+        router.meterRegistry = meterRegistry;
+        router.init();
+        return router;
     }
 
     @Test
@@ -51,10 +209,10 @@ class RedisSnapshotCollectionTest {
         snapshotCollection.insert("temp", "temp", snapshot, 1);
         final var sizeAfter = dataSource.execute("DBSIZE").toInteger();
 
-        assertThat(sizeBefore, is(4));
-        assertThat(sizeAfter, is(5));
+        assertThat(sizeBefore, is(8));
+        assertThat(sizeAfter, is(10));
 
-        await().atMost(2, SECONDS).until(() -> dataSource.execute("DBSIZE").toInteger() == 4);
+        await().atMost(2, SECONDS).until(() -> dataSource.execute("DBSIZE").toInteger() == 8);
     }
 
 }
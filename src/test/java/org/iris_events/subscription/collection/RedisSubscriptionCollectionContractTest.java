@@ -0,0 +1,26 @@
+package org.iris_events.subscription.collection;
+
+import java.util.List;
+
+import io.quarkus.redis.client.RedisClient;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+
+@QuarkusTest
+class RedisSubscriptionCollectionContractTest extends SubscriptionCollectionContractTest {
+    @Inject
+    RedisClient redisClient;
+
+    @Inject
+    RedisSubscriptionCollection collection;
+
+    @Override
+    SubscriptionCollection collection() {
+        return collection;
+    }
+
+    @Override
+    void clear() {
+        redisClient.flushdb(List.of());
+    }
+}
@@ -1,12 +1,17 @@
 package org.iris_events.subscription.collection;
 
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import io.vertx.redis.client.Response;
 import org.hamcrest.CoreMatchers;
@@ -16,8 +21,15 @@ import org.junit.jupiter.api.Test;
 import org.iris_events.subscription.model.Resource;
 import org.iris_events.subscription.model.Subscription;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.redis.client.RedisClient;
+import io.quarkus.redis.client.RedisClientName;
+import io.quarkus.redis.datasource.RedisDataSource;
 import io.quarkus.test.junit.QuarkusTest;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
 
 @QuarkusTest
@@ -33,6 +45,35 @@ public class RedisSubscriptionCollectionTest {
     @Inject
     SubscriptionCollection subscriptionCollection;
 
+    @Inject
+    RedisSubscriptionCollection redisSubscriptionCollection;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    SubscriptionNearCache nearCache;
+
+    @Inject
+    ReadReplicaRouter readReplicaRouter;
+
+    @Inject
+    RedisKeys keys;
+
+    @Inject
+    RedisDataSource dataSource;
+
+    @Inject
+    @Any
+    Instance<RedisClient> redisClients;
+
+    @Inject
+    @Any
+    Instance<RedisDataSource> dataSources;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
     @BeforeEach
     public void setup() {
         redisClient.flushdb(List.of());
@@ -58,6 +99,18 @@ public class RedisSubscriptionCollectionTest {
         assertThat(sizeAfterDuplicate, is(5));
     }
 
+    @Test
+    void insertAll() {
+        subscriptionCollection.insertAll(List.of(
+                getSubscription("temp", "temp1", "temp"),
+                getSubscription("temp", "temp2", "temp"),
+                new Subscription(getResourceTypeId("temp"), getResourceId("temp3"), null)));
+
+        assertThat(subscriptionCollection.size(), is(6));
+        assertThat(subscriptionCollection.get(getSessionId("temp")).size(), is(2));
+        assertThat(subscriptionCollection.get(new Resource(getResourceTypeId("temp"), getResourceId("temp1"))).size(), is(1));
+    }
+
     @Test
     void getByResource() {
         String resourceId = getResourceId("1");
@@ -114,6 +167,17 @@ public class RedisSubscriptionCollectionTest {
         assertThat(size, is(2));
     }
 
+    @Test
+    void removeAll() {
+        subscriptionCollection.removeAll(List.of(getSessionId("1"), getSessionId("2"), getSessionId("unknown")));
+
+        assertThat(subscriptionCollection.size(), is(1));
+        assertThat(subscriptionCollection.sessionSubscriptionCount(), is(1));
+        assertThat(subscriptionCollection.get(getSessionId("1")).size(), is(0));
+        assertThat(subscriptionCollection.get(new Resource(getResourceTypeId("1"), getResourceId("1"))).size(), is(0));
+        assertThat(redisClient.zcard(Utils.EXPIRY_INDEX_KEY).toInteger(), is(1));
+    }
+
     @Test
     void testBatchedRemovalByResourceSet() {
         final var resourceType = "sharedResourceType";
@@ -147,7 +211,7 @@ public class RedisSubscriptionCollectionTest {
         subscriptionCollection.insert(getSubscription("1", "1", "2")); // Same resource, different session
 
         // Verify setup: Both subscriptions should be in the resource set
-        final var resourceSetKey = Utils.getResourceSubscriptionsSetId(resourceType, resourceId);
+        final var resourceSetKey = keys.getResourceSubscriptionsSetId(resourceType, resourceId);
         final var subscriptionsInSet = redisClient.smembers(resourceSetKey);
         assertThat(subscriptionsInSet.size(), is(2));
 
@@ -179,8 +243,8 @@ public class RedisSubscriptionCollectionTest {
         subscriptionCollection.insert(getSubscription("2", "2", "3")); // resource2
 
         // Get resource set keys
-        final var resourceSet1Key = Utils.getResourceSubscriptionsSetId(getResourceTypeId("1"), getResourceId("1"));
-        final var resourceSet2Key = Utils.getResourceSubscriptionsSetId(getResourceTypeId("2"), getResourceId("2"));
+        final var resourceSet1Key = keys.getResourceSubscriptionsSetId(getResourceTypeId("1"), getResourceId("1"));
+        final var resourceSet2Key = keys.getResourceSubscriptionsSetId(getResourceTypeId("2"), getResourceId("2"));
 
         // Verify setup: Each resource set should have 2 subscriptions
         assertThat(redisClient.smembers(resourceSet1Key).size(), is(2));
@@ -255,13 +319,23 @@ public class RedisSubscriptionCollectionTest {
         assertThat(subscriptionCollection.size(), CoreMatchers.is(sizeBeforeDuplicateInsert));
     }
 
+    @Test
+    void insertSetsTtl() {
+        final var subscription = getSubscription("temp", "temp", "temp");
+        subscriptionCollection.insert(subscription);
+
+        final var ttl = redisClient.ttl(keys.generateSubscriptionId(subscription)).toLong();
+
+        assertThat(ttl > 0, is(true));
+    }
+
     @Test
     public void testCleanup() {
         final var sessionSubscriptionCountBefore = subscriptionCollection.sessionSubscriptionCount();
         final var sizeBefore = subscriptionCollection.size();
 
-        redisClient.del(List.of("subscription|sessionId1|resourceType1|resourceId1"));
-        redisClient.del(List.of("subscription|sessionId2|resourceType1|resourceId1"));
+        expire("subscription|sessionId1|resourceType1|resourceId1");
+        expire("subscription|sessionId2|resourceType1|resourceId1");
 
         final var sessionSubscriptionCountAfterDel = subscriptionCollection.sessionSubscriptionCount();
         final var sizeAfterDel = subscriptionCollection.size();
@@ -280,6 +354,46 @@ public class RedisSubscriptionCollectionTest {
         assertThat(sessionSubscriptionCountAfterCleanup, is(2));
     }
 
+    @Test
+    public void cleanupReschedulesLiveSubscriptions() {
+        final var subscriptionId = "subscription|sessionId1|resourceType1|resourceId1";
+        redisClient.zadd(List.of(Utils.EXPIRY_INDEX_KEY, "0", subscriptionId));
+
+        subscriptionCollection.cleanUp();
+
+        assertThat(subscriptionCollection.size(), is(4));
+        assertThat(subscriptionCollection.get("sessionId1").size(), is(1));
+        final var expiresAt = redisClient.zscore(Utils.EXPIRY_INDEX_KEY, subscriptionId).toLong();
+        assertThat(expiresAt > System.currentTimeMillis(), is(true));
+    }
+
+    @Test
+    public void reconcileCounters() {
+        redisClient.del(List.of(Utils.SUBSCRIPTION_COUNT_KEY, Utils.SESSION_COUNT_KEY));
+        assertThat(subscriptionCollection.size(), is(0));
+
+        redisSubscriptionCollection.reconcileCounters();
+
+        assertThat(subscriptionCollection.size(), is(4));
+        assertThat(subscriptionCollection.sessionSubscriptionCount(), is(3));
+    }
+
+    @Test
+    public void cleanupReconcilesDriftedCounters() {
+        redisClient.set(List.of(Utils.SUBSCRIPTION_COUNT_KEY, "17"));
+        redisClient.set(List.of(Utils.SESSION_COUNT_KEY, "-2"));
+
+        subscriptionCollection.cleanUp();
+
+        assertThat(subscriptionCollection.size(), is(4));
+        assertThat(subscriptionCollection.sessionSubscriptionCount(), is(3));
+
+        // not again before the interval has passed
+        redisClient.set(List.of(Utils.SUBSCRIPTION_COUNT_KEY, "17"));
+        subscriptionCollection.cleanUp();
+        assertThat(subscriptionCollection.size(), is(17));
+    }
+
     @Test
     public void invalidSubscription() {
         final var subscriptionId = "subscription|session123123|resourceType123123|resourceId123123";
@@ -307,6 +421,287 @@ public class RedisSubscriptionCollectionTest {
         assertThat(subscriptions, is(Collections.emptySet()));
     }
 
+    @Test
+    public void compactResourceSetMember() {
+        final var subscription = getSubscription("compact", "compact", "compact");
+        final var resource = new Resource(subscription.resourceType(), subscription.resourceId());
+        subscriptionCollection.insert(subscription);
+
+        final var resourceSetKey = keys.getResourceSubscriptionsSetId(resource.resourceType(), resource.resourceId());
+        redisClient.del(List.of(resourceSetKey));
+        redisClient.sadd(List.of(resourceSetKey, subscription.sessionId()));
+
+        assertThat(subscriptionCollection.get(resource), is(Set.of(subscription)));
+
+        subscriptionCollection.remove(subscription.sessionId());
+        assertThat(redisClient.exists(List.of(resourceSetKey)).toInteger(), is(0));
+    }
+
+    @Test
+    public void migrateResourceSets() {
+        final var subscription = getSubscription("compact", "compact", "compact");
+        final var resourceSetKey = keys.getResourceSubscriptionsSetId(subscription.resourceType(),
+                subscription.resourceId());
+        redisClient.sadd(List.of(resourceSetKey, subscription.sessionId()));
+
+        redisSubscriptionCollection.migrateResourceSets();
+
+        final var members = redisClient.smembers(resourceSetKey).stream().map(Response::toString).toList();
+        assertThat(members, is(List.of(keys.generateSubscriptionId(subscription))));
+    }
+
+    @Test
+    public void compactStorage() {
+        final var compact = compactCollection();
+        final var subscription1 = getSubscription("compact", "compact", "1");
+        final var subscription2 = getSubscription("compact", "compact", "2");
+        final var resource = new Resource(subscription1.resourceType(), subscription1.resourceId());
+        final var resourceSetKey = keys.getResourceSubscriptionsSetId(resource.resourceType(), resource.resourceId());
+
+        compact.insertAll(List.of(subscription1, subscription2));
+
+        final var members = redisClient.smembers(resourceSetKey).stream().map(Response::toString)
+                .collect(Collectors.toSet());
+        assertThat(members, is(Set.of(subscription1.sessionId(), subscription2.sessionId())));
+        assertThat(compact.get(resource), is(Set.of(subscription1, subscription2)));
+        assertThat(compact.get(subscription1.sessionId()).contains(subscription1), is(true));
+
+        compact.remove(subscription1.sessionId(), resource.resourceType(), resource.resourceId());
+        assertThat(compact.get(resource), is(Set.of(subscription2)));
+
+        compact.remove(subscription2.sessionId());
+        assertThat(redisClient.exists(List.of(resourceSetKey)).toInteger(), is(0));
+    }
+
+    @Test
+    public void compactStorageReadsWithoutSubscriptionValues() {
+        final var compact = compactCollection();
+        final var subscription = getSubscription("compact", "compact", "compact");
+        final var resource = new Resource(subscription.resourceType(), subscription.resourceId());
+        compact.insert(subscription);
+
+        redisClient.del(List.of(keys.generateSubscriptionId(subscription)));
+
+        assertThat(compact.get(resource), is(Set.of(subscription)));
+        assertThat(subscriptionCollection.get(resource), is(Collections.emptySet()));
+    }
+
+    @Test
+    public void migrateResourceSetsToCompact() {
+        final var compact = compactCollection();
+        final var resource = new Resource(getResourceTypeId("1"), getResourceId("1"));
+        final var resourceSetKey = keys.getResourceSubscriptionsSetId(resource.resourceType(), resource.resourceId());
+
+        compact.migrateResourceSets();
+
+        final var members = redisClient.smembers(resourceSetKey).stream().map(Response::toString)
+                .collect(Collectors.toSet());
+        assertThat(members, is(Set.of(getSessionId("1"), getSessionId("2"))));
+        final var expected = Set.of(getSubscription("1", "1", "1"), getSubscription("1", "1", "2"));
+        assertThat(compact.get(resource), is(expected));
+        assertThat(subscriptionCollection.get(resource), is(expected));
+    }
+
+    @Test
+    public void migrateKeyLayout() {
+        final var tagged = collection(StorageMode.JSON, new RedisKeys(KeyLayout.TAGGED));
+
+        tagged.migrateKeyLayout();
+
+        final var subscription = getSubscription("1", "1", "1");
+        final var subscriptionId = tagged.keys.generateSubscriptionId(subscription);
+        assertThat(subscriptionId, is("subscription|{sessionId1}|resourceType1|resourceId1"));
+        assertThat(redisClient.exists(List.of(subscriptionId)).toInteger(), is(1));
+        assertThat(redisClient.exists(List.of("subscription|sessionId1|resourceType1|resourceId1")).toInteger(), is(0));
+        final var expiryIndex = tagged.keys.getSlotKeys(getSessionId("1")).expiryIndex();
+        assertThat(redisClient.zscore(expiryIndex, subscriptionId) != null, is(true));
+        assertThat(redisClient.exists(List.of(Utils.SUBSCRIPTION_COUNT_KEY)).toInteger(), is(0));
+        assertThat(tagged.size(), is(4));
+        assertThat(tagged.sessionSubscriptionCount(), is(3));
+        assertThat(tagged.get(getSessionId("1")).size(), is(2));
+        assertThat(tagged.get(new Resource(getResourceTypeId("1"), getResourceId("1"))).size(), is(2));
+
+        tagged.remove(getSessionId("1"));
+
+        assertThat(tagged.size(), is(2));
+        assertThat(tagged.get(new Resource(getResourceTypeId("1"), getResourceId("1"))),
+                is(Set.of(getSubscription("1", "1", "2"))));
+    }
+
+    @Test
+    public void taggedLayoutKeepsCountersPerSlot() {
+        redisClient.flushdb(List.of());
+        final var tagged = collection(StorageMode.JSON, new RedisKeys(KeyLayout.TAGGED));
+        tagged.insertAll(List.of(getSubscription("1", "1", "1"), getSubscription("2", "2", "1"),
+                getSubscription("1", "1", "2"), getSubscription("3", "3", "3")));
+
+        assertThat(tagged.size(), is(4));
+        assertThat(tagged.sessionSubscriptionCount(), is(3));
+        assertThat(redisClient.exists(List.of(Utils.SUBSCRIPTION_COUNT_KEY)).toInteger(), is(0));
+        assertThat(redisClient.scard(Utils.SUBSCRIPTION_SLOTS_KEY).toInteger(), is(3));
+
+        tagged.remove(getSessionId("1"), getResourceTypeId("2"), null);
+        tagged.removeAll(List.of(getSessionId("2")));
+
+        assertThat(tagged.size(), is(2));
+        assertThat(tagged.sessionSubscriptionCount(), is(2));
+        assertThat(tagged.get(new Resource(getResourceTypeId("1"), getResourceId("1"))),
+                is(Set.of(getSubscription("1", "1", "1"))));
+        assertThat(tagged.get(new Resource(getResourceTypeId("2"), getResourceId("2"))), is(Set.of()));
+
+        final var expired = getSubscription("3", "3", "3");
+        redisClient.del(List.of(tagged.keys.generateSubscriptionId(expired)));
+        redisClient.zadd(List.of(tagged.keys.getSlotKeys(expired.sessionId()).expiryIndex(), "0",
+                tagged.keys.generateSubscriptionId(expired)));
+        assertThat(tagged.size(), is(1));
+
+        tagged.cleanUp();
+
+        assertThat(tagged.size(), is(1));
+        assertThat(tagged.sessionSubscriptionCount(), is(1));
+        assertThat(tagged.get(new Resource(getResourceTypeId("3"), getResourceId("3"))), is(Set.of()));
+
+        redisClient.set(List.of(tagged.keys.getSlotKeys(getSessionId("1")).subscriptionCount(), "17"));
+        tagged.reconcileCounters();
+
+        assertThat(tagged.size(), is(1));
+    }
+
+    @Test
+    public void taggedScriptCallsStayInOneSlot() {
+        final var tagged = new RedisKeys(KeyLayout.TAGGED);
+        final var sessionIds = List.of("a", "b", "c", "d", "e");
+        final var subscriptionIds = sessionIds.stream()
+                .flatMap(sessionId -> Stream.of(tagged.getSubscriptionId(sessionId, "type", "1"),
+                        tagged.getSubscriptionId(sessionId, "type", "2")))
+                .toList();
+
+        final var calls = new ArrayList<Scripts.Call>();
+        calls.addAll(RedisSubscriptionCollection.removeSessionsCalls(tagged, sessionIds));
+        calls.addAll(RedisSubscriptionCollection.updateSetsCalls(tagged, "SREM",
+                RedisSubscriptionCollection.removedResourceSetMembers(tagged, subscriptionIds)));
+
+        assertThat(calls.size() > 2, is(true));
+        calls.forEach(call -> assertThat(call.keys().stream().map(Utils::slot).distinct().count(), is(1L)));
+    }
+
+    @Test
+    public void replicaReadFallsBackToPrimaryWhenBehind() {
+        final var replica = redisClients.select(RedisClientName.Literal.of("replica")).get();
+        replica.flushdb(List.of());
+        final var router = replicaRouter(true);
+        final var replicaNearCache = enabledNearCache(router);
+        try {
+            final var collection = collection(StorageMode.JSON, keys);
+            collection.nearCache = replicaNearCache;
+            collection.readReplicaRouter = router;
+            final var partial = getSubscription("1", "1", "1");
+            final var partialSetKey = keys.getResourceSubscriptionsSetId(partial.resourceType(), partial.resourceId());
+            // the set reached the replica, the subscription of the second session did not
+            replica.sadd(List.of(partialSetKey, keys.generateSubscriptionId(partial),
+                    keys.generateSubscriptionId(getSubscription("1", "1", "2"))));
+            copyToReplica(replica, keys.generateSubscriptionId(partial));
+
+            assertThat(collection.get(new Resource(getResourceTypeId("1"), getResourceId("1"))),
+                    is(Set.of(partial, getSubscription("1", "1", "2"))));
+            // an empty set does not show the replica is behind
+            assertThat(collection.get(new Resource(getResourceTypeId("2"), getResourceId("2"))), is(Set.of()));
+            assertThat(replicaNearCache.getIfPresent(partialSetKey),
+                    is(Set.of(partial, getSubscription("1", "1", "2"))));
+        } finally {
+            replicaNearCache.destroy();
+        }
+    }
+
+    @Test
+    public void replicaReadWithoutFallbackKeepsReplicaResult() {
+        final var replica = redisClients.select(RedisClientName.Literal.of("replica")).get();
+        replica.flushdb(List.of());
+        final var collection = collection(StorageMode.JSON, keys);
+        collection.readReplicaRouter = replicaRouter(false);
+
+        assertThat(collection.get(new Resource(getResourceTypeId("1"), getResourceId("1"))), is(Set.of()));
+    }
+
+    @Test
+    public void reloadAfterInvalidationReadsPrimary() {
+        final var replica = redisClients.select(RedisClientName.Literal.of("replica")).get();
+        replica.flushdb(List.of());
+        final var router = replicaRouter(true);
+        final var replicaNearCache = enabledNearCache(router);
+        try {
+            final var collection = collection(StorageMode.JSON, keys);
+            collection.nearCache = replicaNearCache;
+            collection.readReplicaRouter = router;
+            final var resource = new Resource(getResourceTypeId("2"), getResourceId("2"));
+            final var existing = getSubscription("2", "2", "1");
+            final var resourceSetKey = keys.getResourceSubscriptionsSetId(resource.resourceType(),
+                    resource.resourceId());
+            replica.sadd(List.of(resourceSetKey, keys.generateSubscriptionId(existing)));
+            copyToReplica(replica, keys.generateSubscriptionId(existing));
+            assertThat(collection.get(resource), is(Set.of(existing)));
+
+            // another node adds a subscription, the replica has not received it yet
+            final var added = getSubscription("2", "2", "4");
+            subscriptionCollection.insert(added);
+            await().atMost(Duration.ofSeconds(5)).until(() -> replicaNearCache.getIfPresent(resourceSetKey) == null);
+
+            assertThat(collection.get(resource), is(Set.of(existing, added)));
+            assertThat(replicaNearCache.getIfPresent(resourceSetKey), is(Set.of(existing, added)));
+        } finally {
+            replicaNearCache.destroy();
+        }
+    }
+
+    private void copyToReplica(final RedisClient replica, final String key) {
+        replica.set(List.of(key, redisClient.get(key).toString()));
+    }
+
+    private ReadReplicaRouter replicaRouter(final boolean fallbackOnMiss) {
+        final var router = new ReadReplicaRouter();
+        router.enabled = true;
+        router.clientName = "replica";
+        router.staleness = Duration.ofMinutes(1);
+        router.fallbackOnMiss = fallbackOnMiss;
+        router.maxTrackedWrites = 100;
+        router.redisClients = redisClients;
+        router.dataSources = dataSources;
+        router.meterRegistry = meterRegistry;
+        router.init();
+        return router;
+    }
+
+    private SubscriptionNearCache enabledNearCache(final ReadReplicaRouter router) {
+        final var cache = new SubscriptionNearCache();
+        cache.enabled = true;
+        cache.maxSize = 100;
+        cache.expireAfterWrite = Duration.ofMinutes(1);
+        cache.configureKeyspaceEvents = true;
+        cache.dataSource = dataSource;
+        cache.readReplicaRouter = router;
+        cache.init();
+        return cache;
+    }
+
+    private RedisSubscriptionCollection compactCollection() {
+        return collection(StorageMode.COMPACT, keys);
+    }
+
+    private RedisSubscriptionCollection collection(final StorageMode storageMode, final RedisKeys redisKeys) {
+        final var collection = new RedisSubscriptionCollection();
+        collection.TTL = "86400";
+        collection.storageMode = storageMode;
+        collection.cleanupBatchSize = 500;
+        collection.cleanupMaxBatches = 20;
+        collection.countersReconcileInterval = Duration.ofHours(1);
+        collection.redisClient = redisClient;
+        collection.keys = redisKeys;
+        collection.objectMapper = objectMapper;
+        collection.nearCache = nearCache;
+        collection.readReplicaRouter = readReplicaRouter;
+        return collection;
+    }
+
     protected Subscription getSubscription(String resourceType, String resourceId, String sessionId) {
         return new Subscription(
                 getResourceTypeId(resourceType),
@@ -325,4 +720,9 @@ public class RedisSubscriptionCollectionTest {
     protected String getResourceTypeId(String resourceType) {
         return String.format(RES_TYPE_TEMPLATE, resourceType);
     }
+
+    private void expire(final String subscriptionId) {
+        redisClient.del(List.of(subscriptionId));
+        redisClient.zadd(List.of(Utils.EXPIRY_INDEX_KEY, "0", subscriptionId));
+    }
 }
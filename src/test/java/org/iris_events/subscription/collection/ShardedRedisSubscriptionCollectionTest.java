@@ -0,0 +1,171 @@
+package org.iris_events.subscription.collection;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.iris_events.subscription.model.Resource;
+import org.iris_events.subscription.model.Subscription;
+
+import io.quarkus.redis.client.RedisClient;
+import io.quarkus.redis.client.RedisClientName;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+
+/**
+ * Sharded collection over three Redis instances: the default client and the clients {@code shard1} and {@code shard2},
+ * each with its own dev service.
+ */
+@QuarkusTest
+class ShardedRedisSubscriptionCollectionTest {
+    private static final String RESOURCE_TYPE = "shardedType";
+    private static final List<String> ALL_SHARDS = List.of(ShardedSubscriptionCollection.DEFAULT_SHARD, "shard1",
+            "shard2");
+
+    @Inject
+    RedisSubscriptionCollection defaultCollection;
+
+    @Inject
+    RedisKeys keys;
+
+    @Inject
+    RedisClient redisClient;
+
+    @Inject
+    @Any
+    Instance<RedisClient> redisClients;
+
+    @Inject
+    @Any
+    Instance<RedisDataSource> dataSources;
+
+    private final List<ShardedSubscriptionCollection> collections = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        ALL_SHARDS.forEach(name -> client(name).flushdb(List.of()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        collections.forEach(ShardedSubscriptionCollection::shutdown);
+    }
+
+    @Test
+    void insertsAreStoredOnTheOwningInstance() {
+        final var collection = sharded(ALL_SHARDS);
+        final var subscriptions = subscriptions("session1", 30);
+
+        collection.insertAll(subscriptions);
+
+        subscriptions.forEach(subscription -> {
+            final var owner = owner(ALL_SHARDS, subscription);
+            final var resourceSetKey = keys.getResourceSubscriptionsSetId(subscription.resourceType(),
+                    subscription.resourceId());
+            ALL_SHARDS.forEach(name -> assertThat(client(name).exists(List.of(resourceSetKey)).toInteger(),
+                    is(name.equals(owner) ? 1 : 0)));
+            assertThat(collection.get(resource(subscription)), is(Set.of(subscription)));
+        });
+        assertThat(owners(ALL_SHARDS, subscriptions).size(), is(ALL_SHARDS.size()));
+        assertThat(collection.size(), is(subscriptions.size()));
+        assertThat(collection.get("session1"), is(subscriptions));
+    }
+
+    @Test
+    void sessionRemovalRunsOnAllInstances() {
+        final var collection = sharded(ALL_SHARDS);
+        final var removed = subscriptions("session1", 30);
+        final var kept = subscriptions("session2", 30);
+        collection.insertAll(removed);
+        collection.insertAll(kept);
+
+        collection.remove("session1");
+
+        assertThat(collection.get("session1"), is(Set.of()));
+        assertThat(collection.get("session2"), is(kept));
+        assertThat(collection.size(), is(kept.size()));
+        kept.forEach(subscription -> assertThat(collection.get(resource(subscription)), is(Set.of(subscription))));
+        ALL_SHARDS.forEach(name -> assertThat(client(name)
+                .exists(List.of(keys.getSessionSubscriptionsSetId("session1"))).toInteger(), is(0)));
+    }
+
+    @Test
+    void rebalanceMovesResourcesToAnAddedInstance() {
+        final var previousShards = ALL_SHARDS.subList(0, 2);
+        final var subscriptions = subscriptions("session1", 30);
+        sharded(previousShards).insertAll(subscriptions);
+        final var collection = sharded(ALL_SHARDS);
+        final var moving = subscriptions.stream()
+                .filter(subscription -> owner(ALL_SHARDS, subscription).equals("shard2"))
+                .collect(Collectors.toSet());
+        assertThat(moving.isEmpty(), is(false));
+        moving.forEach(subscription -> assertThat(collection.get(resource(subscription)), is(Set.of())));
+
+        collection.rebalance();
+
+        subscriptions.forEach(subscription -> assertThat(collection.get(resource(subscription)),
+                is(Set.of(subscription))));
+        moving.forEach(subscription -> {
+            final var resourceSetKey = keys.getResourceSubscriptionsSetId(subscription.resourceType(),
+                    subscription.resourceId());
+            assertThat(client("shard2").exists(List.of(resourceSetKey)).toInteger(), is(1));
+            assertThat(client(owner(previousShards, subscription)).exists(List.of(resourceSetKey)).toInteger(), is(0));
+        });
+        assertThat(collection.size(), is(subscriptions.size()));
+        assertThat(collection.get("session1"), is(subscriptions));
+    }
+
+    private ShardedSubscriptionCollection sharded(final List<String> shardNames) {
+        final var collection = new ShardedSubscriptionCollection();
+        collection.shardNames = shardNames;
+        collection.virtualNodes = 160;
+        collection.defaultCollection = defaultCollection;
+        collection.redisClients = redisClients;
+        collection.dataSources = dataSources;
+        collection.init();
+        collections.add(collection);
+        return collection;
+    }
+
+    private RedisClient client(final String name) {
+        return ShardedSubscriptionCollection.DEFAULT_SHARD.equals(name)
+                ? redisClient
+                : redisClients.select(RedisClientName.Literal.of(name)).get();
+    }
+
+    private static Set<Subscription> subscriptions(final String sessionId, final int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new Subscription(RESOURCE_TYPE, String.valueOf(i), sessionId))
+                .collect(Collectors.toSet());
+    }
+
+    private static Resource resource(final Subscription subscription) {
+        return new Resource(subscription.resourceType(), subscription.resourceId());
+    }
+
+    private static String owner(final List<String> shardNames, final Subscription subscription) {
+        final var ring = new ConsistentHashRing<>(shardNames.stream()
+                .collect(Collectors.toMap(Function.identity(), Function.identity())), 160);
+        return ring.getName(Utils.getUniqueResId(subscription.resourceType(), subscription.resourceId()));
+    }
+
+    private static Set<String> owners(final List<String> shardNames, final Set<Subscription> subscriptions) {
+        final var owners = new HashSet<String>();
+        subscriptions.forEach(subscription -> owners.add(owner(shardNames, subscription)));
+        return owners;
+    }
+}
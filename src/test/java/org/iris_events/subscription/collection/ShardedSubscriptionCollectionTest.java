@@ -0,0 +1,105 @@
+package org.iris_events.subscription.collection;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import org.iris_events.subscription.model.Resource;
+import org.iris_events.subscription.model.Subscription;
+
+class ShardedSubscriptionCollectionTest {
+    private static final Resource RESOURCE = new Resource("resourceType", "resourceId");
+
+    private ShardedSubscriptionCollection collection;
+    private RedisSubscriptionCollection shard1;
+    private RedisSubscriptionCollection shard2;
+
+    @BeforeEach
+    public void setup() {
+        shard1 = Mockito.mock(RedisSubscriptionCollection.class);
+        shard2 = Mockito.mock(RedisSubscriptionCollection.class);
+        collection = new ShardedSubscriptionCollection();
+        collection.virtualNodes = 160;
+        final var shards = new LinkedHashMap<String, RedisSubscriptionCollection>();
+        shards.put("shard1", shard1);
+        shards.put("shard2", shard2);
+        collection.useShards(shards);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        collection.shutdown();
+    }
+
+    @Test
+    void resourceLookupGoesToOwner() {
+        final var subscription = new Subscription(RESOURCE.resourceType(), RESOURCE.resourceId(), "session");
+        final var owner = owner(RESOURCE);
+        Mockito.when(owner.get(RESOURCE)).thenReturn(Set.of(subscription));
+
+        collection.insert(subscription);
+
+        assertThat(collection.get(RESOURCE), is(Set.of(subscription)));
+        Mockito.verify(owner).insert(subscription);
+        Mockito.verifyNoInteractions(other(owner));
+    }
+
+    @Test
+    void sessionOperationsRunOnAllShards() {
+        final var subscription1 = new Subscription("type", "1", "session");
+        final var subscription2 = new Subscription("type", "2", "session");
+        Mockito.when(shard1.get("session")).thenReturn(Set.of(subscription1));
+        Mockito.when(shard2.get("session")).thenReturn(Set.of(subscription2));
+        Mockito.when(shard1.size()).thenReturn(3);
+        Mockito.when(shard2.size()).thenReturn(4);
+
+        assertThat(collection.get("session"), is(Set.of(subscription1, subscription2)));
+        assertThat(collection.size(), is(7));
+        collection.remove("session");
+        collection.cleanUp();
+
+        Mockito.verify(shard1).removeAll(List.of("session"));
+        Mockito.verify(shard2).removeAll(List.of("session"));
+        Mockito.verify(shard1).cleanUp();
+        Mockito.verify(shard2).cleanUp();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rebalanceMovesResourcesToOwner() {
+        final var owner = owner(RESOURCE);
+        final var previous = other(owner);
+        final var subscription = new Subscription(RESOURCE.resourceType(), RESOURCE.resourceId(), "session");
+        Mockito.doAnswer(invocation -> {
+            invocation.getArgument(0, Consumer.class).accept(RESOURCE);
+            return null;
+        }).when(previous).forEachResource(ArgumentMatchers.any());
+        Mockito.when(previous.get(RESOURCE)).thenReturn(Set.of(subscription));
+
+        collection.rebalance();
+
+        Mockito.verify(owner).insertAll(Set.of(subscription));
+        Mockito.verify(previous).remove("session", RESOURCE.resourceType(), RESOURCE.resourceId());
+    }
+
+    private RedisSubscriptionCollection owner(final Resource resource) {
+        final var shardName = new ConsistentHashRing<>(Map.of("shard1", "shard1", "shard2", "shard2"), 160)
+                .getName(Utils.getUniqueResId(resource.resourceType(), resource.resourceId()));
+        return shardName.equals("shard1") ? shard1 : shard2;
+    }
+
+    private RedisSubscriptionCollection other(final RedisSubscriptionCollection shard) {
+        return shard == shard1 ? shard2 : shard1;
+    }
+}
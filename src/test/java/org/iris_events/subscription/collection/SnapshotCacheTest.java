@@ -0,0 +1,72 @@
+package org.iris_events.subscription.collection;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SnapshotCacheTest {
+    private static final String KEY = "resTypeResIdSnap|type|id";
+
+    private SnapshotCache cache;
+
+    @BeforeEach
+    public void setup() {
+        cache = new SnapshotCache();
+        cache.enabled = true;
+        cache.maxBytes = 1024 * 1024;
+        cache.maxEntryBytes = 1024;
+        cache.maxTtl = Duration.ofMinutes(1);
+        cache.readReplicaRouter = new ReadReplicaRouter();
+        cache.buildCache();
+    }
+
+    @Test
+    void putAndGet() {
+        final var snapshot = new Snapshot("event", "routing.key", "message".getBytes());
+
+        cache.put(KEY, snapshot, Duration.ofSeconds(10));
+
+        assertThat(cache.getIfPresent(KEY), is(snapshot));
+    }
+
+    @Test
+    void oversizedSnapshotNotCached() {
+        cache.put(KEY, new Snapshot("event", "routing.key", new byte[2048]), Duration.ofSeconds(10));
+
+        assertThat(cache.getIfPresent(KEY), is(nullValue()));
+    }
+
+    @Test
+    void expiresWithTtl() {
+        cache.put(KEY, new Snapshot("event", "routing.key", new byte[16]), Duration.ofMillis(100));
+
+        await().atMost(2, SECONDS).until(() -> cache.getIfPresent(KEY) == null);
+    }
+
+    @Test
+    void invalidationFromOtherNode() {
+        cache.put(KEY, new Snapshot("event", "routing.key", new byte[16]), Duration.ofSeconds(10));
+
+        cache.onInvalidation("other-node|" + KEY);
+
+        assertThat(cache.getIfPresent(KEY), is(nullValue()));
+    }
+
+    @Test
+    void unknownMessageIgnored() {
+        cache.put(KEY, new Snapshot("event", "routing.key", new byte[16]), Duration.ofSeconds(10));
+
+        // a message without the node id delimiter
+        cache.onInvalidation("not-an-invalidation");
+
+        assertThat(cache.getIfPresent(KEY), is(notNullValue()));
+    }
+}
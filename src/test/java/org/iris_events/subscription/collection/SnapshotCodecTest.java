@@ -0,0 +1,135 @@
+package org.iris_events.subscription.collection;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.iris_events.subscription.exception.SubscriptionException;
+
+class SnapshotCodecTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SnapshotCodec codec;
+
+    @BeforeEach
+    public void setup() {
+        codec = new SnapshotCodec(objectMapper);
+        codec.format = SnapshotFormat.BINARY;
+        codec.compressionThreshold = 1024;
+        codec.compressionLevel = 1;
+        codec.maxMessageBytes = 1024 * 1024;
+    }
+
+    @Test
+    void binaryRoundTrip() {
+        final var message = "{\"id\":\"1\"}".getBytes(StandardCharsets.UTF_8);
+        final var snapshot = new Snapshot("event-name", "routing.key", message);
+
+        final var encoded = codec.encode(snapshot);
+        final var decoded = codec.decode(encoded);
+
+        assertThat(encoded[0], is(SnapshotCodec.MAGIC));
+        assertThat(decoded.eventName(), is("event-name"));
+        assertThat(decoded.routingKey(), is("routing.key"));
+        assertThat(decoded.message(), is(message));
+    }
+
+    @Test
+    void binaryIsSmallerThanJson() throws Exception {
+        final var snapshot = new Snapshot("event-name", "routing.key", new byte[1024]);
+
+        assertThat(codec.encode(snapshot).length < objectMapper.writeValueAsBytes(snapshot).length, is(true));
+    }
+
+    @Test
+    void nullFields() {
+        final var decoded = codec.decode(codec.encode(new Snapshot(null, null, null)));
+
+        assertThat(decoded.eventName(), is(nullValue()));
+        assertThat(decoded.routingKey(), is(nullValue()));
+        assertThat(decoded.message(), is(nullValue()));
+    }
+
+    @Test
+    void readsJson() throws Exception {
+        final var snapshot = new Snapshot("event-name", "routing.key", "message".getBytes(StandardCharsets.UTF_8));
+
+        final var decoded = codec.decode(objectMapper.writeValueAsBytes(snapshot));
+
+        assertThat(decoded.eventName(), is("event-name"));
+        assertThat(new String(decoded.message(), StandardCharsets.UTF_8), is("message"));
+    }
+
+    @Test
+    void writesJson() throws Exception {
+        codec.format = SnapshotFormat.JSON;
+        final var snapshot = new Snapshot("event-name", "routing.key", "message".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(codec.encode(snapshot), is(objectMapper.writeValueAsBytes(snapshot)));
+    }
+
+    @Test
+    void truncatedFrame() {
+        final var encoded = codec.encode(new Snapshot("event-name", "routing.key", new byte[16]));
+        final var truncated = Arrays.copyOf(encoded, encoded.length - 4);
+
+        assertThrows(SubscriptionException.class, () -> codec.decode(truncated));
+    }
+
+    @Test
+    void compressesLargeMessages() {
+        codec.compressionEnabled = true;
+        final var message = "{\"id\":\"1\",\"name\":\"resource\"}".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+        final var encoded = codec.encode(new Snapshot("event-name", "routing.key", message));
+        final var decoded = codec.decode(encoded);
+
+        assertThat(encoded[1], is(SnapshotCodec.COMPRESSED_VERSION));
+        assertThat(encoded.length < message.length, is(true));
+        assertThat(decoded.eventName(), is("event-name"));
+        assertThat(decoded.message(), is(message));
+    }
+
+    @Test
+    void keepsSmallMessagesUncompressed() {
+        codec.compressionEnabled = true;
+
+        final var encoded = codec.encode(new Snapshot("event-name", "routing.key", new byte[16]));
+
+        assertThat(encoded[1], is(SnapshotCodec.VERSION));
+    }
+
+    @Test
+    void rejectsCompressedLengthAboveMaximumBeforeAllocating() {
+        codec.compressionEnabled = true;
+        final var message = "{\"id\":\"1\",\"name\":\"resource\"}".repeat(200).getBytes(StandardCharsets.UTF_8);
+        final var encoded = codec.encode(new Snapshot("event-name", "routing.key", message));
+        // magic, version, compression, both length prefixed names and then the uncompressed length
+        final var lengthOffset = 3 + Integer.BYTES + "event-name".length() + Integer.BYTES + "routing.key".length();
+        ByteBuffer.wrap(encoded).putInt(lengthOffset, Integer.MAX_VALUE);
+
+        final var exception = assertThrows(SubscriptionException.class, () -> codec.decode(encoded));
+
+        assertThat(exception.getMessage().contains("maximum size"), is(true));
+    }
+
+    @Test
+    void decodesCompressedMessageUpToMaximum() {
+        codec.compressionEnabled = true;
+        final var message = "{\"id\":\"1\",\"name\":\"resource\"}".repeat(200).getBytes(StandardCharsets.UTF_8);
+        codec.maxMessageBytes = message.length;
+
+        final var decoded = codec.decode(codec.encode(new Snapshot("event-name", "routing.key", message)));
+
+        assertThat(decoded.message(), is(message));
+    }
+}
@@ -0,0 +1,79 @@
+package org.iris_events.subscription.collection;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares stored snapshot size and encode/decode time with and without compression for payloads of different sizes.
+ * Run with {@code mvn test -Dbenchmark=true -Dtest=SnapshotCompressionBenchmarkTest}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SnapshotCompressionBenchmarkTest {
+    private static final Logger log = LoggerFactory.getLogger(SnapshotCompressionBenchmarkTest.class);
+    private static final int ITERATIONS = 2_000;
+    private static final int[] PAYLOAD_SIZES = { 1_024, 16_384, 131_072, 524_288 };
+
+    @Test
+    void compression() {
+        for (int payloadSize : PAYLOAD_SIZES) {
+            final var snapshot = new Snapshot("benchmark-event", "benchmark.resource", payload(payloadSize));
+            for (int level : new int[] { 1, 6 }) {
+                run(snapshot, codec(false, level), "none");
+                run(snapshot, codec(true, level), "deflate-" + level);
+            }
+        }
+    }
+
+    private void run(final Snapshot snapshot, final SnapshotCodec codec, final String compression) {
+        var encoded = codec.encode(snapshot);
+        final var encodeStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            encoded = codec.encode(snapshot);
+        }
+        final var encodeMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - encodeStart) / ITERATIONS;
+
+        var decoded = codec.decode(encoded);
+        final var decodeStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            decoded = codec.decode(encoded);
+        }
+        final var decodeMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - decodeStart) / ITERATIONS;
+
+        log.info("Snapshot compression benchmark. compression={}, payloadBytes={}, storedBytes={}, ratio={}, "
+                + "encodeMicros={}, decodeMicros={}", compression, snapshot.message().length, encoded.length,
+                String.format("%.2f", (double) encoded.length / snapshot.message().length), encodeMicros, decodeMicros);
+        assertThat(decoded.message(), is(snapshot.message()));
+    }
+
+    private static SnapshotCodec codec(final boolean compressionEnabled, final int level) {
+        final var codec = new SnapshotCodec(new ObjectMapper());
+        codec.format = SnapshotFormat.BINARY;
+        codec.compressionEnabled = compressionEnabled;
+        codec.compressionThreshold = 0;
+        codec.compressionLevel = level;
+        codec.maxMessageBytes = Integer.MAX_VALUE;
+        return codec;
+    }
+
+    private static byte[] payload(final int size) {
+        final var payload = new StringBuilder(size);
+        var i = 0;
+        while (payload.length() < size) {
+            payload.append("{\"id\":\"").append(i).append("\",\"status\":\"ACTIVE\",\"price\":").append(i * 31 % 997)
+                    .append(",\"updatedAt\":\"2024-01-01T00:00:").append(i % 60).append("Z\"},");
+            i++;
+        }
+        payload.setLength(size);
+        return payload.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
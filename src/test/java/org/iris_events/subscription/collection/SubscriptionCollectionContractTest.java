@@ -0,0 +1,164 @@
+package org.iris_events.subscription.collection;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.iris_events.subscription.model.Resource;
+import org.iris_events.subscription.model.Subscription;
+
+/**
+ * Behaviour every {@link SubscriptionCollection} implementation has to share.
+ */
+abstract class SubscriptionCollectionContractTest {
+
+    abstract SubscriptionCollection collection();
+
+    abstract void clear();
+
+    @BeforeEach
+    void setupCollection() {
+        clear();
+        collection().insert(new Subscription("resourceType1", "resourceId1", "sessionId1"));
+        collection().insert(new Subscription("resourceType1", "resourceId1", "sessionId2"));
+        collection().insert(new Subscription("resourceType2", "resourceId2", "sessionId1"));
+        collection().insert(new Subscription("resourceType3", "resourceId3", "sessionId3"));
+    }
+
+    @Test
+    void insertIsIdempotent() {
+        final var subscription = new Subscription("temp", "temp", "temp");
+
+        collection().insert(subscription);
+        collection().insert(subscription);
+
+        assertThat(collection().size(), is(5));
+        assertThat(collection().sessionSubscriptionCount(), is(4));
+    }
+
+    @Test
+    void insertAllSkipsSubscriptionsWithoutSession() {
+        collection().insertAll(List.of(
+                new Subscription("temp", "temp1", "temp"),
+                new Subscription("temp", "temp2", "temp"),
+                new Subscription("temp", "temp3", null)));
+
+        assertThat(collection().size(), is(6));
+        assertThat(collection().get("temp").size(), is(2));
+        assertThat(collection().get(new Resource("temp", "temp3")).size(), is(0));
+    }
+
+    @Test
+    void getByResource() {
+        assertThat(collection().get(new Resource("resourceType1", "resourceId1")),
+                is(Set.of(new Subscription("resourceType1", "resourceId1", "sessionId1"),
+                        new Subscription("resourceType1", "resourceId1", "sessionId2"))));
+        assertThat(collection().get(new Resource("resourceType1", "unknown")).size(), is(0));
+    }
+
+    @Test
+    void getBySessionId() {
+        assertThat(collection().get("sessionId1"),
+                is(Set.of(new Subscription("resourceType1", "resourceId1", "sessionId1"),
+                        new Subscription("resourceType2", "resourceId2", "sessionId1"))));
+        assertThat(collection().get("unknown").size(), is(0));
+    }
+
+    @Test
+    void removeBySessionId() {
+        collection().remove("sessionId1");
+
+        assertThat(collection().get("sessionId1").size(), is(0));
+        assertThat(collection().get(new Resource("resourceType1", "resourceId1")).size(), is(1));
+        assertThat(collection().get(new Resource("resourceType2", "resourceId2")).size(), is(0));
+        assertThat(collection().size(), is(2));
+        assertThat(collection().sessionSubscriptionCount(), is(2));
+    }
+
+    @Test
+    void removeAll() {
+        collection().removeAll(List.of("sessionId1", "sessionId2", "unknown"));
+
+        assertThat(collection().size(), is(1));
+        assertThat(collection().sessionSubscriptionCount(), is(1));
+        assertThat(collection().get(new Resource("resourceType1", "resourceId1")).size(), is(0));
+    }
+
+    @Test
+    void removeByResource() {
+        collection().remove("sessionId1", "resourceType1", "resourceId1");
+
+        assertThat(collection().get("sessionId1"),
+                is(Set.of(new Subscription("resourceType2", "resourceId2", "sessionId1"))));
+        assertThat(collection().get(new Resource("resourceType1", "resourceId1")),
+                is(Set.of(new Subscription("resourceType1", "resourceId1", "sessionId2"))));
+        assertThat(collection().size(), is(3));
+    }
+
+    @Test
+    void removeByResourceType() {
+        collection().insert(new Subscription("resourceType1", "resourceId2", "sessionId1"));
+
+        collection().remove("sessionId1", "resourceType1", null);
+
+        assertThat(collection().get("sessionId1"),
+                is(Set.of(new Subscription("resourceType2", "resourceId2", "sessionId1"))));
+        assertThat(collection().size(), is(3));
+        assertThat(collection().sessionSubscriptionCount(), is(3));
+    }
+
+    @Test
+    void removeLastSubscriptionOfSession() {
+        collection().remove("sessionId3", "resourceType3", "resourceId3");
+
+        assertThat(collection().size(), is(3));
+        assertThat(collection().sessionSubscriptionCount(), is(2));
+    }
+
+    @Test
+    void concurrentInsertRemove() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(16);
+        final var subscription = new Subscription("resourceType", "resourceId", "sessionId");
+
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        IntStream.range(0, 1000).forEach(i -> tasks.add(() -> {
+            collection().insert(subscription);
+            collection().remove("sessionId");
+            return null;
+        }));
+
+        executor.invokeAll(tasks);
+        executor.shutdown();
+        assertThat(collection().size(), is(4));
+        assertThat(collection().get("sessionId").size(), is(0));
+        assertThat(collection().get(new Resource("resourceType", "resourceId")).size(), is(0));
+    }
+
+    @Test
+    void concurrentInsertsOfDistinctSessions() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(16);
+
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        IntStream.range(0, 200).forEach(i -> tasks.add(() -> {
+            collection().insert(new Subscription("shared", "shared", "session" + i));
+            collection().insert(new Subscription("own", "own" + i, "session" + i));
+            return null;
+        }));
+
+        executor.invokeAll(tasks);
+        executor.shutdown();
+        assertThat(collection().size(), is(404));
+        assertThat(collection().sessionSubscriptionCount(), is(203));
+        assertThat(collection().get(new Resource("shared", "shared")).size(), is(200));
+    }
+}
@@ -0,0 +1,139 @@
+package org.iris_events.subscription.collection;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.iris_events.subscription.model.Subscription;
+
+import io.quarkus.redis.client.RedisClient;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Uni;
+import jakarta.inject.Inject;
+
+@QuarkusTest
+class SubscriptionNearCacheTest {
+    private static final String KEY = new RedisKeys(KeyLayout.STANDARD).getResourceSubscriptionsSetId("nearCacheType",
+            "nearCacheId");
+    private static final Set<Subscription> SUBSCRIPTIONS = Set.of(
+            new Subscription("nearCacheType", "nearCacheId", "session"));
+
+    @Inject
+    RedisClient redisClient;
+
+    @Inject
+    RedisDataSource dataSource;
+
+    private SubscriptionNearCache nearCache;
+
+    @BeforeEach
+    public void setup() {
+        redisClient.flushdb(List.of());
+        nearCache = nearCache(true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        nearCache.destroy();
+    }
+
+    @Test
+    void cachedSetIsServedWithoutLoading() {
+        final var loads = new AtomicInteger();
+
+        nearCache.get(KEY, key -> load(loads));
+        final var cached = nearCache.get(KEY, key -> load(loads));
+
+        assertThat(cached, is(SUBSCRIPTIONS));
+        assertThat(loads.get(), is(1));
+    }
+
+    @Test
+    void invalidatedByAddFromOtherClient() {
+        nearCache.put(KEY, SUBSCRIPTIONS);
+
+        redisClient.sadd(List.of(KEY, "otherSession"));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> nearCache.getIfPresent(KEY) == null);
+    }
+
+    @Test
+    void invalidatedByRemoveFromOtherClient() {
+        redisClient.sadd(List.of(KEY, "session", "otherSession"));
+        // a cache subscribed after the add does not see its notification
+        nearCache.destroy();
+        nearCache = nearCache(true);
+        nearCache.put(KEY, SUBSCRIPTIONS);
+
+        redisClient.srem(List.of(KEY, "otherSession"));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> nearCache.getIfPresent(KEY) == null);
+    }
+
+    @Test
+    void invalidationDuringAsyncLoadIsNotCached() {
+        final var loading = new CompletableFuture<Set<Subscription>>();
+
+        final var result = nearCache.getAsync(KEY, key -> Uni.createFrom().completionStage(loading))
+                .subscribeAsCompletionStage();
+        nearCache.invalidate(KEY);
+        loading.complete(SUBSCRIPTIONS);
+
+        assertThat(result.join(), is(SUBSCRIPTIONS));
+        assertThat(nearCache.getIfPresent(KEY), is(nullValue()));
+    }
+
+    @Test
+    void asyncLoadIsShared() {
+        final var loads = new AtomicInteger();
+
+        nearCache.getAsync(KEY, key -> Uni.createFrom().item(() -> load(loads))).await().indefinitely();
+        final var cached = nearCache.getAsync(KEY, key -> Uni.createFrom().item(() -> load(loads)))
+                .await().indefinitely();
+
+        assertThat(cached, is(SUBSCRIPTIONS));
+        assertThat(loads.get(), is(1));
+    }
+
+    @Test
+    void disabledCachePassesThrough() {
+        final var disabled = nearCache(false);
+        final var loads = new AtomicInteger();
+
+        disabled.put(KEY, SUBSCRIPTIONS);
+        disabled.get(KEY, key -> load(loads));
+        disabled.get(KEY, key -> load(loads));
+
+        assertThat(loads.get(), is(2));
+        assertThat(disabled.getIfPresent(KEY), is(nullValue()));
+    }
+
+    private Set<Subscription> load(final AtomicInteger loads) {
+        loads.incrementAndGet();
+        return SUBSCRIPTIONS;
+    }
+
+    private SubscriptionNearCache nearCache(final boolean enabled) {
+        final var cache = new SubscriptionNearCache();
+        cache.enabled = enabled;
+        cache.maxSize = 100;
+        cache.expireAfterWrite = Duration.ofMinutes(1);
+        cache.configureKeyspaceEvents = true;
+        cache.dataSource = dataSource;
+        cache.readReplicaRouter = new ReadReplicaRouter();
+        cache.init();
+        return cache;
+    }
+}
@@ -0,0 +1,16 @@
+package org.iris_events.subscription.collection;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class UtilsTest {
+
+    @Test
+    void slot() {
+        assertThat(Utils.slot("123456789"), is(12739));
+        assertThat(Utils.slot("foo"), is(12182));
+        assertThat(Utils.slot("{user1000}.following"), is(Utils.slot("user1000")));
+    }
+}